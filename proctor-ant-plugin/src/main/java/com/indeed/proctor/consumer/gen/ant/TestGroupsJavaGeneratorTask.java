@@ -14,6 +14,7 @@ public class TestGroupsJavaGeneratorTask extends TestGroupsGeneratorTask {
 
     private String groupsManagerClass;
     private String contextClass;
+    private boolean useTestSlots;
 
     public String getGroupsManagerClass() {
         return groupsManagerClass;
@@ -31,8 +32,17 @@ public class TestGroupsJavaGeneratorTask extends TestGroupsGeneratorTask {
         this.contextClass = contextClass;
     }
 
+    public boolean isUseTestSlots() {
+        return useTestSlots;
+    }
+
+    public void setUseTestSlots(final boolean useTestSlots) {
+        this.useTestSlots = useTestSlots;
+    }
+
     @Override
     protected void generateSourceFiles(final ProctorSpecification specification) throws CodeGenException {
+        gen.setUseTestSlots(useTestSlots);
         gen.generate(
                 specification,
                 target,
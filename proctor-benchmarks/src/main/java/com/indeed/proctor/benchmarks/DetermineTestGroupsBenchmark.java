@@ -0,0 +1,64 @@
+package com.indeed.proctor.benchmarks;
+
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.RuleComplexity;
+import com.indeed.proctor.common.Identifiers;
+import com.indeed.proctor.common.Proctor;
+import com.indeed.proctor.common.ProctorResult;
+import com.indeed.proctor.common.ProctorSpecification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proctor.determineTestGroups, the work done by clients for every request, on matrices of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetermineTestGroupsBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    private int testCount;
+    @Param({"NONE", "SIMPLE", "COMPLEX"})
+    private RuleComplexity ruleComplexity;
+    @Param({"SMALL", "LARGE"})
+    private ContextSize contextSize;
+
+    private Proctor proctor;
+    private List<Map<String, Object>> contexts;
+    private List<Identifiers> identifiers;
+
+    @Setup
+    public void setUp() {
+        final ProctorSpecification specification = SyntheticMatrix.createSpecification(testCount, contextSize);
+        proctor = SyntheticMatrix.createProctor(SyntheticMatrix.createMatrix(testCount, ruleComplexity), specification);
+        contexts = SyntheticMatrix.createContexts(contextSize);
+        identifiers = SyntheticMatrix.createIdentifiers();
+    }
+
+    @Benchmark
+    public ProctorResult determineTestGroups(final RequestCounter counter) {
+        final int request = counter.next();
+        return proctor.determineTestGroups(
+                identifiers.get(request % identifiers.size()),
+                contexts.get(request % contexts.size()),
+                Collections.emptyMap()
+        );
+    }
+}
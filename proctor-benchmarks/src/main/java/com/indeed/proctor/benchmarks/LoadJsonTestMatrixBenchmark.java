@@ -0,0 +1,72 @@
+package com.indeed.proctor.benchmarks;
+
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.RuleComplexity;
+import com.indeed.proctor.common.ProctorSpecification;
+import com.indeed.proctor.common.Serializers;
+import com.indeed.proctor.common.StringProctorLoader;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AbstractJsonProctorLoader.loadJsonTestMatrix, parsing the tests required by the specification from the matrix json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadJsonTestMatrixBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    private int testCount;
+    /**
+     * share of the matrix required by the specification, other tests are skipped by the loader
+     */
+    @Param({"1", "0.1"})
+    private double requiredShare;
+
+    private MatrixLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String json = Serializers.strict().writeValueAsString(
+                SyntheticMatrix.createMatrix(testCount, RuleComplexity.COMPLEX)
+        );
+        final int requiredCount = Math.max(1, (int) (testCount * requiredShare));
+        final ProctorSpecification specification = SyntheticMatrix.createSpecification(requiredCount, ContextSize.SMALL);
+        loader = new MatrixLoader(specification, json);
+    }
+
+    @Benchmark
+    public TestMatrixArtifact loadJsonTestMatrix() throws IOException {
+        return loader.loadMatrix();
+    }
+
+    /**
+     * Exposes loading the matrix json without verifying it or constructing a Proctor.
+     */
+    private static class MatrixLoader extends StringProctorLoader {
+        MatrixLoader(@Nonnull final ProctorSpecification specification, @Nonnull final String testMatrixJson) {
+            super(specification, SyntheticMatrix.MATRIX_SOURCE, testMatrixJson);
+        }
+
+        TestMatrixArtifact loadMatrix() throws IOException {
+            return loadTestMatrix();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.indeed.proctor.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar, accepting the same arguments as the JMH launcher.
+ *
+ * Unlike the JMH launcher, always enables the GC profiler, so that allocation rates
+ * (gc.alloc.rate.norm, in bytes per operation) are reported next to timings.
+ */
+public final class ProctorBenchmarks {
+    private ProctorBenchmarks() {
+        throw new UnsupportedOperationException("Static class");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()
+                || commandLineOptions.shouldListWithParams() || commandLineOptions.shouldListProfilers()
+                || commandLineOptions.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        final boolean gcProfilerRequested = commandLineOptions.getProfilers().stream()
+                .anyMatch(profiler -> GCProfiler.class.getName().equals(profiler.getKlass())
+                        || "gc".equals(profiler.getKlass()));
+        final OptionsBuilder optionsBuilder = new OptionsBuilder();
+        optionsBuilder.parent(commandLineOptions);
+        if (!gcProfilerRequested) {
+            optionsBuilder.addProfiler(GCProfiler.class);
+        }
+        final Options options = optionsBuilder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,18 @@
+package com.indeed.proctor.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread counter to cycle through identifiers and contexts, so that consecutive invocations
+ * do not repeat the same request.
+ */
+@State(Scope.Thread)
+public class RequestCounter {
+    private int count;
+
+    public int next() {
+        count = (count + 1) & Integer.MAX_VALUE;
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+package com.indeed.proctor.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.common.RuleEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RuleEvaluator.evaluateBooleanRule for rules of increasing complexity, including parsing of the rule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleEvaluatorBenchmark {
+    public enum Rule {
+        EMPTY("${}"),
+        LITERAL("${true}"),
+        COMPARISON("${country == 'C1'}"),
+        BOOLEAN_LOGIC("${loggedIn && (lang == 'en' || lang == 'de') && accountAge > 10}"),
+        FUNCTIONS("${proctor:contains(COUNTRIES, country) && fn:startsWith(userAgent, 'Mozilla') && !fn:contains(userAgent, 'bot')}");
+
+        private final String expression;
+
+        Rule(final String expression) {
+            this.expression = expression;
+        }
+    }
+
+    @Param({"EMPTY", "LITERAL", "COMPARISON", "BOOLEAN_LOGIC", "FUNCTIONS"})
+    private Rule rule;
+    @Param({"SMALL", "LARGE"})
+    private ContextSize contextSize;
+
+    private RuleEvaluator ruleEvaluator;
+    private List<Map<String, Object>> contexts;
+
+    @Setup
+    public void setUp() {
+        ruleEvaluator = RuleEvaluator.createDefaultRuleEvaluator(
+                ImmutableMap.of("COUNTRIES", ImmutableList.of("C1", "C2", "C3"))
+        );
+        contexts = SyntheticMatrix.createContexts(contextSize);
+    }
+
+    @Benchmark
+    public boolean evaluateBooleanRule(final RequestCounter counter) {
+        return ruleEvaluator.evaluateBooleanRule(rule.expression, contexts.get(counter.next() % contexts.size()));
+    }
+}
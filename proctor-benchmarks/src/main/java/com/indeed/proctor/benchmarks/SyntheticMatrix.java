@@ -0,0 +1,253 @@
+package com.indeed.proctor.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.indeed.proctor.common.Identifiers;
+import com.indeed.proctor.common.Proctor;
+import com.indeed.proctor.common.ProctorLoadResult;
+import com.indeed.proctor.common.ProctorSpecification;
+import com.indeed.proctor.common.ProctorUtils;
+import com.indeed.proctor.common.RuleEvaluator;
+import com.indeed.proctor.common.TestSpecification;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Range;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import com.indeed.proctor.common.model.TestType;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates test matrices, specifications and request contexts of configurable size for benchmarks.
+ *
+ * Generation is deterministic, so results of different runs and revisions are comparable.
+ */
+public final class SyntheticMatrix {
+    public enum RuleComplexity {
+        /**
+         * no test rule and a single allocation without rule, the cheapest possible test
+         */
+        NONE,
+        /**
+         * a test rule and allocation rules of a single comparison each
+         */
+        SIMPLE,
+        /**
+         * rules combining several comparisons, function calls and test constants
+         */
+        COMPLEX
+    }
+
+    public enum ContextSize {
+        /**
+         * only the variables used by rules
+         */
+        SMALL(0),
+        /**
+         * variables used by rules and many unused ones, as in applications sharing one context for all tests
+         */
+        LARGE(60);
+
+        private final int unusedVariables;
+
+        ContextSize(final int unusedVariables) {
+            this.unusedVariables = unusedVariables;
+        }
+    }
+
+    public static final String MATRIX_SOURCE = "synthetic";
+
+    private static final int COUNTRY_COUNT = 20;
+    private static final int CONTEXT_COUNT = 64;
+    private static final int IDENTIFIER_COUNT = 1024;
+
+    private static final List<TestBucket> BUCKETS = ImmutableList.of(
+            new TestBucket("inactive", -1, "inactive"),
+            new TestBucket("control", 0, "control"),
+            new TestBucket("test", 1, "test")
+    );
+    private static final List<Range> RANGES = ImmutableList.of(
+            new Range(-1, 0.1),
+            new Range(0, 0.45),
+            new Range(1, 0.45)
+    );
+
+    private SyntheticMatrix() {
+        throw new UnsupportedOperationException("Static class");
+    }
+
+    @Nonnull
+    public static String testName(final int index) {
+        return "benchmark" + index + "_tst";
+    }
+
+    @Nonnull
+    public static TestMatrixArtifact createMatrix(final int testCount, @Nonnull final RuleComplexity ruleComplexity) {
+        final Audit audit = new Audit();
+        audit.setVersion("1");
+        audit.setUpdated(0);
+        audit.setUpdatedBy("benchmark");
+
+        final Map<String, ConsumableTestDefinition> tests = new LinkedHashMap<>();
+        for (int i = 0; i < testCount; i++) {
+            tests.put(testName(i), createTestDefinition(i, ruleComplexity));
+        }
+
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setAudit(audit);
+        matrix.setTests(tests);
+        return matrix;
+    }
+
+    @Nonnull
+    public static ConsumableTestDefinition createTestDefinition(final int index, @Nonnull final RuleComplexity ruleComplexity) {
+        final ConsumableTestDefinition definition = new ConsumableTestDefinition();
+        definition.setVersion("1");
+        definition.setTestType(TestType.ANONYMOUS_USER);
+        definition.setSalt("&" + testName(index));
+        definition.setBuckets(BUCKETS);
+        definition.setConstants(Collections.emptyMap());
+
+        final String country = country(index);
+        final List<Allocation> allocations = new ArrayList<>();
+        switch (ruleComplexity) {
+            case NONE:
+                allocations.add(new Allocation(null, RANGES, "#A" + index));
+                break;
+            case SIMPLE:
+                definition.setRule("${lang == 'en'}");
+                allocations.add(new Allocation("${country == '" + country + "'}", RANGES, "#A" + index));
+                allocations.add(new Allocation(null, RANGES, "#B" + index));
+                break;
+            case COMPLEX:
+                definition.setConstants(ImmutableMap.of(
+                        "COUNTRIES", ImmutableList.of(country, country(index + 1), country(index + 2)),
+                        "MIN_AGE", index % 30
+                ));
+                definition.setRule("${loggedIn && (lang == 'en' || lang == 'de') && !fn:contains(userAgent, 'bot')}");
+                allocations.add(new Allocation(
+                        "${proctor:contains(COUNTRIES, country) && accountAge >= MIN_AGE && fn:startsWith(userAgent, 'Mozilla')}",
+                        RANGES,
+                        "#A" + index));
+                allocations.add(new Allocation(
+                        "${country == '" + country + "' || fn:toLowerCase(lang) == 'de'}",
+                        RANGES,
+                        "#B" + index));
+                allocations.add(new Allocation(null, RANGES, "#C" + index));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rule complexity " + ruleComplexity);
+        }
+        definition.setAllocations(allocations);
+        return definition;
+    }
+
+    @Nonnull
+    public static ProctorSpecification createSpecification(final int testCount, @Nonnull final ContextSize contextSize) {
+        final Map<String, TestSpecification> tests = new HashMap<>();
+        for (int i = 0; i < testCount; i++) {
+            tests.put(testName(i), createTestSpecification());
+        }
+        final ProctorSpecification specification = new ProctorSpecification();
+        specification.setTests(tests);
+        specification.setProvidedContext(createProvidedContext(contextSize));
+        return specification;
+    }
+
+    @Nonnull
+    private static TestSpecification createTestSpecification() {
+        final Map<String, Integer> buckets = new HashMap<>();
+        for (final TestBucket bucket : BUCKETS) {
+            buckets.put(bucket.getName(), bucket.getValue());
+        }
+        final TestSpecification specification = new TestSpecification();
+        specification.setBuckets(buckets);
+        specification.setFallbackValue(-1);
+        return specification;
+    }
+
+    /**
+     * @return variable names mapped to type names, as in a proctor specification
+     */
+    @Nonnull
+    public static Map<String, String> createProvidedContext(@Nonnull final ContextSize contextSize) {
+        final Map<String, String> providedContext = new HashMap<>();
+        providedContext.put("country", "String");
+        providedContext.put("lang", "String");
+        providedContext.put("loggedIn", "boolean");
+        providedContext.put("accountAge", "int");
+        providedContext.put("userAgent", "String");
+        for (int i = 0; i < contextSize.unusedVariables; i++) {
+            providedContext.put("unused" + i, "String");
+        }
+        return providedContext;
+    }
+
+    /**
+     * @return request contexts with varied values, so that different rules and allocations match
+     */
+    @Nonnull
+    public static List<Map<String, Object>> createContexts(@Nonnull final ContextSize contextSize) {
+        final List<Map<String, Object>> contexts = new ArrayList<>(CONTEXT_COUNT);
+        for (int i = 0; i < CONTEXT_COUNT; i++) {
+            final Map<String, Object> context = new HashMap<>();
+            context.put("country", country(i));
+            context.put("lang", (i % 3 == 0) ? "de" : "en");
+            context.put("loggedIn", i % 4 != 0);
+            context.put("accountAge", i % 40);
+            context.put("userAgent", (i % 16 == 0)
+                    ? "Googlebot/2.1"
+                    : "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0 Safari/537.36");
+            for (int j = 0; j < contextSize.unusedVariables; j++) {
+                context.put("unused" + j, "value" + j);
+            }
+            contexts.add(context);
+        }
+        return contexts;
+    }
+
+    @Nonnull
+    public static List<Identifiers> createIdentifiers() {
+        final List<Identifiers> identifiers = new ArrayList<>(IDENTIFIER_COUNT);
+        for (int i = 0; i < IDENTIFIER_COUNT; i++) {
+            identifiers.add(Identifiers.of(TestType.ANONYMOUS_USER, "user" + i + "abcdef0123456789"));
+        }
+        return identifiers;
+    }
+
+    /**
+     * Verifies the matrix against the specification and creates a Proctor, as a loader would.
+     * Consolidates the given matrix in place.
+     */
+    @Nonnull
+    public static Proctor createProctor(
+            @Nonnull final TestMatrixArtifact matrix,
+            @Nonnull final ProctorSpecification specification
+    ) {
+        final ProctorLoadResult loadResult = ProctorUtils.verifyAndConsolidate(
+                matrix,
+                MATRIX_SOURCE,
+                specification.getTests(),
+                RuleEvaluator.defaultFunctionMapperBuilder().build(),
+                ProctorUtils.convertContextToTestableMap(specification.getProvidedContext()),
+                Collections.emptySet()
+        );
+        if (!loadResult.getTestsWithErrors().isEmpty()) {
+            throw new IllegalStateException("Invalid synthetic tests " + loadResult.getTestsWithErrors());
+        }
+        return Proctor.construct(matrix, loadResult, RuleEvaluator.defaultFunctionMapperBuilder().build());
+    }
+
+    @Nonnull
+    private static String country(final int index) {
+        return "C" + (index % COUNTRY_COUNT);
+    }
+}
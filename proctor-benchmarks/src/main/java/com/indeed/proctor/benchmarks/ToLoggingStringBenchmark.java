@@ -0,0 +1,76 @@
+package com.indeed.proctor.benchmarks;
+
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.RuleComplexity;
+import com.indeed.proctor.common.Identifiers;
+import com.indeed.proctor.common.Proctor;
+import com.indeed.proctor.common.ProctorResult;
+import com.indeed.proctor.consumer.AbstractGroups;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AbstractGroups.toLoggingString, building the groups string logged for experiment analysis on every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToLoggingStringBenchmark {
+    private static final int RESULT_COUNT = 64;
+
+    @Param({"10", "100", "1000", "5000"})
+    private int testCount;
+
+    private List<AbstractGroups> groups;
+
+    @Setup
+    public void setUp() {
+        final Proctor proctor = SyntheticMatrix.createProctor(
+                SyntheticMatrix.createMatrix(testCount, RuleComplexity.SIMPLE),
+                SyntheticMatrix.createSpecification(testCount, ContextSize.SMALL)
+        );
+        final List<Identifiers> identifiers = SyntheticMatrix.createIdentifiers();
+        final List<Map<String, Object>> contexts = SyntheticMatrix.createContexts(ContextSize.SMALL);
+        groups = new ArrayList<>(RESULT_COUNT);
+        for (int i = 0; i < RESULT_COUNT; i++) {
+            final ProctorResult result = proctor.determineTestGroups(
+                    identifiers.get(i % identifiers.size()),
+                    contexts.get(i % contexts.size()),
+                    Collections.emptyMap()
+            );
+            groups.add(new BenchmarkGroups(result));
+        }
+    }
+
+    @Benchmark
+    public String toLoggingString(final RequestCounter counter) {
+        return groups.get(counter.next() % groups.size()).toLoggingString();
+    }
+
+    /**
+     * Groups without generated accessors, logging behaves like generated groups classes.
+     */
+    private static class BenchmarkGroups extends AbstractGroups {
+        BenchmarkGroups(final ProctorResult proctorResult) {
+            super(proctorResult);
+        }
+    }
+}
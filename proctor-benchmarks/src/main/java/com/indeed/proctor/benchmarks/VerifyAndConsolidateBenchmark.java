@@ -0,0 +1,74 @@
+package com.indeed.proctor.benchmarks;
+
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.RuleComplexity;
+import com.indeed.proctor.common.ProctorLoadResult;
+import com.indeed.proctor.common.ProctorSpecification;
+import com.indeed.proctor.common.ProctorUtils;
+import com.indeed.proctor.common.ProvidedContext;
+import com.indeed.proctor.common.RuleEvaluator;
+import com.indeed.proctor.common.Serializers;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProctorUtils.verifyAndConsolidate, verifying all rules of the matrix against the provided context of the specification.
+ *
+ * The matrix is consolidated in place, so each invocation gets a freshly parsed copy, which is not measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Thread)
+public class VerifyAndConsolidateBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    private int testCount;
+    @Param({"NONE", "SIMPLE", "COMPLEX"})
+    private RuleComplexity ruleComplexity;
+
+    private String json;
+    private ProctorSpecification specification;
+    private ProvidedContext providedContext;
+    private TestMatrixArtifact matrix;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Serializers.strict().writeValueAsString(SyntheticMatrix.createMatrix(testCount, ruleComplexity));
+        specification = SyntheticMatrix.createSpecification(testCount, ContextSize.SMALL);
+        providedContext = ProctorUtils.convertContextToTestableMap(specification.getProvidedContext());
+    }
+
+    @Setup(Level.Invocation)
+    public void parseMatrix() throws IOException {
+        matrix = Serializers.lenient().readValue(json, TestMatrixArtifact.class);
+    }
+
+    @Benchmark
+    public ProctorLoadResult verifyAndConsolidate() {
+        return ProctorUtils.verifyAndConsolidate(
+                matrix,
+                SyntheticMatrix.MATRIX_SOURCE,
+                specification.getTests(),
+                RuleEvaluator.defaultFunctionMapperBuilder().build(),
+                providedContext,
+                Collections.emptySet()
+        );
+    }
+}
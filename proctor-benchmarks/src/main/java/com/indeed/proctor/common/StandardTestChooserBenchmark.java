@@ -0,0 +1,68 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.benchmarks.RequestCounter;
+import com.indeed.proctor.benchmarks.SyntheticMatrix;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.ContextSize;
+import com.indeed.proctor.benchmarks.SyntheticMatrix.RuleComplexity;
+import com.indeed.proctor.common.model.TestType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * StandardTestChooser.choose for a single test: rule evaluation followed by hashing the identifier.
+ *
+ * In the package of StandardTestChooser, because test choosers are not public.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StandardTestChooserBenchmark {
+    @Param({"NONE", "SIMPLE", "COMPLEX"})
+    private RuleComplexity ruleComplexity;
+    @Param({"SMALL", "LARGE"})
+    private ContextSize contextSize;
+
+    private StandardTestChooser chooser;
+    private List<Map<String, Object>> contexts;
+    private List<String> identifiers;
+
+    @Setup
+    public void setUp() {
+        chooser = new StandardTestChooser(
+                RuleEvaluator.EXPRESSION_FACTORY,
+                RuleEvaluator.FUNCTION_MAPPER,
+                SyntheticMatrix.testName(0),
+                SyntheticMatrix.createTestDefinition(0, ruleComplexity)
+        );
+        contexts = SyntheticMatrix.createContexts(contextSize);
+        identifiers = SyntheticMatrix.createIdentifiers().stream()
+                .map(identifiers -> identifiers.getIdentifier(TestType.ANONYMOUS_USER))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public TestChooser.Result choose(final RequestCounter counter) {
+        final int request = counter.next();
+        return chooser.choose(
+                identifiers.get(request % identifiers.size()),
+                contexts.get(request % contexts.size())
+        );
+    }
+}
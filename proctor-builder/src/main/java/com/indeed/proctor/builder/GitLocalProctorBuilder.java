@@ -1,8 +1,11 @@
 package com.indeed.proctor.builder;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 
@@ -41,6 +44,14 @@ public class GitLocalProctorBuilder extends ProctorBuilder {
         super(proctorReader, outputSink, author, version);
     }
 
+    public GitLocalProctorBuilder(final ProctorReader proctorReader,
+                                  final String testDefinitionsDirectory,
+                                  final OutputStream binaryOutputSink,
+                                  final String author,
+                                  final String version) {
+        super(proctorReader, binaryOutputSink, author, version);
+    }
+
     private static class GitLocalProctorBuilderArgs extends ProctorBuilderArgs {
         private String inputGitUrl;
         private String branchName;
@@ -129,6 +140,27 @@ public class GitLocalProctorBuilder extends ProctorBuilder {
             outputDir.mkdirs();
             File matrixFile = new File(outputDir, arguments.getFilename());
             matrixFile.createNewFile();
+            if (arguments.isBinary()) {
+                if ("-".equals(arguments.getOutputdir())) {
+                    new GitLocalProctorBuilder(
+                            proctor,
+                            arguments.getTestDefinitionsDirectory(),
+                            System.out,
+                            arguments.getAuthor(),
+                            arguments.getVersion()).execute();
+                    return;
+                }
+                // the binary writer only flushes, unlike the json writer closing its target
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(matrixFile))) {
+                    new GitLocalProctorBuilder(
+                            proctor,
+                            arguments.getTestDefinitionsDirectory(),
+                            output,
+                            arguments.getAuthor(),
+                            arguments.getVersion()).execute();
+                }
+                return;
+            }
             new GitLocalProctorBuilder(
                     proctor,
                     arguments.getTestDefinitionsDirectory(),
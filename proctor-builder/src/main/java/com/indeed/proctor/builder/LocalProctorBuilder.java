@@ -53,6 +53,14 @@ public class LocalProctorBuilder extends ProctorBuilder {
         this(inputDir, FileBasedProctorStore.DEFAULT_TEST_DEFINITIONS_DIRECTORY, outputSink, author, version);
     }
 
+    public LocalProctorBuilder(final File inputDir,
+                               final String testDefinitionsDirectory,
+                               final OutputStream binaryOutputSink,
+                               final String author,
+                               final String version) {
+        super(new LocalDirectoryStore(inputDir, testDefinitionsDirectory), binaryOutputSink, author, version);
+    }
+
     private static class LocalProctorBuilderArgs extends ProctorBuilderArgs {
         private String inputdir;
         private String testDefinitionsDirectory = FileBasedProctorStore.DEFAULT_TEST_DEFINITIONS_DIRECTORY;
@@ -94,6 +102,27 @@ public class LocalProctorBuilder extends ProctorBuilder {
         arguments.parse(args);
 
         try {
+            if (arguments.isBinary()) {
+                if ("-".equals(arguments.getOutputdir())) {
+                    new LocalProctorBuilder(
+                            new File(arguments.getInputdir()),
+                            arguments.getTestDefinitionsDirectory(),
+                            System.out,
+                            arguments.getAuthor(),
+                            arguments.getVersion()).execute();
+                    return;
+                }
+                // the binary writer only flushes, unlike the json writer closing its target
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(arguments.getOutputdir(), arguments.getFilename())))) {
+                    new LocalProctorBuilder(
+                            new File(arguments.getInputdir()),
+                            arguments.getTestDefinitionsDirectory(),
+                            output,
+                            arguments.getAuthor(),
+                            arguments.getVersion()).execute();
+                }
+                return;
+            }
             new LocalProctorBuilder(
                     new File(arguments.getInputdir()),
                     arguments.getTestDefinitionsDirectory(),
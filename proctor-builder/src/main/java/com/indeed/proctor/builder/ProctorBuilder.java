@@ -6,6 +6,7 @@ import com.indeed.proctor.store.StoreException;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 
 public class ProctorBuilder {
@@ -14,6 +15,10 @@ public class ProctorBuilder {
 
     private final ProctorReader proctorReader;
     private final Writer outputSink;
+    /**
+     * sink of the compact binary artifact, written instead of json if not null
+     */
+    private final OutputStream binaryOutputSink;
     private final String author;
     private String version;
 
@@ -26,11 +31,26 @@ public class ProctorBuilder {
     public ProctorBuilder(final ProctorReader proctorReader, final Writer outputSink, final String author, final String version) {
         this.proctorReader = proctorReader;
         this.outputSink = outputSink;
+        this.binaryOutputSink = null;
+        this.author = author;
+        this.version = version;
+    }
+    /**
+     * Builder writing the artifact in the compact binary format of {@link com.indeed.proctor.common.BinaryTestMatrixWriter}
+     */
+    public ProctorBuilder(final ProctorReader proctorReader, final OutputStream binaryOutputSink, final String author, final String version) {
+        this.proctorReader = proctorReader;
+        this.outputSink = null;
+        this.binaryOutputSink = binaryOutputSink;
         this.author = author;
         this.version = version;
     }
 
     public void execute() throws StoreException, IOException, IncompatibleTestMatrixException {
-        ProctorBuilderUtils.generateArtifact(proctorReader, outputSink, author, version);
+        if (binaryOutputSink != null) {
+            ProctorBuilderUtils.generateBinaryArtifact(proctorReader, binaryOutputSink, author, version);
+        } else {
+            ProctorBuilderUtils.generateArtifact(proctorReader, outputSink, author, version);
+        }
     }
 }
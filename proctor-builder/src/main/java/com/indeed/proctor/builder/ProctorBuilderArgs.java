@@ -20,6 +20,7 @@ class ProctorBuilderArgs {
     // Artifact overrides
     private String author = null;
     private String version = "";
+    private boolean binary = false;
 
     protected final Options options;
 
@@ -47,6 +48,10 @@ class ProctorBuilderArgs {
                               .withDescription("override for Artifact.Audit.version")
                               .withLongOpt("version")
                               .create("v"));
+        options.addOption(OptionBuilder.hasArg(false)
+                              .withDescription("Write the artifact in the compact binary format instead of json")
+                              .withLongOpt("binary")
+                              .create());
     }
 
 
@@ -81,6 +86,7 @@ class ProctorBuilderArgs {
                 this.version = v;
             }
         }
+        this.binary = results.hasOption("binary");
     }
 
     public String getOutputdir() {
@@ -98,4 +104,8 @@ class ProctorBuilderArgs {
     public String getVersion() {
         return version;
     }
+
+    public boolean isBinary() {
+        return binary;
+    }
 }
@@ -3,6 +3,7 @@ package com.indeed.proctor.builder;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Strings;
+import com.indeed.proctor.common.BinaryTestMatrixWriter;
 import com.indeed.proctor.common.IncompatibleTestMatrixException;
 import com.indeed.proctor.common.ProctorUtils;
 import com.indeed.proctor.common.Serializers;
@@ -14,6 +15,7 @@ import com.indeed.proctor.store.StoreException;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Map;
 
@@ -29,6 +31,23 @@ class ProctorBuilderUtils {
     static void generateArtifact(final ProctorReader proctorPersister, final Writer outputSink,
                                            final String authorOverride, final String versionOverride
     ) throws IOException, IncompatibleTestMatrixException, StoreException {
+        final TestMatrixArtifact artifact = createArtifact(proctorPersister, authorOverride, versionOverride);
+        OBJECT_WRITER.writeValue(outputSink, artifact);
+    }
+
+    /**
+     * Writes the artifact in the compact binary format of {@link BinaryTestMatrixWriter} instead of json
+     */
+    static void generateBinaryArtifact(final ProctorReader proctorPersister, final OutputStream outputSink,
+                                       final String authorOverride, final String versionOverride
+    ) throws IOException, IncompatibleTestMatrixException, StoreException {
+        final TestMatrixArtifact artifact = createArtifact(proctorPersister, authorOverride, versionOverride);
+        BinaryTestMatrixWriter.write(artifact, outputSink);
+    }
+
+    private static TestMatrixArtifact createArtifact(final ProctorReader proctorPersister,
+                                                     final String authorOverride, final String versionOverride
+    ) throws IncompatibleTestMatrixException, StoreException {
         final TestMatrixVersion currentTestMatrix = proctorPersister.getCurrentTestMatrix();
         if (currentTestMatrix == null) {
             throw new RuntimeException("Failed to load current test matrix for " + proctorPersister);
@@ -49,6 +68,6 @@ class ProctorBuilderUtils {
         for (final Map.Entry<String, ConsumableTestDefinition> td : artifact.getTests().entrySet()) {
             ProctorUtils.verifyInternallyConsistentDefinition(td.getKey(), matrixSource, td.getValue());
         }
-        OBJECT_WRITER.writeValue(outputSink, artifact);
+        return artifact;
     }
 }
@@ -2,13 +2,16 @@ package com.indeed.proctor.groups;
 
 import com.google.common.collect.ImmutableMap;
 import com.indeed.proctor.common.Identifiers;
+import com.indeed.proctor.common.Proctor;
 import com.indeed.proctor.common.ProctorResult;
 import com.indeed.proctor.common.model.TestType;
 import org.apache.log4j.Logger;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class TestSplitSpecificationTestWithFiltersGroupsManager {
@@ -51,4 +54,59 @@ public class TestSplitSpecificationTestWithFiltersGroupsManager {
         );
     }
 
+    @Test
+    public void testSpecificationTestsOnly() {
+        final Proctor proctor = UtilMethods.getProctor(SPECIFICATION_MATRIX, SPECIFICATION_RESOURCE);
+        final SplitSpecificationTestWithFiltersGroupsManager specificationTestsManager =
+                new SplitSpecificationTestWithFiltersGroupsManager(() -> proctor, true);
+        final SplitSpecificationTestWithFiltersGroupsContext testContext = SplitSpecificationTestWithFiltersGroupsContext.newBuilder()
+                .setLoggedIn(true)
+                .setCountry("FR")
+                .setAccountId(10)
+                .build();
+        final Identifiers identifiers = new Identifiers(ImmutableMap.<TestType, String>builder()
+                .put(TestType.ANONYMOUS_USER, SPECIFICATION_MATRIX)
+                .put(TestType.AUTHENTICATED_USER, SPECIFICATION_MATRIX)
+                .put(TestType.PAGE, SPECIFICATION_MATRIX)
+                .build());
+        final ProctorResult result = testContext.getProctorResult(specificationTestsManager, identifiers);
+        assertTrue(
+                "a test defined in specification should be determined",
+                result.getAllocations().containsKey("one")
+        );
+        assertFalse(
+                "a test matched defined filter should not be determined",
+                result.getAllocations().containsKey("two")
+        );
+        assertEquals(
+                testContext.getProctorResult(manager, identifiers).getBuckets().get("one").getValue(),
+                result.getBuckets().get("one").getValue()
+        );
+    }
+
+    @Test
+    public void testLazyDetermination() {
+        final Proctor proctor = UtilMethods.getProctor(SPECIFICATION_MATRIX, SPECIFICATION_RESOURCE);
+        final SplitSpecificationTestWithFiltersGroupsContext testContext = SplitSpecificationTestWithFiltersGroupsContext.newBuilder()
+                .setLoggedIn(true)
+                .setCountry("FR")
+                .setAccountId(10)
+                .build();
+        final Identifiers identifiers = new Identifiers(ImmutableMap.<TestType, String>builder()
+                .put(TestType.ANONYMOUS_USER, SPECIFICATION_MATRIX)
+                .put(TestType.AUTHENTICATED_USER, SPECIFICATION_MATRIX)
+                .put(TestType.PAGE, SPECIFICATION_MATRIX)
+                .build());
+        for (final boolean specificationTestsOnly : new boolean[]{false, true}) {
+            final ProctorResult eager = testContext.getProctorResult(
+                    new SplitSpecificationTestWithFiltersGroupsManager(() -> proctor, specificationTestsOnly, false), identifiers);
+            final ProctorResult lazy = testContext.getProctorResult(
+                    new SplitSpecificationTestWithFiltersGroupsManager(() -> proctor, specificationTestsOnly, true), identifiers);
+            assertEquals(ProctorResult.class, eager.getClass());
+            assertNotEquals("a lazily determined result", ProctorResult.class, lazy.getClass());
+            assertEquals(eager.getBuckets().get("one"), lazy.getBuckets().get("one"));
+            assertEquals(eager.getBuckets(), lazy.getBuckets());
+            assertEquals(eager.getAllocations(), lazy.getAllocations());
+        }
+    }
 }
@@ -21,6 +21,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.indeed.proctor.groups.UtilMethods.calcBuckets;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -94,6 +95,72 @@ public class TestUnitTestGroupsManager {
         }
     }
 
+    @Test
+    public void testTestSlots() {
+        final UnitTestGroupsContext testContext = UnitTestGroupsContext.newBuilder()
+                .setLoggedIn(true)
+                .setCountry("FR")
+                .setAccount(new Account(10))
+                .build();
+        final Identifiers identifiers = new Identifiers(ImmutableMap.<TestType, String>builder()
+                .put(TestType.ANONYMOUS_USER, SPECIFICATION_MATRIX)
+                .put(TestType.AUTHENTICATED_USER, SPECIFICATION_MATRIX)
+                .put(TestType.PAGE, SPECIFICATION_MATRIX)
+                .build());
+        final ProctorResult result = testContext.getProctorResult(manager, identifiers);
+
+        // generated with test slots, see pom.xml
+        final SlotTestGroups groups = new SlotTestGroups(result);
+        assertEquals(SlotTestGroups.Kluj.KLOO, groups.getKluj());
+        assertTrue(groups.isKlujKloo());
+        assertFalse(groups.isKlujControl());
+        assertEquals(2, groups.getKlujValue());
+        assertEquals(0, groups.getPimpleValue());
+        // not determined, fallback
+        assertNull(result.getBuckets().get("bubble"));
+        assertEquals(0, groups.getBubbleValue());
+        assertTrue(groups.isBubbleControl());
+        assertEquals(new UnitTestGroups(result).toLoggingString(), groups.toLoggingString());
+
+        // overrides using fields of subclasses are resolved on access, after construction
+        final SlotTestGroups overridden = new SlotTestGroups(result) {
+            private final int klujValue = 3;
+
+            @Override
+            protected int overrideDeterminedBucketValue(final String testName, final TestBucket determinedBucket) {
+                return "kluj".equals(testName) ? klujValue : determinedBucket.getValue();
+            }
+        };
+        assertEquals(SlotTestGroups.Kluj.LOOOJ, overridden.getKluj());
+        assertTrue(overridden.isKlujLoooj());
+        assertEquals(3, overridden.getKlujValue());
+        assertEquals(0, overridden.getPimpleValue());
+
+        // overrides are called on each access, as without test slots
+        final AtomicInteger overrideValue = new AtomicInteger(1);
+        final SlotTestGroups changing = new SlotTestGroups(result) {
+            @Override
+            protected int overrideDeterminedBucketValue(final String testName, final TestBucket determinedBucket) {
+                return "kluj".equals(testName) ? overrideValue.get() : determinedBucket.getValue();
+            }
+        };
+        assertEquals(1, changing.getKlujValue());
+        overrideValue.set(3);
+        assertEquals(3, changing.getKlujValue());
+        assertTrue(changing.isKlujLoooj());
+
+        // overridden getValue is still used
+        final SlotTestGroups overriddenValue = new SlotTestGroups(result) {
+            @Override
+            protected int getValue(final String testName, final int defaultValue) {
+                return "pimple".equals(testName) ? 1 : super.getValue(testName, defaultValue);
+            }
+        };
+        assertTrue(overriddenValue.isPimpleTest());
+        assertEquals(1, overriddenValue.getPimpleValue());
+        assertEquals(2, overriddenValue.getKlujValue());
+    }
+
     // this is an integration test with Proctor/RandomTestChooser
     @Test
     public void testRandom() {
@@ -14,6 +14,19 @@ import java.util.Map;
  */
 
 public class TestGroupsJavaGenerator extends TestGroupsGenerator {
+    private boolean useTestSlots;
+
+    public boolean isUseTestSlots() {
+        return useTestSlots;
+    }
+
+    /**
+     * @param useTestSlots true to generate groups classes resolving each test to a slot of {@code com.indeed.proctor.consumer.TestSlots},
+     *                     answering bucket accessors from values by slot rather than looking up tests by name on each call
+     */
+    public void setUseTestSlots(final boolean useTestSlots) {
+        this.useTestSlots = useTestSlots;
+    }
 
     public void generate(
             final ProctorSpecification specification,
@@ -34,6 +47,7 @@ public class TestGroupsJavaGenerator extends TestGroupsGenerator {
         baseContext.put("groupsClassName", groupsClass);
         baseContext.put("groupsManagerClassName", groupsManagerClass);
         baseContext.put("payloadClassName", payloadClass);
+        baseContext.put("useTestSlots", useTestSlots);
         if (!Strings.isNullOrEmpty(groupsClass)) {
             generate(
                     specification,
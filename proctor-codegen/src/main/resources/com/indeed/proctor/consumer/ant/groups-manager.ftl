@@ -5,10 +5,13 @@ import com.indeed.proctor.common.model.*;
 import com.indeed.proctor.consumer.*;
 
 import javax.annotation.Generated;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -30,11 +33,37 @@ public class ${mainClassName} extends AbstractGroupsManager {
         </#list>
         PROVIDED_CONTEXT = Collections.unmodifiableMap(providedContext);
     }
+    /**
+     * names of the tests of the specification, excluding dynamic tests
+     */
+    private static final Set<String> SPECIFICATION_TEST_NAMES = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(
+        <#list testDefs as testDef>
+            "${testDef.name}"<#if testDef_has_next>,</#if>
+        </#list>
+    )));
 
     public ${mainClassName}(final Supplier<Proctor> proctorSource) {
         super(proctorSource);
     }
 
+    /**
+     * @param specificationTestsOnly if true, only determines the tests of the specification and not dynamic tests,
+     *                               through a view of each loaded Proctor, see {@link Proctor#createView(java.util.Collection)}
+     */
+    public ${mainClassName}(final Supplier<Proctor> proctorSource, final boolean specificationTestsOnly) {
+        this(proctorSource, specificationTestsOnly, false);
+    }
+
+    /**
+     * @param specificationTestsOnly if true, only determines the tests of the specification and not dynamic tests,
+     *                               through a view of each loaded Proctor, see {@link Proctor#createView(java.util.Collection)}
+     * @param lazyDetermination      if true, the bucket of a test is only determined when it is first used,
+     *                               see {@link Proctor#determineTestGroupsLazily(Identifiers, Map, Map)}
+     */
+    public ${mainClassName}(final Supplier<Proctor> proctorSource, final boolean specificationTestsOnly, final boolean lazyDetermination) {
+        super(proctorSource, lazyDetermination, specificationTestsOnly ? SPECIFICATION_TEST_NAMES : null);
+    }
+
     /**
      * This should be used for non-webapp applications that are working
      * with test groups as those applications will not have a request and response,
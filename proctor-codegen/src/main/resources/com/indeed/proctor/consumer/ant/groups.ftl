@@ -19,9 +19,27 @@ import java.util.Map;
 @SuppressWarnings("deprecation")
 @Generated("com.indeed.proctor.consumer.gen.TestGroupsGenerator")
 public class ${mainClassName} extends AbstractGroups {
+<#if useTestSlots!false>
+
+    /**
+     * Tests of this class by slot, declared first as constructing EMPTY uses it
+     */
+    private static final TestSlots TEST_SLOTS = new TestSlots(
+            <#list testDefs as testDef>
+            "${testDef.name}"<#if testDef_has_next>,</#if>
+            </#list>
+    );
+</#if>
 
     public static final ${mainClassName} EMPTY = new ${mainClassName}(ProctorResult.EMPTY);
 
+<#if useTestSlots!false>
+    /**
+     * values of active buckets by slot of TEST_SLOTS, resolved on first access
+     */
+    private final int[] slotValues = TEST_SLOTS.newValues();
+
+</#if>
     public ${mainClassName}(final ProctorResult proctorResult) {
         super(proctorResult);
     }
@@ -115,10 +133,16 @@ public class ${mainClassName} extends AbstractGroups {
     @Nonnull
     public ${testDef.javaClassName} get${testDef.javaClassName}() {
         for (final ${testDef.javaClassName} bucket : ${testDef.javaClassName}.values()) {
+            <#if useTestSlots!false>
+            if (isBucketActive(TEST_SLOTS, slotValues, ${testDef_index}, bucket.getValue(), ${testDef.defaultValue})) {
+                return bucket;
+            }
+            <#else>
             final String testName = Test.${testDef.enumName}.getName();
             if (isBucketActive(testName, bucket.getValue(), ${testDef.defaultValue})) {
                 return bucket;
             }
+            </#if>
         }
 
         // Safe to throw NPE here because the code generator ensures that the default value
@@ -135,7 +159,11 @@ public class ${mainClassName} extends AbstractGroups {
     }
 
     public int get${testDef.javaClassName}Value() {
+        <#if useTestSlots!false>
+        return getValue(TEST_SLOTS, slotValues, ${testDef_index}, ${testEnumName}.${testDef.enumName}.getFallbackValue());
+        <#else>
         return getValue(${testEnumName}.${testDef.enumName}.getName(), ${testEnumName}.${testDef.enumName}.getFallbackValue());
+        </#if>
     }
 
     <#if (testDef.payloadJavaClass)??>
@@ -187,9 +215,14 @@ public class ${mainClassName} extends AbstractGroups {
 
 <#list testDef.buckets as bucket>
     public boolean is${testDef.javaClassName}${bucket.javaClassName}() {
+        <#if useTestSlots!false>
+        final int bucketValue = ${testDef.javaClassName}.${bucket.enumName}.getValue();
+        return isBucketActive(TEST_SLOTS, slotValues, ${testDef_index}, bucketValue, ${testDef.defaultValue});
+        <#else>
         final String testName = Test.${testDef.enumName}.getName();
         final int bucketValue = ${testDef.javaClassName}.${bucket.enumName}.getValue();
         return isBucketActive(testName, bucketValue, ${testDef.defaultValue});
+        </#if>
     }
 <#if bucket_has_next || testDef_has_next>
 
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.google.common.base.Preconditions;
 import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
@@ -15,8 +16,11 @@ import javax.annotation.Nonnull;
 import javax.el.FunctionMapper;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * parses a Json source as TestMatrixArtifact
@@ -26,6 +30,7 @@ public abstract class AbstractJsonProctorLoader extends AbstractProctorLoader {
     private static final String TEST_MATRIX_ARTIFACT_JSON_KEY_AUDIT = "audit";
     private static final String TEST_MATRIX_ARTIFACT_JSON_KEY_TESTS = "tests";
     private static final ObjectMapper OBJECT_MAPPER = Serializers.lenient();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     public AbstractJsonProctorLoader(@Nonnull final Class<?> cls, @Nonnull final ProctorSpecification specification, @Nonnull final FunctionMapper functionMapper) {
         super(cls, specification, functionMapper);
@@ -51,54 +56,20 @@ public abstract class AbstractJsonProctorLoader extends AbstractProctorLoader {
      * this method only loads referenced tests, which are determined by requiredTests and dynamicFilters, by iterating over
      * entries under the value for "tests".
      *
+     * If "audit" precedes "tests" and has the version of the last loaded audit, parsing stops after the audit,
+     * as {@link #doLoad()} does not reload an unchanged test matrix anyway.
+     *
      * @param reader
-     * @return TestMatrixArtifact with referenced test definitions only
+     * @return TestMatrixArtifact with referenced test definitions only, or with no tests if the audit is unchanged
      * @throws IOException
      */
     @CheckForNull
     protected TestMatrixArtifact loadJsonTestMatrix(@Nonnull final Reader reader) throws IOException {
         try {
             final TestMatrixArtifact testMatrixArtifact = new TestMatrixArtifact();
-
-            final JsonFactory jsonFactory = new JsonFactory();
-            final JsonParser jsonParser = jsonFactory.createParser(reader);
-            // At this point, currentToken() returns null.
-
-            // Go to the next token, which must be "{".
-            // This condition will be verified in consumeJson.
-            jsonParser.nextToken();
-
-            JsonParserUtils.consumeJson(
-                    jsonParser,
-                    (key, parser) -> {
-                        switch (key) {
-                            case TEST_MATRIX_ARTIFACT_JSON_KEY_AUDIT:
-                                // The value for "audit" field must be an object.
-                                Preconditions.checkState(parser.currentToken() == JsonToken.START_OBJECT);
-
-                                testMatrixArtifact.setAudit(OBJECT_MAPPER.readValue(parser, Audit.class));
-                                break;
-
-                            case TEST_MATRIX_ARTIFACT_JSON_KEY_TESTS:
-                                // The value for "tests" field must be an object.
-                                Preconditions.checkState(parser.currentToken() == JsonToken.START_OBJECT);
-
-                                testMatrixArtifact.setTests(extractReferencedTests(parser));
-                                break;
-
-                            default:
-                                LOGGER.warn("Unknown test matrix artifact json key: '" + key + "'");
-                                // If key is not either "audit" or "tests", just skip the value.
-                                parser.skipChildren();
-                                break;
-                        }
-                    }
-            );
-
-            Preconditions.checkNotNull(testMatrixArtifact.getAudit(), "Field \"audit\" was not found in json");
-            Preconditions.checkNotNull(testMatrixArtifact.getTests(), "Field \"tests\" was not found in json");
-
-            return testMatrixArtifact;
+            return parseJsonTestMatrix(JSON_FACTORY.createParser(reader), testMatrixArtifact, parser -> {
+                testMatrixArtifact.setTests(extractReferencedTests(parser));
+            });
         } catch (final IOException e) {
             LOGGER.error("Unable to load test matrix from " + getSource(), e);
             throw e;
@@ -113,6 +84,128 @@ public abstract class AbstractJsonProctorLoader extends AbstractProctorLoader {
         }
     }
 
+    /**
+     * Same as {@link #loadJsonTestMatrix(Reader)}, but only indexes the byte range of referenced tests in the json in the buffer,
+     * e.g. a memory-mapped file, and decodes a test definition when it is first accessed, i.e. when its test chooser is built.
+     * Unless there are dynamic filters, which need the definition of all tests, unreferenced tests are skipped without decoding.
+     *
+     * @param buffer utf-8 json, whose content must not change until all referenced tests are decoded
+     */
+    @CheckForNull
+    protected TestMatrixArtifact loadJsonTestMatrix(@Nonnull final ByteBuffer buffer) throws IOException {
+        try {
+            final LazyTestDefinitionMap tests = new LazyTestDefinitionMap();
+            final TestMatrixArtifact testMatrixArtifact = new TestMatrixArtifact();
+            parseJsonTestMatrix(
+                    JSON_FACTORY.createParser(new ByteBufferBackedInputStream(buffer.duplicate())),
+                    testMatrixArtifact,
+                    parser -> indexReferencedTests(parser, buffer, tests));
+            // tests are empty if the audit is unchanged
+            return tests.toArtifact(testMatrixArtifact.getAudit());
+        } catch (final IOException e) {
+            LOGGER.error("Unable to load test matrix from " + getSource(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the referenced tests of an artifact written by {@link BinaryTestMatrixWriter}, using its index
+     * to decode a test definition when it is first accessed, i.e. when its test chooser is built.
+     * Unless there are dynamic filters, which need the definition of all tests, unreferenced tests are not decoded.
+     */
+    @Nonnull
+    TestMatrixArtifact loadBinaryTestMatrix(@Nonnull final BinaryTestMatrixReader reader) throws IOException {
+        final Audit audit = reader.getAudit();
+        final Audit lastAudit = getLastAudit();
+        if ((lastAudit != null) && lastAudit.getVersion().equals(audit.getVersion())) {
+            // not reloaded by doLoad() anyway
+            final TestMatrixArtifact testMatrixArtifact = new TestMatrixArtifact();
+            testMatrixArtifact.setAudit(audit);
+            testMatrixArtifact.setTests(Collections.emptyMap());
+            return testMatrixArtifact;
+        }
+
+        final boolean hasDynamicFilters = !dynamicFilters.asCollection().isEmpty();
+        final LazyTestDefinitionMap tests = new LazyTestDefinitionMap();
+        for (int i = 0; i < reader.getTestCount(); i++) {
+            final String testName = reader.getTestName(i);
+            final int testIndex = i;
+            if (requiredTests.containsKey(testName)) {
+                tests.putEncoded(testName, () -> reader.readTest(testIndex));
+            } else if (hasDynamicFilters) {
+                final ConsumableTestDefinition testDefinition = reader.readTest(i);
+                if ((testDefinition != null) && dynamicFilters.matches(testName, testDefinition)) {
+                    tests.put(testName, testDefinition);
+                }
+            }
+        }
+        return tests.toArtifact(audit);
+    }
+
+    /**
+     * @param testsConsumer consumes the value for "tests", and sets the tests of the artifact
+     */
+    @Nonnull
+    private TestMatrixArtifact parseJsonTestMatrix(
+            @Nonnull final JsonParser jsonParser,
+            @Nonnull final TestMatrixArtifact testMatrixArtifact,
+            @Nonnull final JsonConsumer testsConsumer
+    ) throws IOException {
+        final Audit lastAudit = getLastAudit();
+        final AtomicBoolean testsParsed = new AtomicBoolean();
+        final AtomicBoolean auditUnchanged = new AtomicBoolean();
+
+        // At this point, currentToken() returns null.
+
+        // Go to the next token, which must be "{".
+        // This condition will be verified in consumeJson.
+        jsonParser.nextToken();
+
+        JsonParserUtils.consumeJson(
+                jsonParser,
+                (key, parser) -> {
+                    switch (key) {
+                        case TEST_MATRIX_ARTIFACT_JSON_KEY_AUDIT:
+                            // The value for "audit" field must be an object.
+                            Preconditions.checkState(parser.currentToken() == JsonToken.START_OBJECT);
+
+                            final Audit audit = OBJECT_MAPPER.readValue(parser, Audit.class);
+                            testMatrixArtifact.setAudit(audit);
+                            if ((lastAudit != null) && !testsParsed.get() && lastAudit.getVersion().equals(audit.getVersion())) {
+                                auditUnchanged.set(true);
+                            }
+                            break;
+
+                        case TEST_MATRIX_ARTIFACT_JSON_KEY_TESTS:
+                            // The value for "tests" field must be an object.
+                            Preconditions.checkState(parser.currentToken() == JsonToken.START_OBJECT);
+
+                            testsConsumer.accept(parser);
+                            testsParsed.set(true);
+                            break;
+
+                        default:
+                            LOGGER.warn("Unknown test matrix artifact json key: '" + key + "'");
+                            // If key is not either "audit" or "tests", just skip the value.
+                            parser.skipChildren();
+                            break;
+                    }
+                },
+                auditUnchanged::get
+        );
+
+        if (auditUnchanged.get()) {
+            testMatrixArtifact.setTests(Collections.emptyMap());
+            return testMatrixArtifact;
+        }
+
+        Preconditions.checkNotNull(testMatrixArtifact.getAudit(), "Field \"audit\" was not found in json");
+        // the artifact has empty tests by default, and lazily loaded tests are not set to the artifact
+        Preconditions.checkState(testsParsed.get(), "Field \"tests\" was not found in json");
+
+        return testMatrixArtifact;
+    }
+
     private Map<String, ConsumableTestDefinition> extractReferencedTests(@Nonnull final JsonParser jsonParser) throws IOException {
         // use HashMap instead of ImmutableMap.Builder because null might be put
         final Map<String, ConsumableTestDefinition> tests = new HashMap<>();
@@ -131,6 +224,44 @@ public abstract class AbstractJsonProctorLoader extends AbstractProctorLoader {
         return tests;
     }
 
+    private void indexReferencedTests(
+            @Nonnull final JsonParser jsonParser,
+            @Nonnull final ByteBuffer buffer,
+            @Nonnull final LazyTestDefinitionMap tests
+    ) throws IOException {
+        final boolean hasDynamicFilters = !dynamicFilters.asCollection().isEmpty();
+        final int start = buffer.position();
+        JsonParserUtils.consumeJson(
+                jsonParser,
+                (testName, parser) -> {
+                    if (!requiredTests.containsKey(testName)) {
+                        if (hasDynamicFilters) {
+                            final ConsumableTestDefinition testDefinition = OBJECT_MAPPER.readValue(parser, ConsumableTestDefinition.class);
+                            if ((testDefinition != null) && dynamicFilters.matches(testName, testDefinition)) {
+                                tests.put(testName, testDefinition);
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                        return;
+                    }
+                    if (parser.currentToken() != JsonToken.START_OBJECT) {
+                        tests.put(testName, OBJECT_MAPPER.readValue(parser, ConsumableTestDefinition.class));
+                        return;
+                    }
+                    final int from = start + (int) parser.getTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    final int to = start + (int) parser.getTokenLocation().getByteOffset() + 1;
+                    tests.putEncoded(testName, () -> {
+                        final ByteBuffer definition = buffer.duplicate();
+                        definition.limit(to);
+                        definition.position(from);
+                        return OBJECT_MAPPER.readValue(new ByteBufferBackedInputStream(definition), ConsumableTestDefinition.class);
+                    });
+                }
+        );
+    }
+
     private boolean isTestReferenced(final String testName, final ConsumableTestDefinition testDefinition) {
         // check required tests
         if (Preconditions.checkNotNull(requiredTests).containsKey(testName)) {
@@ -145,4 +276,8 @@ public abstract class AbstractJsonProctorLoader extends AbstractProctorLoader {
         // check dynamic filters
         return dynamicFilters.matches(testName, testDefinition);
     }
+
+    private interface JsonConsumer {
+        void accept(JsonParser jsonParser) throws IOException;
+    }
 }
@@ -40,6 +40,9 @@ public abstract class AbstractProctorLoader extends DataLoadingTimerTask impleme
     private String lastLoadErrorMessage = "load never attempted";
     @Nonnull
     private final FunctionMapper functionMapper;
+    @Nonnull
+    private volatile RuleEngine ruleEngine = RuleEngine.EL;
+    private volatile boolean detailedMetricsEnabled;
     private final ProvidedContext providedContext;
     protected final DynamicFilters dynamicFilters;
 
@@ -89,6 +92,9 @@ public abstract class AbstractProctorLoader extends DataLoadingTimerTask impleme
 
     @Override
     public boolean load() {
+        // log rule failures counted after the last logged one, as they are otherwise only logged with the next failure
+        RuleFailureLog.getInstance().flushIfDue();
+
         final Proctor newProctor;
         try {
             newProctor = doLoad();
@@ -123,6 +129,19 @@ public abstract class AbstractProctorLoader extends DataLoadingTimerTask impleme
             throw new MissingTestMatrixException("Failed to load Test Matrix from " + getSource());
         }
 
+        // check the audit first, so that polling an unchanged matrix does not filter and verify its tests
+        final Audit newAudit = testMatrix.getAudit();
+        if (lastAudit != null) {
+            final Audit audit = Preconditions.checkNotNull(newAudit, "Missing audit");
+            if (lastAudit.getVersion().equals(audit.getVersion())) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Not reloading " + getSource() + " test matrix definition because audit is unchanged: " + lastAudit.getVersion() + " @ " + lastAudit.getUpdated() + " by " + lastAudit.getUpdatedBy());
+                }
+
+                return null;
+            }
+        }
+
         final Set<String> dynamicTests = dynamicFilters.determineTests(
                 testMatrix.getTests(),
                 requiredTests.keySet()
@@ -154,19 +173,10 @@ public abstract class AbstractProctorLoader extends DataLoadingTimerTask impleme
             ));
         });
 
-        final Audit newAudit = testMatrix.getAudit();
-        if (lastAudit != null) {
-            final Audit audit = Preconditions.checkNotNull(newAudit, "Missing audit");
-            if (lastAudit.getVersion().equals(audit.getVersion())) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Not reloading " + getSource() + " test matrix definition because audit is unchanged: " + lastAudit.getVersion() + " @ " + lastAudit.getUpdated() + " by " + lastAudit.getUpdatedBy());
-                }
-
-                return null;
-            }
+        final Proctor proctor = Proctor.construct(testMatrix, loadResult, functionMapper, ruleEngine, current);
+        if (detailedMetricsEnabled) {
+            proctor.enableDetailedMetrics();
         }
-
-        final Proctor proctor = Proctor.construct(testMatrix, loadResult, functionMapper);
         //  kind of lame to modify lastAudit here but current in load(), but the interface is a little constraining
         setLastAudit(newAudit);
         return proctor;
@@ -216,6 +226,29 @@ public abstract class AbstractProctorLoader extends DataLoadingTimerTask impleme
         addLoadReporter(diffReporter);
     }
 
+    /**
+     * @param ruleEngine how Proctors loaded from now on evaluate rules, {@link RuleEngine#EL} by default
+     */
+    public void setRuleEngine(@Nonnull final RuleEngine ruleEngine) {
+        this.ruleEngine = Preconditions.checkNotNull(ruleEngine, "RuleEngine can't be null");
+    }
+
+    @Nonnull
+    public RuleEngine getRuleEngine() {
+        return ruleEngine;
+    }
+
+    /**
+     * @param detailedMetricsEnabled whether Proctors loaded from now on count per-test metrics, see {@link Proctor#enableDetailedMetrics()}
+     */
+    public void setDetailedMetricsEnabled(final boolean detailedMetricsEnabled) {
+        this.detailedMetricsEnabled = detailedMetricsEnabled;
+    }
+
+    public boolean isDetailedMetricsEnabled() {
+        return detailedMetricsEnabled;
+    }
+
     public void addLoadReporter(@Nonnull final ProctorLoadReporter diffReporter) {
         Preconditions.checkNotNull(diffReporter, "ProctorLoadReporter can't be null");
         addLoadReporter(ImmutableList.of(diffReporter));
@@ -0,0 +1,234 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.el.LazyReadOnlyVariableMapper;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestType;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.el.VariableMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Determines groups of all tests for a batch of identifiers sharing one context.
+ *
+ * As rules only depend on the context, the rules of each test are evaluated once for the batch,
+ * and only identifiers are hashed per identifier, optionally in parallel on a {@link ForkJoinPool}.
+ * Each identifier gets the same buckets and allocations as determining its groups alone with the same context.
+ *
+ * Not thread-safe, one instance per batch.
+ */
+class BatchDetermination {
+    /**
+     * identifiers per fork-join task, below which identifiers are not split further
+     */
+    private static final int IDENTIFIERS_PER_TASK = 256;
+
+    @Nonnull
+    private final Identifiers[] identifiers;
+    /**
+     * whether any identifier of the batch enables random tests
+     */
+    private final boolean randomEnabled;
+    @Nonnull
+    private final Map<String, Integer> forceGroups;
+    @Nonnull
+    private final VariableMapper contextVariables;
+    @Nullable
+    private final SharedRuleResults sharedRuleResults;
+    /**
+     * identifiers of the batch encoded at most once per test type, null for identifiers without identifier for the type
+     */
+    private final Map<TestType, byte[][]> encodedIdentifiers = new HashMap<>();
+
+    BatchDetermination(
+            @Nonnull final List<Identifiers> identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            final int sharedRuleCount
+    ) {
+        this.identifiers = identifiers.toArray(new Identifiers[0]);
+        this.randomEnabled = identifiers.stream().anyMatch(Identifiers::isRandomEnabled);
+        this.forceGroups = forceGroups;
+        this.contextVariables = new LazyReadOnlyVariableMapper(RuleEvaluator.EXPRESSION_FACTORY, inputContext);
+        this.sharedRuleResults = (sharedRuleCount > 0) ? new SharedRuleResults(sharedRuleCount) : null;
+    }
+
+    /**
+     * @param testChoosers choosers by test index, null for tests not to determine
+     * @param pool         pool to hash identifiers in parallel, or null to hash them in the calling thread
+     */
+    @Nonnull
+    BatchProctorResult determine(
+            final String matrixVersion,
+            @Nonnull final TestIndex testIndex,
+            @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions,
+            @Nonnull final TestChooser<?>[] testChoosers,
+            @Nullable final ForkJoinPool pool
+    ) {
+        final int identifierCount = identifiers.length;
+        final TestBucket[][] bucketTables = new TestBucket[testChoosers.length][];
+        final Allocation[] allocations = new Allocation[testChoosers.length];
+        final int[] matchingRuleIndexes = new int[testChoosers.length];
+        final byte[][][] testIdentifiers = new byte[testChoosers.length][][];
+        final int[][] cells = new int[testChoosers.length][];
+
+        // rules and forced groups, once per test in the calling thread
+        for (int i = 0; i < testChoosers.length; i++) {
+            final TestChooser<?> testChooser = testChoosers[i];
+            if ((testChooser == null) || (identifierCount == 0)) {
+                continue;
+            }
+            if (testChooser instanceof StandardTestChooser) {
+                testIdentifiers[i] = getEncodedIdentifiers(testChooser.getTestDefinition().getTestType());
+                if (testIdentifiers[i] == null) {
+                    // No identifier for the testType of this chooser, nothing to do
+                    continue;
+                }
+            } else if (!randomEnabled) {
+                // test wants random chooser, but all identifiers disabled random, nothing to do
+                continue;
+            }
+            final Integer forceGroupBucket = forceGroups.get(testIndex.getTestName(i));
+            final TestBucket forcedTestBucket = (forceGroupBucket == null) ? null : testChooser.getTestBucket(forceGroupBucket);
+            if (forcedTestBucket != null) {
+                // use forced group
+                bucketTables[i] = new TestBucket[]{forcedTestBucket};
+                matchingRuleIndexes[i] = -1;
+            } else {
+                final TestRangeSelector selector = testChooser.getTestRangeSelector();
+                final int matchingRuleIndex = (selector == null) ? -1 : selector.findMatchingRule(contextVariables, sharedRuleResults);
+                if (matchingRuleIndex < 0) {
+                    continue;
+                }
+                bucketTables[i] = (testChooser instanceof StandardTestChooser)
+                        ? selector.getBucketRange(matchingRuleIndex)
+                        : ((RandomTestChooser) testChooser).getRangeBuckets(matchingRuleIndex);
+                allocations[i] = selector.getTestDefinition().getAllocations().get(matchingRuleIndex);
+                matchingRuleIndexes[i] = matchingRuleIndex;
+            }
+            cells[i] = new int[identifierCount];
+        }
+
+        // identifiers, in parallel if a pool is given
+        final ChooseRanges chooseRanges = new ChooseRanges(testChoosers, matchingRuleIndexes, testIdentifiers, cells, 0, identifierCount, pool != null);
+        if (pool == null) {
+            chooseRanges.compute();
+        } else {
+            pool.invoke(chooseRanges);
+        }
+        return new BatchProctorResult(matrixVersion, testIndex, identifierCount, bucketTables, allocations, cells, testDefinitions);
+    }
+
+    /**
+     * Adds hits and evaluations of shared rules of the batch to the given counters
+     */
+    void reportSharedRuleCounters(@Nonnull final LongAdder hits, @Nonnull final LongAdder evaluations) {
+        if (sharedRuleResults == null) {
+            return;
+        }
+        hits.add(sharedRuleResults.getHits());
+        evaluations.add(sharedRuleResults.getEvaluations());
+    }
+
+    /**
+     * @return encoded identifiers by identifier index, or null if no identifier has an identifier for the test type
+     */
+    @CheckForNull
+    private byte[][] getEncodedIdentifiers(@Nonnull final TestType testType) {
+        if (encodedIdentifiers.containsKey(testType)) {
+            return encodedIdentifiers.get(testType);
+        }
+        byte[][] encoded = null;
+        for (int j = 0; j < identifiers.length; j++) {
+            final String identifier = identifiers[j].getIdentifier(testType);
+            if (identifier != null) {
+                if (encoded == null) {
+                    encoded = new byte[identifiers.length][];
+                }
+                encoded[j] = identifier.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        encodedIdentifiers.put(testType, encoded);
+        return encoded;
+    }
+
+    /**
+     * Fills cells of a range of identifiers, splitting the range across fork-join tasks.
+     * Tasks write distinct elements of the cell arrays.
+     */
+    private class ChooseRanges extends RecursiveAction {
+        private final TestChooser<?>[] testChoosers;
+        private final int[] matchingRuleIndexes;
+        private final byte[][][] testIdentifiers;
+        private final int[][] cells;
+        private final int from;
+        private final int to;
+        /**
+         * whether to split the range across tasks
+         */
+        private final boolean parallel;
+
+        private ChooseRanges(
+                final TestChooser<?>[] testChoosers,
+                final int[] matchingRuleIndexes,
+                final byte[][][] testIdentifiers,
+                final int[][] cells,
+                final int from,
+                final int to,
+                final boolean parallel
+        ) {
+            this.testChoosers = testChoosers;
+            this.matchingRuleIndexes = matchingRuleIndexes;
+            this.testIdentifiers = testIdentifiers;
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            if (parallel && (to - from > IDENTIFIERS_PER_TASK)) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                        new ChooseRanges(testChoosers, matchingRuleIndexes, testIdentifiers, cells, from, middle, true),
+                        new ChooseRanges(testChoosers, matchingRuleIndexes, testIdentifiers, cells, middle, to, true)
+                );
+                return;
+            }
+            for (int i = 0; i < testChoosers.length; i++) {
+                final int[] testCells = cells[i];
+                if (testCells == null) {
+                    continue;
+                }
+                final TestChooser<?> testChooser = testChoosers[i];
+                final int matchingRuleIndex = matchingRuleIndexes[i];
+                final byte[][] encoded = testIdentifiers[i];
+                for (int j = from; j < to; j++) {
+                    if (testChooser instanceof StandardTestChooser) {
+                        if (encoded[j] == null) {
+                            continue;
+                        }
+                        testCells[j] = 1 + ((matchingRuleIndex < 0)
+                                ? 0
+                                : ((StandardTestChooser) testChooser).chooseRange(matchingRuleIndex, encoded[j]));
+                    } else if (identifiers[j].isRandomEnabled()) {
+                        testCells[j] = 1 + ((matchingRuleIndex < 0)
+                                ? 0
+                                : ((RandomTestChooser) testChooser).chooseRange(matchingRuleIndex));
+                    }
+                }
+            }
+        }
+    }
+}
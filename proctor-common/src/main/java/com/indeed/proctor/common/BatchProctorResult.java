@@ -0,0 +1,147 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.TestBucket;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+/**
+ * Results of a batch of identifiers determined with one context by {@link Proctor#determineTestGroupsBatch},
+ * held by column per test rather than as one {@link ProctorResult} per identifier.
+ *
+ * Buckets and allocations are looked up by the index of the test in {@link #getTestIndex()}
+ * and the index of the identifier in the batch.
+ * Immutable.
+ */
+public final class BatchProctorResult {
+    private final String matrixVersion;
+    @Nonnull
+    private final TestIndex testIndex;
+    private final int identifierCount;
+    /**
+     * by test index, buckets referred to by cells: buckets of the ranges of the matching allocation, or the forced bucket
+     */
+    @Nonnull
+    private final TestBucket[][] bucketTables;
+    /**
+     * by test index, allocation of all identifiers the test applies to, null if the bucket is forced
+     */
+    @Nonnull
+    private final Allocation[] allocations;
+    /**
+     * by test index and identifier index, 1 + index of the bucket in the bucket table of the test, 0 if the test
+     * does not apply to the identifier, null for tests applying to no identifier
+     */
+    @Nonnull
+    private final int[][] cells;
+    @Nonnull
+    private final Map<String, ConsumableTestDefinition> testDefinitions;
+
+    BatchProctorResult(
+            final String matrixVersion,
+            @Nonnull final TestIndex testIndex,
+            final int identifierCount,
+            @Nonnull final TestBucket[][] bucketTables,
+            @Nonnull final Allocation[] allocations,
+            @Nonnull final int[][] cells,
+            @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions
+    ) {
+        this.matrixVersion = matrixVersion;
+        this.testIndex = testIndex;
+        this.identifierCount = identifierCount;
+        this.bucketTables = bucketTables;
+        this.allocations = allocations;
+        this.cells = cells;
+        this.testDefinitions = testDefinitions;
+    }
+
+    public String getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    /**
+     * @return the index of tests of the Proctor, shared with results of single requests
+     */
+    @Nonnull
+    public TestIndex getTestIndex() {
+        return testIndex;
+    }
+
+    /**
+     * @return number of identifiers of the batch, in the order of the list of identifiers
+     */
+    public int getIdentifierCount() {
+        return identifierCount;
+    }
+
+    @Nonnull
+    public Map<String, ConsumableTestDefinition> getTestDefinitions() {
+        return testDefinitions;
+    }
+
+    /**
+     * @return the bucket of the test for the identifier, or null if the test does not apply to the identifier
+     */
+    @CheckForNull
+    public TestBucket getBucket(final int testIndex, final int identifierIndex) {
+        final int cell = getCell(testIndex, identifierIndex);
+        return (cell == 0) ? null : bucketTables[testIndex][cell - 1];
+    }
+
+    /**
+     * Same as {@link #getBucket(int, int)}, returning the value of the bucket without dereferencing it
+     *
+     * @return the value of the bucket of the test for the identifier, or defaultValue if the test does not apply to the identifier
+     */
+    public int getBucketValue(final int testIndex, final int identifierIndex, final int defaultValue) {
+        final TestBucket bucket = getBucket(testIndex, identifierIndex);
+        return (bucket == null) ? defaultValue : bucket.getValue();
+    }
+
+    /**
+     * @return the allocation of the test for the identifier, or null if the test does not apply to the identifier or its bucket is forced
+     */
+    @CheckForNull
+    public Allocation getAllocation(final int testIndex, final int identifierIndex) {
+        return (getCell(testIndex, identifierIndex) == 0) ? null : allocations[testIndex];
+    }
+
+    /**
+     * @return the result of a single identifier, the same as determining its groups alone,
+     * e.g. to log it through {@code AbstractGroups}
+     */
+    @Nonnull
+    public ProctorResult getResult(final int identifierIndex) {
+        checkIdentifierIndex(identifierIndex);
+        final TestBucket[] buckets = new TestBucket[cells.length];
+        final Allocation[] resultAllocations = new Allocation[cells.length];
+        int bucketCount = 0;
+        int allocationCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            buckets[i] = getBucket(i, identifierIndex);
+            if (buckets[i] != null) {
+                bucketCount++;
+            }
+            resultAllocations[i] = getAllocation(i, identifierIndex);
+            if (resultAllocations[i] != null) {
+                allocationCount++;
+            }
+        }
+        return new ProctorResult(matrixVersion, testIndex, buckets, bucketCount, resultAllocations, allocationCount, testDefinitions);
+    }
+
+    private int getCell(final int testIndex, final int identifierIndex) {
+        checkIdentifierIndex(identifierIndex);
+        final int[] testCells = cells[testIndex];
+        return (testCells == null) ? 0 : testCells[identifierIndex];
+    }
+
+    private void checkIdentifierIndex(final int identifierIndex) {
+        if ((identifierIndex < 0) || (identifierIndex >= identifierCount)) {
+            throw new IndexOutOfBoundsException("Identifier index " + identifierIndex + " out of " + identifierCount + " identifiers");
+        }
+    }
+}
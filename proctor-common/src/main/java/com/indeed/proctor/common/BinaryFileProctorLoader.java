@@ -0,0 +1,66 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import org.apache.log4j.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.el.FunctionMapper;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Support class for loading a test matrix artifact from a file written by {@link BinaryTestMatrixWriter},
+ * or from a JSON file like {@link FileProctorLoader}, detected by the content of the file.
+ *
+ * Only required tests are decoded from a binary file, when first accessed,
+ * and other tests only if the specification has dynamic filters.
+ */
+public class BinaryFileProctorLoader extends AbstractJsonProctorLoader {
+    private static final Logger LOGGER = Logger.getLogger(BinaryFileProctorLoader.class);
+
+    @Nonnull
+    private final File inputFile;
+
+    public BinaryFileProctorLoader(@Nonnull final ProctorSpecification specification, @Nonnull final String inputFile, @Nonnull final FunctionMapper functionMapper) {
+        this(specification, new File(inputFile), functionMapper);
+    }
+
+    public BinaryFileProctorLoader(@Nonnull final ProctorSpecification specification, @Nonnull final File inputFile, @Nonnull final FunctionMapper functionMapper) {
+        super(BinaryFileProctorLoader.class, specification, functionMapper);
+        this.inputFile = inputFile;
+    }
+
+    @Nonnull
+    @Override
+    protected String getSource() {
+        return inputFile.getAbsolutePath();
+    }
+
+    @CheckForNull
+    @Override
+    protected TestMatrixArtifact loadTestMatrix() throws IOException, MissingTestMatrixException {
+        if (! inputFile.exists()) {
+            throw new MissingTestMatrixException("File " + inputFile + " does not exist");
+        }
+        if (! inputFile.canRead()) {
+            throw new MissingTestMatrixException("Cannot read input file " + inputFile);
+        }
+        final byte[] content = Files.readAllBytes(inputFile.toPath());
+        final ByteBuffer buffer = ByteBuffer.wrap(content);
+        if (!BinaryTestMatrixReader.isBinaryTestMatrix(buffer)) {
+            return loadJsonTestMatrix(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        }
+        try {
+            return loadBinaryTestMatrix(new BinaryTestMatrixReader(buffer));
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("Unable to load test matrix from " + getSource(), e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.indeed.proctor.common;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Payload;
+import com.indeed.proctor.common.model.Range;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestType;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads test definitions on demand from a test matrix artifact written by {@link BinaryTestMatrixWriter}.
+ *
+ * Only the header is read on construction, test definitions and the strings they use are decoded when read.
+ * Reading is thread-safe as long as the buffer content does not change.
+ */
+class BinaryTestMatrixReader {
+    private static final ObjectMapper OBJECT_MAPPER = Serializers.lenient();
+    private static final TypeReference<Map<String, Object>> CONSTANTS_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    @Nonnull
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsetsPosition;
+    private final int stringDataPosition;
+    private final int testCount;
+    private final int testIndexPosition;
+    private final int definitionsPosition;
+    /**
+     * decoded strings, racy but only ever set to equal values
+     */
+    @Nonnull
+    private final String[] strings;
+    @Nonnull
+    private final Audit audit;
+
+    BinaryTestMatrixReader(@Nonnull final ByteBuffer buffer) throws IOException {
+        if (!isBinaryTestMatrix(buffer)) {
+            throw new IOException("Not a binary test matrix");
+        }
+        this.buffer = buffer.duplicate();
+        final int position = buffer.position();
+        final int formatVersion = buffer.getInt(position + 4);
+        if (formatVersion != BinaryTestMatrixWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported binary test matrix format version " + formatVersion);
+        }
+        stringCount = buffer.getInt(position + 8);
+        stringOffsetsPosition = position + 12;
+        stringDataPosition = stringOffsetsPosition + (4 * (stringCount + 1));
+        final int auditPosition = stringDataPosition + buffer.getInt(stringDataPosition - 4);
+        strings = new String[stringCount];
+
+        audit = new Audit();
+        audit.setVersion(getString(buffer.getInt(auditPosition)));
+        audit.setUpdated(buffer.getLong(auditPosition + 4));
+        audit.setUpdatedBy(getString(buffer.getInt(auditPosition + 12)));
+
+        testCount = buffer.getInt(auditPosition + 16);
+        testIndexPosition = auditPosition + 20;
+        definitionsPosition = testIndexPosition + (12 * testCount);
+        if ((testCount < 0) || (definitionsPosition > buffer.limit())) {
+            throw new IOException("Truncated binary test matrix");
+        }
+    }
+
+    /**
+     * @return true if the remaining bytes of the buffer start with the header of {@link BinaryTestMatrixWriter}
+     */
+    static boolean isBinaryTestMatrix(@Nonnull final ByteBuffer buffer) {
+        return (buffer.remaining() >= 8) && (buffer.getInt(buffer.position()) == BinaryTestMatrixWriter.MAGIC);
+    }
+
+    @Nonnull
+    Audit getAudit() {
+        return audit;
+    }
+
+    int getTestCount() {
+        return testCount;
+    }
+
+    @Nonnull
+    String getTestName(final int testIndex) {
+        return getString(buffer.getInt(testIndexPosition + (12 * testIndex)));
+    }
+
+    /**
+     * @return the definition of the test at the index in the artifact, null if the artifact has a null definition
+     */
+    @CheckForNull
+    ConsumableTestDefinition readTest(final int testIndex) throws IOException {
+        final int offset = buffer.getInt(testIndexPosition + (12 * testIndex) + 4);
+        if (offset < 0) {
+            return null;
+        }
+        final int length = buffer.getInt(testIndexPosition + (12 * testIndex) + 8);
+        final ByteBuffer input = buffer.duplicate();
+        input.limit(definitionsPosition + offset + length);
+        input.position(definitionsPosition + offset);
+
+        final ConsumableTestDefinition definition = new ConsumableTestDefinition();
+        definition.setVersion(readString(input));
+        definition.setSalt(readString(input));
+        definition.setRule(readString(input));
+        final String testType = readString(input);
+        if (testType != null) {
+            definition.setTestType(TestType.getTestType(testType));
+        }
+        definition.setSilent(input.get() != 0);
+        definition.setDescription(readString(input));
+        final int metaTagCount = input.getInt();
+        final List<String> metaTags = new ArrayList<>(metaTagCount);
+        for (int i = 0; i < metaTagCount; i++) {
+            metaTags.add(readString(input));
+        }
+        definition.setMetaTags(metaTags);
+        final String constants = readString(input);
+        definition.setConstants((constants == null) ? Collections.emptyMap() : OBJECT_MAPPER.readValue(constants, CONSTANTS_TYPE));
+
+        final int bucketCount = input.getInt();
+        final List<TestBucket> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            final String name = readString(input);
+            final int value = input.getInt();
+            final String description = readString(input);
+            final String payload = readString(input);
+            buckets.add(TestBucket.builder()
+                    .name(name)
+                    .value(value)
+                    .description(description)
+                    .payload((payload == null) ? null : OBJECT_MAPPER.readValue(payload, Payload.class))
+                    .build());
+        }
+        definition.setBuckets(buckets);
+
+        final int allocationCount = input.getInt();
+        final List<Allocation> allocations = new ArrayList<>(allocationCount);
+        for (int i = 0; i < allocationCount; i++) {
+            final String rule = readString(input);
+            final String id = readString(input);
+            final int rangeCount = input.getInt();
+            final List<Range> ranges = new ArrayList<>(rangeCount);
+            for (int j = 0; j < rangeCount; j++) {
+                final int bucketValue = input.getInt();
+                ranges.add(new Range(bucketValue, input.getDouble()));
+            }
+            allocations.add(new Allocation(rule, ranges, id));
+        }
+        definition.setAllocations(allocations);
+        return definition;
+    }
+
+    @CheckForNull
+    private String readString(@Nonnull final ByteBuffer input) {
+        return getString(input.getInt());
+    }
+
+    private String getString(final int stringIndex) {
+        if (stringIndex == BinaryTestMatrixWriter.NULL_STRING) {
+            return null;
+        }
+        String string = strings[stringIndex];
+        if (string == null) {
+            final int start = buffer.getInt(stringOffsetsPosition + (4 * stringIndex));
+            final int end = buffer.getInt(stringOffsetsPosition + (4 * (stringIndex + 1)));
+            final byte[] bytes = new byte[end - start];
+            final ByteBuffer input = buffer.duplicate();
+            input.position(stringDataPosition + start);
+            input.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[stringIndex] = string;
+        }
+        return string;
+    }
+}
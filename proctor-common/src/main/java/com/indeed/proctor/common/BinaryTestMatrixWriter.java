@@ -0,0 +1,159 @@
+package com.indeed.proctor.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Payload;
+import com.indeed.proctor.common.model.Range;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a test matrix artifact in a compact binary format, read by {@link BinaryTestMatrixReader}.
+ *
+ * All strings of the artifact, including constants and payloads serialized as json, are interned in a string table,
+ * and followed by an index of the offset of each test definition,
+ * so that a loader decodes only the tests it needs without parsing the others.
+ * <pre>
+ * int magic, int format version
+ * int string count, int[count] string offsets, int string data length, byte[] utf-8 string data
+ * audit: int version, long updated, int updatedBy
+ * int test count, per test: int name, int offset, int length (offset -1 for a null definition)
+ * test definitions: int version, int salt, int rule, int testType, boolean silent, int description,
+ *   int metaTag count, int[] metaTags, int constants,
+ *   int bucket count, per bucket: int name, int value, int description, int payload,
+ *   int allocation count, per allocation: int rule, int id, int range count, per range: int bucketValue, double length
+ * </pre>
+ * Strings are written as indexes into the string table, -1 for null. Offsets of test definitions are relative to the first definition.
+ */
+public final class BinaryTestMatrixWriter {
+    static final int MAGIC = 0x5052544D; // "PRTM"
+    static final int FORMAT_VERSION = 1;
+    static final int NULL_STRING = -1;
+
+    // not Serializers.lenient(), which rounds doubles when writing
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<byte[]> strings = new ArrayList<>();
+
+    private BinaryTestMatrixWriter() {
+    }
+
+    /**
+     * Writes the artifact to the output stream, without closing it
+     */
+    public static void write(@Nonnull final TestMatrixArtifact artifact, @Nonnull final OutputStream outputStream) throws IOException {
+        final Audit audit = Preconditions.checkNotNull(artifact.getAudit(), "Missing audit");
+        new BinaryTestMatrixWriter().writeArtifact(audit, artifact.getTests(), outputStream);
+    }
+
+    private void writeArtifact(
+            @Nonnull final Audit audit,
+            @Nonnull final Map<String, ConsumableTestDefinition> tests,
+            @Nonnull final OutputStream outputStream
+    ) throws IOException {
+        final ByteArrayOutputStream definitions = new ByteArrayOutputStream();
+        final DataOutputStream definitionsOutput = new DataOutputStream(definitions);
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        final DataOutputStream indexOutput = new DataOutputStream(index);
+        for (final Map.Entry<String, ConsumableTestDefinition> entry : tests.entrySet()) {
+            indexOutput.writeInt(intern(entry.getKey()));
+            if (entry.getValue() == null) {
+                indexOutput.writeInt(-1);
+                indexOutput.writeInt(0);
+            } else {
+                final int offset = definitionsOutput.size();
+                writeDefinition(entry.getValue(), definitionsOutput);
+                indexOutput.writeInt(offset);
+                indexOutput.writeInt(definitionsOutput.size() - offset);
+            }
+        }
+        final int versionIndex = intern(audit.getVersion());
+        final int updatedByIndex = intern(audit.getUpdatedBy());
+
+        final DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(strings.size());
+        int stringOffset = 0;
+        for (final byte[] string : strings) {
+            output.writeInt(stringOffset);
+            stringOffset += string.length;
+        }
+        output.writeInt(stringOffset);
+        for (final byte[] string : strings) {
+            output.write(string);
+        }
+        output.writeInt(versionIndex);
+        output.writeLong(audit.getUpdated());
+        output.writeInt(updatedByIndex);
+        output.writeInt(tests.size());
+        index.writeTo(output);
+        definitions.writeTo(output);
+        output.flush();
+    }
+
+    private void writeDefinition(@Nonnull final ConsumableTestDefinition definition, @Nonnull final DataOutputStream output) throws IOException {
+        output.writeInt(intern(definition.getVersion()));
+        output.writeInt(intern(definition.getSalt()));
+        output.writeInt(intern(definition.getRule()));
+        output.writeInt(intern((definition.getTestType() == null) ? null : definition.getTestType().name()));
+        output.writeBoolean(definition.getSilent());
+        output.writeInt(intern(definition.getDescription()));
+        output.writeInt(definition.getMetaTags().size());
+        for (final String metaTag : definition.getMetaTags()) {
+            output.writeInt(intern(metaTag));
+        }
+        output.writeInt(internJson(definition.getConstants().isEmpty() ? null : definition.getConstants()));
+
+        output.writeInt(definition.getBuckets().size());
+        for (final TestBucket bucket : definition.getBuckets()) {
+            output.writeInt(intern(bucket.getName()));
+            output.writeInt(bucket.getValue());
+            output.writeInt(intern(bucket.getDescription()));
+            final Payload payload = bucket.getPayload();
+            output.writeInt(internJson(payload));
+        }
+
+        output.writeInt(definition.getAllocations().size());
+        for (final Allocation allocation : definition.getAllocations()) {
+            output.writeInt(intern(allocation.getRule()));
+            output.writeInt(intern(allocation.getId()));
+            output.writeInt(allocation.getRanges().size());
+            for (final Range range : allocation.getRanges()) {
+                output.writeInt(range.getBucketValue());
+                output.writeDouble(range.getLength());
+            }
+        }
+    }
+
+    private int internJson(@Nullable final Object value) throws JsonProcessingException {
+        return intern((value == null) ? null : OBJECT_MAPPER.writeValueAsString(value));
+    }
+
+    private int intern(@Nullable final String string) {
+        if (string == null) {
+            return NULL_STRING;
+        }
+        return stringIndexes.computeIfAbsent(string, s -> {
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+            return strings.size() - 1;
+        });
+    }
+}
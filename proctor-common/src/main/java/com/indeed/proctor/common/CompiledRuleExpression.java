@@ -0,0 +1,89 @@
+package com.indeed.proctor.common;
+
+import org.apache.el.lang.ELSupport;
+
+import javax.annotation.Nonnull;
+import javax.el.ELContext;
+import javax.el.ValueExpression;
+
+/**
+ * A boolean rule compiled by {@link RuleCompiler}, standing in for the apache-el expression it was compiled from.
+ * Only {@link #getValue(ELContext)} uses the compiled form, other methods delegate to the apache-el expression.
+ */
+class CompiledRuleExpression extends ValueExpression {
+    private static final long serialVersionUID = 1L;
+
+    @Nonnull
+    private final ValueExpression elExpression;
+    @Nonnull
+    private final transient RuleCompiler.Evaluator evaluator;
+    /**
+     * true if the type of the rule depends on the context, and must be checked on each evaluation like for apache-el expressions
+     */
+    private final boolean checkTypeOnEvaluation;
+
+    CompiledRuleExpression(
+            @Nonnull final ValueExpression elExpression,
+            @Nonnull final RuleCompiler.Evaluator evaluator,
+            final boolean checkTypeOnEvaluation
+    ) {
+        this.elExpression = elExpression;
+        this.evaluator = evaluator;
+        this.checkTypeOnEvaluation = checkTypeOnEvaluation;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the type of the rule is not boolean
+     */
+    boolean evaluate(@Nonnull final ELContext elContext) {
+        if (checkTypeOnEvaluation) {
+            RuleEvaluator.checkRuleIsBooleanType(getExpressionString(), elContext, elExpression);
+        }
+        return (Boolean) getValue(elContext);
+    }
+
+    @Override
+    public Object getValue(final ELContext context) {
+        return ELSupport.coerceToBoolean(evaluator.getValue(context));
+    }
+
+    @Override
+    public Class<?> getType(final ELContext context) {
+        return elExpression.getType(context);
+    }
+
+    @Override
+    public Class<?> getExpectedType() {
+        return elExpression.getExpectedType();
+    }
+
+    @Override
+    public boolean isReadOnly(final ELContext context) {
+        return elExpression.isReadOnly(context);
+    }
+
+    @Override
+    public void setValue(final ELContext context, final Object value) {
+        elExpression.setValue(context, value);
+    }
+
+    @Override
+    public String getExpressionString() {
+        return elExpression.getExpressionString();
+    }
+
+    @Override
+    public boolean isLiteralText() {
+        return false;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return (obj instanceof CompiledRuleExpression) && elExpression.equals(((CompiledRuleExpression) obj).elExpression);
+    }
+
+    @Override
+    public int hashCode() {
+        return elExpression.hashCode();
+    }
+}
@@ -0,0 +1,210 @@
+package com.indeed.proctor.common;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.util.varexport.Export;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-test counters of a {@link Proctor}, only created and updated once detailed metrics are enabled,
+ * see {@link Proctor#enableDetailedMetrics()}.
+ *
+ * Counters are {@link LongAdder}s indexed like the {@link TestIndex} of the Proctor, so that concurrent requests
+ * do not contend on them. Latency is only measured for a sample of requests, as {@link System#nanoTime()}
+ * costs about as much as evaluating a simple rule.
+ */
+class DetailedExport {
+    @Nonnull
+    private final TestIndex testIndex;
+    /**
+     * choosers by test index
+     */
+    @Nonnull
+    private final TestChooser<?>[] testChoosers;
+    /**
+     * measure latency of one request out of this many
+     */
+    private final int latencySamplingInterval;
+
+    private final LongAdder[] evaluations;
+    private final LongAdder[] missingIdentifiers;
+    private final LongAdder[] forcedGroups;
+    private final LongAdder[] unmatched;
+    private final LongAdder[] latencySamples;
+    private final LongAdder[] latencyNanos;
+    /**
+     * counters of chosen buckets by bucket value, by test index
+     */
+    private final Map<Integer, LongAdder>[] bucketCounts;
+    /**
+     * rule failures counted by the choosers before metrics were enabled
+     */
+    private final long[] initialRuleFailures;
+
+    @SuppressWarnings("unchecked")
+    DetailedExport(
+            @Nonnull final TestIndex testIndex,
+            @Nonnull final TestChooser<?>[] testChoosers,
+            final int latencySamplingInterval
+    ) {
+        Preconditions.checkArgument(latencySamplingInterval > 0, "Latency sampling interval must be positive: %s", latencySamplingInterval);
+        this.testIndex = testIndex;
+        this.testChoosers = testChoosers;
+        this.latencySamplingInterval = latencySamplingInterval;
+        final int size = testChoosers.length;
+        evaluations = newCounters(size);
+        missingIdentifiers = newCounters(size);
+        forcedGroups = newCounters(size);
+        unmatched = newCounters(size);
+        latencySamples = newCounters(size);
+        latencyNanos = newCounters(size);
+        bucketCounts = new Map[size];
+        initialRuleFailures = new long[size];
+        for (int i = 0; i < size; i++) {
+            final Map<Integer, LongAdder> counts = new HashMap<>();
+            for (final TestBucket bucket : testChoosers[i].getTestDefinition().getBuckets()) {
+                counts.put(bucket.getValue(), new LongAdder());
+            }
+            bucketCounts[i] = counts;
+            initialRuleFailures[i] = testChoosers[i].getRuleFailureCount();
+        }
+    }
+
+    @Nonnull
+    private static LongAdder[] newCounters(final int size) {
+        final LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * @return true if the latency of tests should be measured for the current request
+     */
+    boolean sampleLatency() {
+        return (latencySamplingInterval == 1) || (ThreadLocalRandom.current().nextInt(latencySamplingInterval) == 0);
+    }
+
+    void recordMissingIdentifier(final int testIndex) {
+        missingIdentifiers[testIndex].increment();
+    }
+
+    void recordForcedGroup(final int testIndex) {
+        forcedGroups[testIndex].increment();
+    }
+
+    /**
+     * @param latencyNanos measured time to choose the bucket, or a negative number if not measured
+     */
+    void recordEvaluation(final int testIndex, @Nullable final TestBucket bucket, final long latencyNanos) {
+        evaluations[testIndex].increment();
+        if (bucket == null) {
+            unmatched[testIndex].increment();
+        } else {
+            final LongAdder bucketCount = bucketCounts[testIndex].get(bucket.getValue());
+            if (bucketCount != null) {
+                bucketCount.increment();
+            }
+        }
+        if (latencyNanos >= 0) {
+            latencySamples[testIndex].increment();
+            this.latencyNanos[testIndex].add(latencyNanos);
+        }
+    }
+
+    /**
+     * @return metrics by test name, in order of the test index
+     */
+    @Nonnull
+    Map<String, TestEvaluationMetrics> snapshot() {
+        final Map<String, TestEvaluationMetrics> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < testChoosers.length; i++) {
+            final Map<Integer, Long> counts = new LinkedHashMap<>();
+            for (final TestBucket bucket : testChoosers[i].getTestDefinition().getBuckets()) {
+                final LongAdder bucketCount = bucketCounts[i].get(bucket.getValue());
+                counts.put(bucket.getValue(), bucketCount.sum());
+            }
+            snapshot.put(testIndex.getTestName(i), new TestEvaluationMetrics(
+                    evaluations[i].sum(),
+                    getRuleFailures(i),
+                    missingIdentifiers[i].sum(),
+                    forcedGroups[i].sum(),
+                    unmatched[i].sum(),
+                    counts,
+                    latencySamples[i].sum(),
+                    latencyNanos[i].sum()
+            ));
+        }
+        return snapshot;
+    }
+
+    private long getRuleFailures(final int testIndex) {
+        return testChoosers[testIndex].getRuleFailureCount() - initialRuleFailures[testIndex];
+    }
+
+    @Nonnull
+    private ImmutableMap<String, Long> sumByTestName(@Nonnull final LongAdder[] counters) {
+        final ImmutableMap.Builder<String, Long> sums = ImmutableMap.builder();
+        for (int i = 0; i < counters.length; i++) {
+            sums.put(testIndex.getTestName(i), counters[i].sum());
+        }
+        return sums.build();
+    }
+
+    @Export(name = "evaluations", doc = "Evaluations of the rules of each test", expand = true)
+    public ImmutableMap<String, Long> getEvaluations() {
+        return sumByTestName(evaluations);
+    }
+
+    @Export(name = "rule-failures", doc = "Evaluations of each test failing because of an invalid rule", expand = true)
+    public ImmutableMap<String, Long> getRuleFailures() {
+        final ImmutableMap.Builder<String, Long> failures = ImmutableMap.builder();
+        for (int i = 0; i < testChoosers.length; i++) {
+            failures.put(testIndex.getTestName(i), getRuleFailures(i));
+        }
+        return failures.build();
+    }
+
+    @Export(name = "missing-identifiers", doc = "Requests skipping each test for lack of an identifier of its test type", expand = true)
+    public ImmutableMap<String, Long> getMissingIdentifiers() {
+        return sumByTestName(missingIdentifiers);
+    }
+
+    @Export(name = "forced-groups", doc = "Requests using a forced group of each test", expand = true)
+    public ImmutableMap<String, Long> getForcedGroups() {
+        return sumByTestName(forcedGroups);
+    }
+
+    @Export(name = "unmatched", doc = "Evaluations of each test choosing no bucket", expand = true)
+    public ImmutableMap<String, Long> getUnmatched() {
+        return sumByTestName(unmatched);
+    }
+
+    @Export(name = "bucket-counts", doc = "Evaluations of each test choosing each bucket, by bucket value")
+    public ImmutableMap<String, Map<Integer, Long>> getBucketCounts() {
+        final ImmutableMap.Builder<String, Map<Integer, Long>> counts = ImmutableMap.builder();
+        for (final Map.Entry<String, TestEvaluationMetrics> entry : snapshot().entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getBucketCounts());
+        }
+        return counts.build();
+    }
+
+    @Export(name = "mean-latency-nanos", doc = "Mean time to evaluate each test in nanoseconds, measured for a sample of requests", expand = true)
+    public ImmutableMap<String, Double> getMeanLatencyNanos() {
+        final ImmutableMap.Builder<String, Double> means = ImmutableMap.builder();
+        for (int i = 0; i < testChoosers.length; i++) {
+            final long samples = latencySamples[i].sum();
+            means.put(testIndex.getTestName(i), (samples == 0) ? 0 : ((double) latencyNanos[i].sum() / samples));
+        }
+        return means.build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.indeed.proctor.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directory of a file and runs a callback on a daemon thread when the file is created, modified,
+ * or replaced by renaming another file to its name, once no further change happened for the debounce delay,
+ * so that a file written in several steps is only reloaded once.
+ */
+class FileChangeWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(FileChangeWatcher.class);
+
+    @Nonnull
+    private final Path file;
+    private final long debounceMillis;
+    @Nonnull
+    private final Runnable onChange;
+    @Nonnull
+    private final WatchService watchService;
+    @Nonnull
+    private final Thread thread;
+
+    FileChangeWatcher(@Nonnull final Path file, final long debounceMillis, @Nonnull final Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.onChange = onChange;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new ThreadFactoryBuilder()
+                .setNameFormat("proctor-file-watcher-" + this.file.getFileName() + "-%d")
+                .setDaemon(true)
+                .build()
+                .newThread(this::watch);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!isFileChanged(watchService.take())) {
+                    continue;
+                }
+                // wait until the file is quiet for the debounce delay, ignoring changes of other files of the directory
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    final WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if ((key != null) && isFileChanged(key)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                    }
+                }
+                try {
+                    onChange.run();
+                } catch (final RuntimeException e) {
+                    LOGGER.error("Failed to handle change of " + file, e);
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.debug("Stopped watching " + file);
+        }
+    }
+
+    /**
+     * @return true if the events of the key include a change of the file, or lost events
+     */
+    private boolean isFileChanged(@Nonnull final WatchKey key) {
+        boolean changed = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if ((event.kind() == StandardWatchEventKinds.OVERFLOW) || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -1,5 +1,6 @@
 package com.indeed.proctor.common;
 
+import com.google.common.base.Preconditions;
 import com.indeed.proctor.common.model.TestMatrixArtifact;
 
 import javax.annotation.CheckForNull;
@@ -10,14 +11,29 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Support class for loading a test matrix artifact from a JSON file
+ *
+ * In memory-mapped mode, the file is mapped instead of read, and only the byte ranges of referenced tests are indexed,
+ * a test definition being decoded from the mapped file when it is first accessed.
+ * Processes loading the same file share its pages in the page cache.
+ * The mapped file may also be written by {@link BinaryTestMatrixWriter}.
+ *
+ * With {@link #startWatching(long, TimeUnit)}, the file is reloaded shortly after it changes,
+ * so that the timer of this loader only needs to run rarely, as a fallback.
  * @author ketan
  */
 public class FileProctorLoader extends AbstractJsonProctorLoader {
     @Nonnull
     private final File inputFile;
+    private boolean memoryMapped = false;
+    @Nullable
+    private FileChangeWatcher watcher;
 
     public FileProctorLoader(@Nonnull final ProctorSpecification specification, @Nonnull final String inputFile, @Nonnull final FunctionMapper functionMapper) {
         this(specification, new File(inputFile), functionMapper);
@@ -28,6 +44,47 @@ public class FileProctorLoader extends AbstractJsonProctorLoader {
         this.inputFile = inputFile;
     }
 
+    /**
+     * @param memoryMapped true to map the file and decode test definitions on first access, false by default.
+     *                     The file must be replaced rather than rewritten in place while in use.
+     */
+    public void setMemoryMapped(final boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Reloads the file on a daemon thread when it is modified or replaced, e.g. by an atomic rename,
+     * once it did not change for the debounce delay.
+     * The timer of this loader is still needed to load the file initially and to recover from missed events.
+     *
+     * @param debounce delay without further changes before reloading
+     */
+    public synchronized void startWatching(final long debounce, @Nonnull final TimeUnit unit) throws IOException {
+        Preconditions.checkArgument(debounce >= 0, "Debounce delay must not be negative: %s", debounce);
+        Preconditions.checkState(watcher == null, "Already watching %s", inputFile);
+        // run() rather than load() to update the load timer
+        watcher = new FileChangeWatcher(inputFile.toPath(), unit.toMillis(debounce), this::run);
+    }
+
+    public synchronized void stopWatching() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * synchronized, as the file watcher and the timer may reload concurrently
+     */
+    @Override
+    public synchronized boolean load() {
+        return super.load();
+    }
+
     @Nonnull
     @Override
     protected String getSource() {
@@ -43,7 +100,23 @@ public class FileProctorLoader extends AbstractJsonProctorLoader {
         if (! inputFile.canRead()) {
             throw new MissingTestMatrixException("Cannot read input file " + inputFile);
         }
+        if (memoryMapped) {
+            return loadMappedTestMatrix();
+        }
         final Reader reader = new FileReader(inputFile);
         return loadJsonTestMatrix(reader);
     }
+
+    @CheckForNull
+    private TestMatrixArtifact loadMappedTestMatrix() throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (BinaryTestMatrixReader.isBinaryTestMatrix(buffer)) {
+            return loadBinaryTestMatrix(new BinaryTestMatrixReader(buffer));
+        }
+        return loadJsonTestMatrix(buffer);
+    }
 }
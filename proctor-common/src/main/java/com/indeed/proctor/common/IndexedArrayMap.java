@@ -0,0 +1,93 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map from test name to value, viewing an array of values indexed by a {@link TestIndex},
+ * with null for tests without value.
+ *
+ * Lookups by name resolve the index once, without hashing or allocating map entries per result.
+ * Iteration order is by test name, as for a {@link java.util.TreeMap} of the same entries.
+ */
+class IndexedArrayMap<V> extends AbstractMap<String, V> {
+    @Nonnull
+    private final TestIndex testIndex;
+    @Nonnull
+    private final V[] values;
+    private final int size;
+
+    /**
+     * @param values values by test index, not modified afterwards
+     * @param size   number of non-null values
+     */
+    IndexedArrayMap(@Nonnull final TestIndex testIndex, @Nonnull final V[] values, final int size) {
+        this.testIndex = testIndex;
+        this.values = values;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        final int index = testIndex.indexOf((String) key);
+        return (index >= 0) ? values[index] : null;
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private int next = skipNulls(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, V> entry = new SimpleImmutableEntry<>(testIndex.getTestName(next), values[next]);
+                        next = skipNulls(next + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int skipNulls(final int from) {
+        int index = from;
+        while ((index < values.length) && (values[index] == null)) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -1,15 +1,71 @@
 package com.indeed.proctor.common;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
 /**
 * @author matts
 */
 public class InvalidRuleException extends Exception {
+    /**
+     * rule and test of a failed evaluation, null if the message was given on construction
+     */
+    @CheckForNull
+    private final String rule;
+    @CheckForNull
+    private final String testName;
+    @CheckForNull
+    private String formattedMessage;
+
     public InvalidRuleException(final String message) {
         super(message);
+        this.rule = null;
+        this.testName = null;
     }
 
     public InvalidRuleException(final Throwable throwable, final String message) {
         super(message, throwable);
+        this.rule = null;
+        this.testName = null;
+    }
+
+    /**
+     * For failures evaluating a rule per request: the message is only formatted when used,
+     * and the stack trace is not filled in, as the cause has the relevant one.
+     */
+    InvalidRuleException(@Nonnull final Throwable cause, final String rule, @Nonnull final String testName) {
+        super(null, cause, true, false);
+        this.rule = rule;
+        this.testName = testName;
+    }
+
+    @Override
+    public String getMessage() {
+        if (testName == null) {
+            return super.getMessage();
+        }
+        if (formattedMessage == null) {
+            formattedMessage = String.format(
+                    "Error evaluating rule '%s' for test '%s': '%s'. Failing evaluation and continuing.",
+                    rule, testName, getCause().getMessage());
+        }
+        return formattedMessage;
+    }
+
+    /**
+     * @return the rule that failed to evaluate, null unless thrown when evaluating a rule for a request
+     */
+    @CheckForNull
+    String getRule() {
+        return rule;
+    }
+
+    /**
+     * @return the test whose rule failed to evaluate, null unless thrown when evaluating a rule for a request
+     */
+    @CheckForNull
+    String getTestName() {
+        return testName;
     }
 
     private static final long serialVersionUID = 2401266961303036201L;
@@ -39,6 +39,12 @@ public class JsonProctorLoaderFactory {
 
     protected FunctionMapper functionMapper = RuleEvaluator.FUNCTION_MAPPER;
 
+    protected RuleEngine ruleEngine = RuleEngine.EL;
+
+    protected boolean detailedMetricsEnabled;
+
+    protected boolean memoryMapped;
+
     protected List<ProctorLoadReporter> reporters = new ArrayList<>();
 
     @SuppressWarnings("UnusedDeclaration")
@@ -89,6 +95,21 @@ public class JsonProctorLoaderFactory {
         this.functionMapper = functionMapper;
     }
 
+    public void setRuleEngine(@Nonnull final RuleEngine ruleEngine) {
+        this.ruleEngine = ruleEngine;
+    }
+
+    public void setDetailedMetricsEnabled(final boolean detailedMetricsEnabled) {
+        this.detailedMetricsEnabled = detailedMetricsEnabled;
+    }
+
+    /**
+     * @param memoryMapped true to memory-map the file at the file path, see {@link FileProctorLoader#setMemoryMapped(boolean)}
+     */
+    public void setMemoryMapped(final boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
     @Nonnull
     public AbstractJsonProctorLoader getLoader() {
         if ((classResourcePath == null) == (filePath == null)) {
@@ -101,10 +122,16 @@ public class JsonProctorLoaderFactory {
         );
 
         if (classResourcePath != null) {
-            return new ClasspathProctorLoader(specification, classResourcePath, functionMapper);
+            final AbstractJsonProctorLoader loader = new ClasspathProctorLoader(specification, classResourcePath, functionMapper);
+            loader.setRuleEngine(ruleEngine);
+            loader.setDetailedMetricsEnabled(detailedMetricsEnabled);
+            return loader;
         }
 
-        final AbstractJsonProctorLoader loader = new FileProctorLoader(specification, filePath, functionMapper);
+        final FileProctorLoader loader = new FileProctorLoader(specification, filePath, functionMapper);
+        loader.setMemoryMapped(memoryMapped);
+        loader.setRuleEngine(ruleEngine);
+        loader.setDetailedMetricsEnabled(detailedMetricsEnabled);
         loader.addLoadReporter(reporters);
         return loader;
     }
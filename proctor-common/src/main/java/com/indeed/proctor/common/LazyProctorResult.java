@@ -0,0 +1,199 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.TestBucket;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Result of {@link Proctor#determineTestGroupsLazily(Identifiers, Map, Map)}, determining the bucket of a test
+ * only when it is first looked up by name or index, and memoizing it.
+ *
+ * Any operation needing all tests (iteration, size, equality, ...) determines all remaining tests first,
+ * so logging this result gives the same output as logging an eagerly determined result.
+ * The maps of buckets and allocations are read-only.
+ */
+class LazyProctorResult extends ProctorResult {
+    @Nonnull
+    private final TestIndex testIndex;
+    /**
+     * choosers by test index, null for tests not to determine
+     */
+    @Nonnull
+    private final TestChooser<?>[] testChoosers;
+    /**
+     * null once all tests are determined, to release the request context
+     */
+    @Nullable
+    private RequestDetermination determination;
+    @Nonnull
+    private final LongAdder sharedRuleHits;
+    @Nonnull
+    private final LongAdder sharedRuleEvaluations;
+
+    private final boolean[] determinedTests;
+    private final TestBucket[] bucketValues;
+    private final Allocation[] allocationValues;
+    private int bucketCount;
+    private int allocationCount;
+    private final Map<String, TestBucket> bucketsView;
+    private final Map<String, Allocation> allocationsView;
+
+    LazyProctorResult(
+            final String matrixVersion,
+            @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions,
+            @Nonnull final TestIndex testIndex,
+            @Nonnull final TestChooser<?>[] testChoosers,
+            @Nonnull final RequestDetermination determination,
+            @Nonnull final LongAdder sharedRuleHits,
+            @Nonnull final LongAdder sharedRuleEvaluations
+    ) {
+        this(matrixVersion, testDefinitions, testIndex, testChoosers, determination, sharedRuleHits, sharedRuleEvaluations,
+                new TestBucket[testChoosers.length], new Allocation[testChoosers.length]);
+    }
+
+    private LazyProctorResult(
+            final String matrixVersion,
+            @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions,
+            @Nonnull final TestIndex testIndex,
+            @Nonnull final TestChooser<?>[] testChoosers,
+            @Nonnull final RequestDetermination determination,
+            @Nonnull final LongAdder sharedRuleHits,
+            @Nonnull final LongAdder sharedRuleEvaluations,
+            @Nonnull final TestBucket[] bucketValues,
+            @Nonnull final Allocation[] allocationValues
+    ) {
+        super(matrixVersion, testIndex, bucketValues, 0, allocationValues, 0, testDefinitions);
+        this.testIndex = testIndex;
+        this.testChoosers = testChoosers;
+        this.determination = determination;
+        this.sharedRuleHits = sharedRuleHits;
+        this.sharedRuleEvaluations = sharedRuleEvaluations;
+        this.determinedTests = new boolean[testChoosers.length];
+        this.bucketValues = bucketValues;
+        this.allocationValues = allocationValues;
+        this.bucketsView = new LazyMap<>(bucketValues, true);
+        this.allocationsView = new LazyMap<>(allocationValues, false);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, TestBucket> getBuckets() {
+        return bucketsView;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Allocation> getAllocations() {
+        return allocationsView;
+    }
+
+    @CheckForNull
+    @Override
+    public synchronized TestBucket getBucket(final int testIndex) {
+        determine(testIndex);
+        return bucketValues[testIndex];
+    }
+
+    @CheckForNull
+    @Override
+    public synchronized Allocation getAllocation(final int testIndex) {
+        determine(testIndex);
+        return allocationValues[testIndex];
+    }
+
+    /**
+     * @return true once all tests are determined
+     */
+    synchronized boolean isFullyDetermined() {
+        return determination == null;
+    }
+
+    private synchronized <V> V get(final V[] values, final String testName) {
+        final int index = testIndex.indexOf(testName);
+        if (index < 0) {
+            return null;
+        }
+        determine(index);
+        return values[index];
+    }
+
+    private synchronized <V> Map<String, V> getAll(final V[] values, final boolean buckets) {
+        determineAll();
+        return new IndexedArrayMap<>(testIndex, values, buckets ? bucketCount : allocationCount);
+    }
+
+    private void determine(final int index) {
+        if ((determination == null) || determinedTests[index]) {
+            return;
+        }
+        determinedTests[index] = true;
+        if (testChoosers[index] == null) {
+            return;
+        }
+        put(index, determination.determine(index, testIndex.getTestName(index), testChoosers[index]));
+        determination.reportSharedRuleCounters(sharedRuleHits, sharedRuleEvaluations);
+    }
+
+    private void determineAll() {
+        if (determination == null) {
+            return;
+        }
+        for (int i = 0; i < testChoosers.length; i++) {
+            if (!determinedTests[i] && (testChoosers[i] != null)) {
+                put(i, determination.determine(i, testIndex.getTestName(i), testChoosers[i]));
+            }
+        }
+        determination.reportSharedRuleCounters(sharedRuleHits, sharedRuleEvaluations);
+        determination = null;
+    }
+
+    private void put(final int index, final TestChooser.Result chooseResult) {
+        if (chooseResult.getTestBucket() != null) {
+            bucketValues[index] = chooseResult.getTestBucket();
+            bucketCount++;
+        }
+        if (chooseResult.getAllocation() != null) {
+            allocationValues[index] = chooseResult.getAllocation();
+            allocationCount++;
+        }
+    }
+
+    /**
+     * Read-only view of buckets or allocations, determining tests on lookup
+     */
+    private class LazyMap<V> extends AbstractMap<String, V> {
+        private final V[] values;
+        private final boolean buckets;
+
+        private LazyMap(final V[] values, final boolean buckets) {
+            this.values = values;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public V get(final Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            return LazyProctorResult.this.get(values, (String) key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return getAll(values, buckets).entrySet();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.Maps;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map of test definitions decoding each definition on first access, e.g. from a memory-mapped artifact,
+ * so that test definitions are decoded when their test chooser is built and never if they are not accessed.
+ *
+ * Mutable like the map of a parsed {@link com.indeed.proctor.common.model.TestMatrixArtifact},
+ * as {@link ProctorUtils#verifyAndConsolidate} removes and adds tests.
+ * Failures decoding a definition are thrown as {@link UncheckedIOException}.
+ * Thread-safe, as requests decode definitions concurrently; iterators iterate a copy of the test names.
+ */
+class LazyTestDefinitionMap extends AbstractMap<String, ConsumableTestDefinition> {
+    /**
+     * decoded definitions or null, and {@link EncodedTestDefinition}s not decoded yet
+     */
+    private final Map<String, Object> definitions = new LinkedHashMap<>();
+
+    interface EncodedTestDefinition {
+        @CheckForNull
+        ConsumableTestDefinition decode() throws IOException;
+    }
+
+    synchronized void putEncoded(@Nonnull final String testName, @Nonnull final EncodedTestDefinition encoded) {
+        definitions.put(testName, encoded);
+    }
+
+    /**
+     * @return an artifact with this map as tests, as {@link TestMatrixArtifact#setTests} copies and so decodes all definitions
+     */
+    @Nonnull
+    TestMatrixArtifact toArtifact(@Nonnull final Audit audit) {
+        final TestMatrixArtifact artifact = new LazyTestMatrixArtifact(this);
+        artifact.setAudit(audit);
+        return artifact;
+    }
+
+    /**
+     * @return number of definitions not decoded yet
+     */
+    synchronized int getEncodedCount() {
+        return (int) definitions.values().stream().filter(EncodedTestDefinition.class::isInstance).count();
+    }
+
+    @Override
+    public synchronized ConsumableTestDefinition get(final Object testName) {
+        final Object definition = definitions.get(testName);
+        if (definition instanceof EncodedTestDefinition) {
+            final ConsumableTestDefinition decoded = decode((EncodedTestDefinition) definition);
+            definitions.put((String) testName, decoded);
+            return decoded;
+        }
+        return (ConsumableTestDefinition) definition;
+    }
+
+    @Override
+    public synchronized boolean containsKey(final Object testName) {
+        return definitions.containsKey(testName);
+    }
+
+    @Override
+    public synchronized ConsumableTestDefinition put(final String testName, final ConsumableTestDefinition definition) {
+        return toDefinition(definitions.put(testName, definition));
+    }
+
+    @Override
+    public synchronized ConsumableTestDefinition remove(final Object testName) {
+        return toDefinition(definitions.remove(testName));
+    }
+
+    @Override
+    public synchronized int size() {
+        return definitions.size();
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<String, ConsumableTestDefinition>> entrySet() {
+        return new AbstractSet<Entry<String, ConsumableTestDefinition>>() {
+            @Nonnull
+            @Override
+            public Iterator<Entry<String, ConsumableTestDefinition>> iterator() {
+                // iterates a copy of the test names taken under the lock, as definitions are decoded concurrently
+                final Iterator<String> testNames = getTestNames().iterator();
+                return new Iterator<Entry<String, ConsumableTestDefinition>>() {
+                    private String lastTestName;
+
+                    @Override
+                    public boolean hasNext() {
+                        return testNames.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, ConsumableTestDefinition> next() {
+                        final String testName = testNames.next();
+                        lastTestName = testName;
+                        return new SimpleEntry<String, ConsumableTestDefinition>(testName, null) {
+                            @Override
+                            public ConsumableTestDefinition getValue() {
+                                return get(testName);
+                            }
+
+                            @Override
+                            public ConsumableTestDefinition setValue(final ConsumableTestDefinition definition) {
+                                return put(testName, definition);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastTestName == null) {
+                            throw new IllegalStateException("next() was not called");
+                        }
+                        removeWithoutDecoding(lastTestName);
+                        lastTestName = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyTestDefinitionMap.this.size();
+            }
+        };
+    }
+
+    @Nonnull
+    private synchronized List<String> getTestNames() {
+        return new ArrayList<>(definitions.keySet());
+    }
+
+    /**
+     * Removes a test without decoding its definition
+     */
+    private synchronized void removeWithoutDecoding(@Nonnull final String testName) {
+        definitions.remove(testName);
+    }
+
+    @CheckForNull
+    private static ConsumableTestDefinition toDefinition(@CheckForNull final Object definition) {
+        return (definition instanceof EncodedTestDefinition)
+                ? decode((EncodedTestDefinition) definition)
+                : (ConsumableTestDefinition) definition;
+    }
+
+    @CheckForNull
+    private static ConsumableTestDefinition decode(@Nonnull final EncodedTestDefinition encoded) {
+        try {
+            return encoded.decode();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to decode test definition", e);
+        }
+    }
+
+    private static class LazyTestMatrixArtifact extends TestMatrixArtifact {
+        @Nonnull
+        private Map<String, ConsumableTestDefinition> tests;
+
+        LazyTestMatrixArtifact(@Nonnull final LazyTestDefinitionMap tests) {
+            this.tests = tests;
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, ConsumableTestDefinition> getTests() {
+            return tests;
+        }
+
+        @Override
+        public void setTests(@Nonnull final Map<String, ConsumableTestDefinition> tests) {
+            this.tests = Maps.newHashMap(tests);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Pure-java MD5 of a fixed prefix followed by a variable suffix, computing only the part of the digest needed for bucketing.
+ *
+ * Full blocks of the prefix are digested once on construction, so that hashing only processes the remainder of the
+ * prefix and the suffix. Hashing neither copies the suffix nor allocates, and instances are immutable and thread-safe.
+ *
+ * See RFC 1321 for the algorithm.
+ */
+final class PrefixedMD5 {
+    private static final int BLOCK_LENGTH = 64;
+
+    /**
+     * sine table of RFC 1321
+     */
+    private static final int[] T = {
+            0xd76aa478, 0xe8c7b756, 0x242070db, 0xc1bdceee,
+            0xf57c0faf, 0x4787c62a, 0xa8304613, 0xfd469501,
+            0x698098d8, 0x8b44f7af, 0xffff5bb1, 0x895cd7be,
+            0x6b901122, 0xfd987193, 0xa679438e, 0x49b40821,
+            0xf61e2562, 0xc040b340, 0x265e5a51, 0xe9b6c7aa,
+            0xd62f105d, 0x02441453, 0xd8a1e681, 0xe7d3fbc8,
+            0x21e1cde6, 0xc33707d6, 0xf4d50d87, 0x455a14ed,
+            0xa9e3e905, 0xfcefa3f8, 0x676f02d9, 0x8d2a4c8a,
+            0xfffa3942, 0x8771f681, 0x6d9d6122, 0xfde5380c,
+            0xa4beea44, 0x4bdecfa9, 0xf6bb4b60, 0xbebfbc70,
+            0x289b7ec6, 0xeaa127fa, 0xd4ef3085, 0x04881d05,
+            0xd9d4d039, 0xe6db99e5, 0x1fa27cf8, 0xc4ac5665,
+            0xf4292244, 0x432aff97, 0xab9423a7, 0xfc93a039,
+            0x655b59c3, 0x8f0ccc92, 0xffeff47d, 0x85845dd1,
+            0x6fa87e4f, 0xfe2ce6e0, 0xa3014314, 0x4e0811a1,
+            0xf7537e82, 0xbd3af235, 0x2ad7d2bb, 0xeb86d391
+    };
+
+    /**
+     * per-round shift amounts of RFC 1321
+     */
+    private static final int[] S = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21,
+    };
+
+    /**
+     * state after digesting all full blocks of the prefix
+     */
+    private final int a0;
+    private final int b0;
+    private final int c0;
+    private final int d0;
+    /**
+     * bytes of the prefix not filling a full block, at most 63
+     */
+    @Nonnull
+    private final byte[] tail;
+    private final long prefixLength;
+
+    PrefixedMD5(@Nonnull final byte[] prefix) {
+        final int fullBlocksLength = prefix.length - (prefix.length % BLOCK_LENGTH);
+        final int[] state = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476};
+        for (int offset = 0; offset < fullBlocksLength; offset += BLOCK_LENGTH) {
+            processBlock(state, prefix, offset);
+        }
+        a0 = state[0];
+        b0 = state[1];
+        c0 = state[2];
+        d0 = state[3];
+        tail = Arrays.copyOfRange(prefix, fullBlocksLength, prefix.length);
+        prefixLength = prefix.length;
+    }
+
+    /**
+     * @return the int encoded big-endian in bytes 12 to 15 of the MD5 digest of the prefix followed by suffix
+     */
+    int hashToInt(@Nonnull final byte[] suffix) {
+        final int tailLength = tail.length + suffix.length;
+        // message is followed by 0x80, zero padding and the 8 byte message length
+        final int paddedLength = (((tailLength + 8) / BLOCK_LENGTH) + 1) * BLOCK_LENGTH;
+        final long bitLength = (prefixLength + suffix.length) << 3;
+
+        int a = a0;
+        int b = b0;
+        int c = c0;
+        int d = d0;
+        for (int offset = 0; offset < paddedLength; offset += BLOCK_LENGTH) {
+            final int x0 = word(suffix, tailLength, paddedLength, bitLength, offset + 0);
+            final int x1 = word(suffix, tailLength, paddedLength, bitLength, offset + 4);
+            final int x2 = word(suffix, tailLength, paddedLength, bitLength, offset + 8);
+            final int x3 = word(suffix, tailLength, paddedLength, bitLength, offset + 12);
+            final int x4 = word(suffix, tailLength, paddedLength, bitLength, offset + 16);
+            final int x5 = word(suffix, tailLength, paddedLength, bitLength, offset + 20);
+            final int x6 = word(suffix, tailLength, paddedLength, bitLength, offset + 24);
+            final int x7 = word(suffix, tailLength, paddedLength, bitLength, offset + 28);
+            final int x8 = word(suffix, tailLength, paddedLength, bitLength, offset + 32);
+            final int x9 = word(suffix, tailLength, paddedLength, bitLength, offset + 36);
+            final int x10 = word(suffix, tailLength, paddedLength, bitLength, offset + 40);
+            final int x11 = word(suffix, tailLength, paddedLength, bitLength, offset + 44);
+            final int x12 = word(suffix, tailLength, paddedLength, bitLength, offset + 48);
+            final int x13 = word(suffix, tailLength, paddedLength, bitLength, offset + 52);
+            final int x14 = word(suffix, tailLength, paddedLength, bitLength, offset + 56);
+            final int x15 = word(suffix, tailLength, paddedLength, bitLength, offset + 60);
+
+            final int aa = a;
+            final int bb = b;
+            final int cc = c;
+            final int dd = d;
+
+            a = ff(a, b, c, d, x0, 7, 0xd76aa478);
+            d = ff(d, a, b, c, x1, 12, 0xe8c7b756);
+            c = ff(c, d, a, b, x2, 17, 0x242070db);
+            b = ff(b, c, d, a, x3, 22, 0xc1bdceee);
+            a = ff(a, b, c, d, x4, 7, 0xf57c0faf);
+            d = ff(d, a, b, c, x5, 12, 0x4787c62a);
+            c = ff(c, d, a, b, x6, 17, 0xa8304613);
+            b = ff(b, c, d, a, x7, 22, 0xfd469501);
+            a = ff(a, b, c, d, x8, 7, 0x698098d8);
+            d = ff(d, a, b, c, x9, 12, 0x8b44f7af);
+            c = ff(c, d, a, b, x10, 17, 0xffff5bb1);
+            b = ff(b, c, d, a, x11, 22, 0x895cd7be);
+            a = ff(a, b, c, d, x12, 7, 0x6b901122);
+            d = ff(d, a, b, c, x13, 12, 0xfd987193);
+            c = ff(c, d, a, b, x14, 17, 0xa679438e);
+            b = ff(b, c, d, a, x15, 22, 0x49b40821);
+
+            a = gg(a, b, c, d, x1, 5, 0xf61e2562);
+            d = gg(d, a, b, c, x6, 9, 0xc040b340);
+            c = gg(c, d, a, b, x11, 14, 0x265e5a51);
+            b = gg(b, c, d, a, x0, 20, 0xe9b6c7aa);
+            a = gg(a, b, c, d, x5, 5, 0xd62f105d);
+            d = gg(d, a, b, c, x10, 9, 0x02441453);
+            c = gg(c, d, a, b, x15, 14, 0xd8a1e681);
+            b = gg(b, c, d, a, x4, 20, 0xe7d3fbc8);
+            a = gg(a, b, c, d, x9, 5, 0x21e1cde6);
+            d = gg(d, a, b, c, x14, 9, 0xc33707d6);
+            c = gg(c, d, a, b, x3, 14, 0xf4d50d87);
+            b = gg(b, c, d, a, x8, 20, 0x455a14ed);
+            a = gg(a, b, c, d, x13, 5, 0xa9e3e905);
+            d = gg(d, a, b, c, x2, 9, 0xfcefa3f8);
+            c = gg(c, d, a, b, x7, 14, 0x676f02d9);
+            b = gg(b, c, d, a, x12, 20, 0x8d2a4c8a);
+
+            a = hh(a, b, c, d, x5, 4, 0xfffa3942);
+            d = hh(d, a, b, c, x8, 11, 0x8771f681);
+            c = hh(c, d, a, b, x11, 16, 0x6d9d6122);
+            b = hh(b, c, d, a, x14, 23, 0xfde5380c);
+            a = hh(a, b, c, d, x1, 4, 0xa4beea44);
+            d = hh(d, a, b, c, x4, 11, 0x4bdecfa9);
+            c = hh(c, d, a, b, x7, 16, 0xf6bb4b60);
+            b = hh(b, c, d, a, x10, 23, 0xbebfbc70);
+            a = hh(a, b, c, d, x13, 4, 0x289b7ec6);
+            d = hh(d, a, b, c, x0, 11, 0xeaa127fa);
+            c = hh(c, d, a, b, x3, 16, 0xd4ef3085);
+            b = hh(b, c, d, a, x6, 23, 0x04881d05);
+            a = hh(a, b, c, d, x9, 4, 0xd9d4d039);
+            d = hh(d, a, b, c, x12, 11, 0xe6db99e5);
+            c = hh(c, d, a, b, x15, 16, 0x1fa27cf8);
+            b = hh(b, c, d, a, x2, 23, 0xc4ac5665);
+
+            a = ii(a, b, c, d, x0, 6, 0xf4292244);
+            d = ii(d, a, b, c, x7, 10, 0x432aff97);
+            c = ii(c, d, a, b, x14, 15, 0xab9423a7);
+            b = ii(b, c, d, a, x5, 21, 0xfc93a039);
+            a = ii(a, b, c, d, x12, 6, 0x655b59c3);
+            d = ii(d, a, b, c, x3, 10, 0x8f0ccc92);
+            c = ii(c, d, a, b, x10, 15, 0xffeff47d);
+            b = ii(b, c, d, a, x1, 21, 0x85845dd1);
+            a = ii(a, b, c, d, x8, 6, 0x6fa87e4f);
+            d = ii(d, a, b, c, x15, 10, 0xfe2ce6e0);
+            c = ii(c, d, a, b, x6, 15, 0xa3014314);
+            b = ii(b, c, d, a, x13, 21, 0x4e0811a1);
+            a = ii(a, b, c, d, x4, 6, 0xf7537e82);
+            d = ii(d, a, b, c, x11, 10, 0xbd3af235);
+            c = ii(c, d, a, b, x2, 15, 0x2ad7d2bb);
+            b = ii(b, c, d, a, x9, 21, 0xeb86d391);
+
+            a += aa;
+            b += bb;
+            c += cc;
+            d += dd;
+        }
+        // digest bytes 12 to 15 are the little-endian bytes of d
+        return Integer.reverseBytes(d);
+    }
+
+    /**
+     * Compact version of the rounds in hashToInt, used for digesting the prefix on construction
+     */
+    private static void processBlock(@Nonnull final int[] state, @Nonnull final byte[] bytes, final int offset) {
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        for (int i = 0; i < 64; i++) {
+            final int f;
+            final int k;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                k = i;
+            } else if (i < 32) {
+                f = (b & d) | (c & ~d);
+                k = ((5 * i) + 1) % 16;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                k = ((3 * i) + 5) % 16;
+            } else {
+                f = c ^ (b | ~d);
+                k = (7 * i) % 16;
+            }
+            final int rotated = b + Integer.rotateLeft(a + f + littleEndianInt(bytes, offset + (4 * k)) + T[i], S[i]);
+            a = d;
+            d = c;
+            c = b;
+            b = rotated;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+    }
+
+    /**
+     * @return little-endian word at the given position of the padded message remaining after the digested blocks of the prefix
+     */
+    private int word(
+            @Nonnull final byte[] suffix,
+            final int tailLength,
+            final int paddedLength,
+            final long bitLength,
+            final int position
+    ) {
+        final int suffixPosition = position - tail.length;
+        if ((suffixPosition >= 0) && ((suffixPosition + 4) <= suffix.length)) {
+            return littleEndianInt(suffix, suffixPosition);
+        }
+        return (0xff & byteAt(suffix, tailLength, paddedLength, bitLength, position))
+                | ((0xff & byteAt(suffix, tailLength, paddedLength, bitLength, position + 1)) << 8)
+                | ((0xff & byteAt(suffix, tailLength, paddedLength, bitLength, position + 2)) << 16)
+                | ((0xff & byteAt(suffix, tailLength, paddedLength, bitLength, position + 3)) << 24);
+    }
+
+    private byte byteAt(
+            @Nonnull final byte[] suffix,
+            final int tailLength,
+            final int paddedLength,
+            final long bitLength,
+            final int position
+    ) {
+        if (position < tail.length) {
+            return tail[position];
+        }
+        if (position < tailLength) {
+            return suffix[position - tail.length];
+        }
+        if (position == tailLength) {
+            return (byte) 0x80;
+        }
+        final int lengthPosition = position - (paddedLength - 8);
+        if (lengthPosition >= 0) {
+            return (byte) (bitLength >>> (8 * lengthPosition));
+        }
+        return 0;
+    }
+
+    private static int littleEndianInt(@Nonnull final byte[] bytes, final int offset) {
+        return (0xff & bytes[offset])
+                | ((0xff & bytes[offset + 1]) << 8)
+                | ((0xff & bytes[offset + 2]) << 16)
+                | ((0xff & bytes[offset + 3]) << 24);
+    }
+
+    private static int ff(final int a, final int b, final int c, final int d, final int x, final int s, final int t) {
+        return b + Integer.rotateLeft(a + ((b & c) | (~b & d)) + x + t, s);
+    }
+
+    private static int gg(final int a, final int b, final int c, final int d, final int x, final int s, final int t) {
+        return b + Integer.rotateLeft(a + ((b & d) | (c & ~d)) + x + t, s);
+    }
+
+    private static int hh(final int a, final int b, final int c, final int d, final int x, final int s, final int t) {
+        return b + Integer.rotateLeft(a + (b ^ c ^ d) + x + t, s);
+    }
+
+    private static int ii(final int a, final int b, final int c, final int d, final int x, final int s, final int t) {
+        return b + Integer.rotateLeft(a + (c ^ (b | ~d)) + x + t, s);
+    }
+}
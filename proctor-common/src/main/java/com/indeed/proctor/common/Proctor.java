@@ -14,9 +14,11 @@ import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.TestBucket;
 import com.indeed.proctor.common.model.TestMatrixArtifact;
 import com.indeed.proctor.common.model.TestType;
+import com.indeed.util.varexport.Export;
 import com.indeed.util.varexport.VarExporter;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
 import java.io.IOException;
@@ -24,9 +26,13 @@ import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The sole entry point for client applications determining the test buckets for a particular client.
@@ -56,26 +62,96 @@ public class Proctor {
             final ProctorLoadResult loadResult,
             final FunctionMapper functionMapper
     ) {
+        return construct(matrix, loadResult, functionMapper, RuleEngine.EL);
+    }
+
+    /**
+     * Factory method to do the setup and transformation of inputs
+     *
+     * @param matrix a {@link TestMatrixArtifact} loaded by ProctorLoader
+     * @param loadResult a {@link ProctorLoadResult} which contains result of validation of test definition
+     * @param functionMapper a given el {@link FunctionMapper}
+     * @param ruleEngine how to evaluate test and allocation rules
+     * @return constructed Proctor object
+     */
+    @Nonnull
+    public static Proctor construct(
+            @Nonnull final TestMatrixArtifact matrix,
+            final ProctorLoadResult loadResult,
+            final FunctionMapper functionMapper,
+            @Nonnull final RuleEngine ruleEngine
+    ) {
+        return construct(matrix, loadResult, functionMapper, ruleEngine, null);
+    }
+
+    /**
+     * Factory method to do the setup and transformation of inputs, reusing the parsed rules and buckets
+     * of tests whose definition is unchanged since the previous Proctor, so that reloading a matrix
+     * costs time and garbage proportional to the number of changed tests.
+     *
+     * @param matrix a {@link TestMatrixArtifact} loaded by ProctorLoader
+     * @param loadResult a {@link ProctorLoadResult} which contains result of validation of test definition
+     * @param functionMapper a given el {@link FunctionMapper}
+     * @param ruleEngine how to evaluate test and allocation rules
+     * @param previous the Proctor this one replaces, or null to construct all tests.
+     *                 Only reused if constructed with the same function mapper and rule engine.
+     * @return constructed Proctor object
+     */
+    @Nonnull
+    public static Proctor construct(
+            @Nonnull final TestMatrixArtifact matrix,
+            final ProctorLoadResult loadResult,
+            final FunctionMapper functionMapper,
+            @Nonnull final RuleEngine ruleEngine,
+            @Nullable final Proctor previous
+    ) {
+        final boolean reusePrevious = (previous != null)
+                && (previous.sharedRuleIndex != null)
+                && (previous.functionMapper == functionMapper)
+                && (previous.ruleEngine == ruleEngine);
         final ExpressionFactory expressionFactory = RuleEvaluator.EXPRESSION_FACTORY;
 
         final Map<String, TestChooser<?>> testChoosers = Maps.newLinkedHashMap();
-        final Map<String, String> versions = Maps.newLinkedHashMap();
+        final SharedRuleIndex sharedRuleIndex = reusePrevious ? new SharedRuleIndex(previous.sharedRuleIndex) : new SharedRuleIndex();
+        int reusedChooserCount = 0;
 
         for (final Entry<String, ConsumableTestDefinition> entry : matrix.getTests().entrySet()) {
             final String testName = entry.getKey();
             final ConsumableTestDefinition testDefinition = entry.getValue();
+            final TestChooser<?> previousChooser = reusePrevious ? previous.testChoosers.get(testName) : null;
+            final TestRangeSelector previousSelector = (previousChooser == null) ? null : previousChooser.getTestRangeSelector();
+            if ((previousSelector != null) && isUnchanged(previousChooser.getTestDefinition(), testDefinition)) {
+                previousSelector.markSharedRulesUsed(sharedRuleIndex);
+                testChoosers.put(testName, previousChooser);
+                reusedChooserCount++;
+                continue;
+            }
             final TestType testType = testDefinition.getTestType();
+            final RuleEvaluator ruleEvaluator = new RuleEvaluator(expressionFactory, functionMapper, testDefinition.getConstants(), ruleEngine);
+            final TestRangeSelector selector = new TestRangeSelector(ruleEvaluator, testName, testDefinition, sharedRuleIndex);
             final TestChooser<?> testChooser;
             if (TestType.RANDOM.equals(testType)) {
-                testChooser = new RandomTestChooser(expressionFactory, functionMapper, testName, testDefinition);
+                testChooser = new RandomTestChooser(null, selector);
             } else {
-                testChooser = new StandardTestChooser(expressionFactory, functionMapper, testName, testDefinition);
+                testChooser = new StandardTestChooser(selector);
             }
             testChoosers.put(testName, testChooser);
-            versions.put(testName, testDefinition.getVersion());
         }
 
-        return new Proctor(matrix, loadResult, testChoosers);
+        if (sharedRuleIndex.size() > (2 * sharedRuleIndex.usedSize())) {
+            // most shared rules are of removed or changed tests, start over so that requests only memoize used rules
+            return construct(matrix, loadResult, functionMapper, ruleEngine, null);
+        }
+
+        return new Proctor(matrix, loadResult, testChoosers, sharedRuleIndex, functionMapper, ruleEngine, reusedChooserCount);
+    }
+
+    private static boolean isUnchanged(
+            @Nonnull final ConsumableTestDefinition previousDefinition,
+            @Nonnull final ConsumableTestDefinition testDefinition
+    ) {
+        return (previousDefinition == testDefinition)
+                || (Objects.equals(previousDefinition.getVersion(), testDefinition.getVersion()) && previousDefinition.equals(testDefinition));
     }
 
     @Nonnull
@@ -96,35 +172,146 @@ public class Proctor {
         return new Proctor(testMatrix, loadResult, choosers);
     }
 
+    public static final int DEFAULT_LATENCY_SAMPLING_INTERVAL = 64;
     static final long INT_RANGE = (long) Integer.MAX_VALUE - (long) Integer.MIN_VALUE;
     private final TestMatrixArtifact matrix;
     private final ProctorLoadResult loadResult;
     @Nonnull
     private final Map<String, TestChooser<?>> testChoosers;
 
-    private final Map<String, ConsumableTestDefinition> testDefinitions = Maps.newLinkedHashMap();
+    /**
+     * read-only, shared by all results
+     */
+    private final Map<String, ConsumableTestDefinition> testDefinitions;
+    /**
+     * dense indexes of tests, shared by all results
+     */
+    private final TestIndex testIndex;
+    /**
+     * choosers by test index
+     */
+    private final TestChooser<?>[] indexedTestChoosers;
+    /**
+     * index of the rules shared by the choosers, kept to construct the next Proctor reusing choosers, null if rules are not shared
+     */
+    @Nullable
+    private final SharedRuleIndex sharedRuleIndex;
+    /**
+     * number of distinct rules in the {@link SharedRuleIndex} of the choosers, 0 if rules are not shared
+     */
+    private final int sharedRuleCount;
+    /**
+     * how the choosers were constructed, choosers are only reused by Proctors constructed the same way
+     */
+    @Nullable
+    private final FunctionMapper functionMapper;
+    @Nullable
+    private final RuleEngine ruleEngine;
+    private final int reusedChooserCount;
+    private final LongAdder sharedRuleHits = new LongAdder();
+    private final LongAdder sharedRuleEvaluations = new LongAdder();
+    /**
+     * per-test counters, null unless detailed metrics are enabled, read once per request
+     */
+    @Nullable
+    private volatile DetailedExport detailedExport;
 
     @VisibleForTesting
     Proctor(
             final TestMatrixArtifact matrix,
             final ProctorLoadResult loadResult,
             @Nonnull final Map<String, TestChooser<?>> testChoosers
+    ) {
+        this(matrix, loadResult, testChoosers, null, null, null, 0);
+    }
+
+    private Proctor(
+            final TestMatrixArtifact matrix,
+            final ProctorLoadResult loadResult,
+            @Nonnull final Map<String, TestChooser<?>> testChoosers,
+            @Nullable final SharedRuleIndex sharedRuleIndex,
+            @Nullable final FunctionMapper functionMapper,
+            @Nullable final RuleEngine ruleEngine,
+            final int reusedChooserCount
     ) {
         this.matrix = matrix;
         this.loadResult = loadResult;
         this.testChoosers = testChoosers;
+        this.sharedRuleIndex = sharedRuleIndex;
+        this.sharedRuleCount = (sharedRuleIndex == null) ? 0 : sharedRuleIndex.size();
+        this.functionMapper = functionMapper;
+        this.ruleEngine = ruleEngine;
+        this.reusedChooserCount = reusedChooserCount;
+        final Map<String, ConsumableTestDefinition> definitions = Maps.newLinkedHashMap();
         for (final Entry<String, TestChooser<?>> entry : testChoosers.entrySet()) {
-            this.testDefinitions.put(entry.getKey(), entry.getValue().getTestDefinition());
+            definitions.put(entry.getKey(), entry.getValue().getTestDefinition());
+        }
+        this.testDefinitions = Collections.unmodifiableMap(definitions);
+        this.testIndex = new TestIndex(testChoosers.keySet(), testDefinitions);
+        this.indexedTestChoosers = new TestChooser<?>[testIndex.size()];
+        for (int i = 0; i < indexedTestChoosers.length; i++) {
+            indexedTestChoosers[i] = testChoosers.get(testIndex.getTestName(i));
         }
 
         VarExporter.forNamespace(Proctor.class.getSimpleName()).includeInGlobal().export(this, "");
-        VarExporter.forNamespace(DetailedExport.class.getSimpleName()).export(new DetailedExport(), "");  //  intentionally not in global
     }
 
-    private static class DetailedExport {
-        /*
-         * TODO: export useful details about the parsed test matrix
-         */
+    @Export(name = "reused-test-choosers", doc = "Tests whose parsed rules and buckets were reused from the previously loaded test matrix")
+    public int getReusedChooserCount() {
+        return reusedChooserCount;
+    }
+
+    @Export(name = "shared-rule-hits", doc = "Evaluations of rules avoided by memoizing results of rules shared by several tests, per request")
+    public long getSharedRuleHits() {
+        return sharedRuleHits.sum();
+    }
+
+    @Export(name = "shared-rule-evaluations", doc = "Evaluations of rules whose results are memoized for other tests of the same request")
+    public long getSharedRuleEvaluations() {
+        return sharedRuleEvaluations.sum();
+    }
+
+    @Export(name = "shared-rule-hit-ratio", doc = "Ratio of lookups of shared rules answered from memoized results of the same request")
+    public double getSharedRuleHitRatio() {
+        final long hits = sharedRuleHits.sum();
+        final long lookups = hits + sharedRuleEvaluations.sum();
+        return (lookups == 0) ? 0 : ((double) hits / lookups);
+    }
+
+    /**
+     * Counts evaluations, rule failures, skipped and forced tests, chosen buckets and sampled latency of each test,
+     * exported to the "DetailedExport" namespace and available from {@link #getDetailedMetrics()}.
+     * Measures latency of one request out of {@link #DEFAULT_LATENCY_SAMPLING_INTERVAL}.
+     */
+    public void enableDetailedMetrics() {
+        enableDetailedMetrics(DEFAULT_LATENCY_SAMPLING_INTERVAL);
+    }
+
+    /**
+     * Same as {@link #enableDetailedMetrics()}, restarting all counts from 0 if already enabled
+     *
+     * @param latencySamplingInterval measure latency of one request out of this many, 1 to measure all requests
+     */
+    public void enableDetailedMetrics(final int latencySamplingInterval) {
+        final DetailedExport export = new DetailedExport(testIndex, indexedTestChoosers, latencySamplingInterval);
+        VarExporter.forNamespace(DetailedExport.class.getSimpleName()).export(export, "");  //  intentionally not in global
+        detailedExport = export;
+    }
+
+    /**
+     * Stops counting detailed metrics, so that determining groups does not spend any time on them
+     */
+    public void disableDetailedMetrics() {
+        detailedExport = null;
+    }
+
+    /**
+     * @return snapshot of detailed metrics by test name, empty unless {@link #enableDetailedMetrics()} was called
+     */
+    @Nonnull
+    public Map<String, TestEvaluationMetrics> getDetailedMetrics() {
+        final DetailedExport export = detailedExport;
+        return (export == null) ? Collections.emptyMap() : export.snapshot();
     }
 
     /**
@@ -195,58 +382,200 @@ public class Proctor {
             @Nonnull final Map<String, Integer> forceGroups,
             @Nonnull final Collection<String> testNameFilter
     ) {
-        final Map<String, TestBucket> testGroups = Maps.newLinkedHashMap();
-        final Map<String, Allocation> testAllocations = Maps.newLinkedHashMap();
+        return determineTestGroups(identifiers, inputContext, forceGroups, filterChoosers(testNameFilter));
+    }
 
-        Map<String, TestChooser<?>> filteredChoosers = testChoosers;
-        if (!testNameFilter.isEmpty()) {
-            filteredChoosers = Maps.filterKeys(filteredChoosers, Predicates.in(testNameFilter));
-        }
+    /**
+     * @param choosers choosers by test index, null for tests not to determine
+     */
+    @Nonnull
+    ProctorResult determineTestGroups(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nonnull final TestChooser<?>[] choosers
+    ) {
+        final TestBucket[] testGroups = new TestBucket[choosers.length];
+        final Allocation[] testAllocations = new Allocation[choosers.length];
+        int bucketCount = 0;
+        int allocationCount = 0;
 
-        for (final Entry<String, TestChooser<?>> entry : filteredChoosers.entrySet()) {
-            final String testName = entry.getKey();
-            final Integer forceGroupBucket = forceGroups.get(testName);
-            final TestChooser<?> testChooser = entry.getValue();
-            final String identifier;
-            if (testChooser instanceof StandardTestChooser) {
-                final TestType testType = testChooser.getTestDefinition().getTestType();
-                identifier = identifiers.getIdentifier(testType);
-                if (identifier == null) {
-                    // No identifier for the testType of this chooser, nothing to do
-                    continue;
-                }
-            } else {
-                if (! identifiers.isRandomEnabled()) {
-                    // test wants random chooser, but client disabled random, nothing to do
-                    continue;
-                }
-                identifier = null;
-            }
-            if (forceGroupBucket != null) {
-                final TestBucket forcedTestBucket = testChooser.getTestBucket(forceGroupBucket);
-                if (forcedTestBucket != null) {
-                    testGroups.put(testName, forcedTestBucket);
-                    // use forced group
-                    continue;
-                }
-            }
-            final TestChooser.Result chooseResult;
-            if (identifier == null) {
-                chooseResult = ((RandomTestChooser) testChooser).choose(null, inputContext);
-            } else {
-                chooseResult = ((StandardTestChooser) testChooser).choose(identifier, inputContext);
+        final RequestDetermination determination = new RequestDetermination(identifiers, inputContext, forceGroups, sharedRuleCount, detailedExport);
+
+        for (int i = 0; i < choosers.length; i++) {
+            if (choosers[i] == null) {
+                continue;
             }
+            final TestChooser.Result chooseResult = determination.determine(i, testIndex.getTestName(i), choosers[i]);
             if (chooseResult.getTestBucket() != null) {
-                testGroups.put(testName, chooseResult.getTestBucket());
+                testGroups[i] = chooseResult.getTestBucket();
+                bucketCount++;
             }
             if (chooseResult.getAllocation() != null) {
-                testAllocations.put(testName, chooseResult.getAllocation());
+                testAllocations[i] = chooseResult.getAllocation();
+                allocationCount++;
             }
         }
 
+        determination.reportSharedRuleCounters(sharedRuleHits, sharedRuleEvaluations);
+
+        return new ProctorResult(
+                getMatrixVersion(),
+                testIndex,
+                testGroups,
+                bucketCount,
+                testAllocations,
+                allocationCount,
+                testDefinitions
+        );
+    }
+
+    /**
+     * Same as {@link #determineTestGroups(Identifiers, Map, Map)}, but only determines the bucket of a test
+     * when it is first looked up by name in {@link ProctorResult#getBuckets()} or {@link ProctorResult#getAllocations()},
+     * e.g. by a generated groups accessor. Cheaper for requests using only a few of many tests.
+     *
+     * Operations needing all tests, like iterating or logging the result, determine all remaining tests first,
+     * so logged results are the same as for {@link #determineTestGroups(Identifiers, Map, Map)}.
+     * As rules may be evaluated after this method returns, the given maps must not be modified afterwards.
+     * The maps of the returned result are read-only.
+     */
+    @Nonnull
+    public ProctorResult determineTestGroupsLazily(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups) {
+        return determineTestGroupsLazily(identifiers, inputContext, forceGroups, Collections.emptyList());
+    }
+
+    /**
+     * Same as {@link #determineTestGroups(Identifiers, Map, Map, Collection)}, determining buckets lazily as
+     * {@link #determineTestGroupsLazily(Identifiers, Map, Map)}
+     */
+    @Nonnull
+    public ProctorResult determineTestGroupsLazily(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nonnull final Collection<String> testNameFilter
+    ) {
+        return determineTestGroupsLazily(identifiers, inputContext, forceGroups, filterChoosers(testNameFilter));
+    }
+
+    /**
+     * @param choosers choosers by test index, null for tests not to determine
+     */
+    @Nonnull
+    ProctorResult determineTestGroupsLazily(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nonnull final TestChooser<?>[] choosers
+    ) {
+        return new LazyProctorResult(
+                getMatrixVersion(),
+                testDefinitions,
+                testIndex,
+                choosers,
+                new RequestDetermination(identifiers, inputContext, forceGroups, sharedRuleCount, detailedExport),
+                sharedRuleHits,
+                sharedRuleEvaluations
+        );
+    }
+
+    /**
+     * Determines test buckets of many clients sharing one context, e.g. to precompute groups of a list of users offline.
+     *
+     * Each client gets the same buckets and allocations as determined alone by {@link #determineTestGroups(Identifiers, Map, Map)}
+     * with the same context and forced groups, but rules are evaluated once per test for the whole batch
+     * and only identifiers are hashed per client.
+     * Detailed metrics are not recorded for batches.
+     *
+     * @param identifiers  identifiers of each client, in the order of identifier indexes of the result
+     * @param inputContext variables of the context shared by all clients
+     * @param forceGroups  forced buckets, applied to all clients
+     */
+    @Nonnull
+    public BatchProctorResult determineTestGroupsBatch(
+            @Nonnull final List<Identifiers> identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups) {
+        return determineTestGroupsBatch(identifiers, inputContext, forceGroups, null);
+    }
+
+    /**
+     * Same as {@link #determineTestGroupsBatch(List, Map, Map)}, hashing identifiers in parallel on the given pool
+     *
+     * @param pool pool to hash identifiers in parallel, or null to hash them in the calling thread
+     */
+    @Nonnull
+    public BatchProctorResult determineTestGroupsBatch(
+            @Nonnull final List<Identifiers> identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nullable final ForkJoinPool pool) {
+        return determineTestGroupsBatch(identifiers, inputContext, forceGroups, indexedTestChoosers, pool);
+    }
+
+    /**
+     * @param choosers choosers by test index, null for tests not to determine
+     */
+    @Nonnull
+    BatchProctorResult determineTestGroupsBatch(
+            @Nonnull final List<Identifiers> identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nonnull final TestChooser<?>[] choosers,
+            @Nullable final ForkJoinPool pool) {
+        final BatchDetermination determination = new BatchDetermination(identifiers, inputContext, forceGroups, sharedRuleCount);
+        final BatchProctorResult result = determination.determine(getMatrixVersion(), testIndex, testDefinitions, choosers, pool);
+        determination.reportSharedRuleCounters(sharedRuleHits, sharedRuleEvaluations);
+        return result;
+    }
+
+    /**
+     * Creates a view determining only the given tests, e.g. the tests of the specification of a consumer
+     * excluding dynamic tests it does not use. The tests are resolved once, instead of on each call as for
+     * {@link #determineTestGroups(Identifiers, Map, Map, Collection)}, so a view is meant to be created once per loaded Proctor.
+     *
+     * @param testNames names of the tests to determine, tests not in this Proctor are ignored.
+     *                  Unlike an empty test name filter, an empty collection determines no test.
+     */
+    @Nonnull
+    public ProctorView createView(@Nonnull final Collection<String> testNames) {
+        return new ProctorView(this, testNames.isEmpty() ? new TestChooser<?>[indexedTestChoosers.length] : filterChoosers(testNames));
+    }
+
+    /**
+     * @return choosers by test index, null for tests not in the filter
+     */
+    @Nonnull
+    private TestChooser<?>[] filterChoosers(@Nonnull final Collection<String> testNameFilter) {
+        if (testNameFilter.isEmpty()) {
+            return indexedTestChoosers;
+        }
+        final TestChooser<?>[] filtered = new TestChooser<?>[indexedTestChoosers.length];
+        for (final String testName : testNameFilter) {
+            final int index = testIndex.indexOf(testName);
+            if (index >= 0) {
+                filtered[index] = indexedTestChoosers[index];
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * @return the index of tests, shared by all results determined by this instance
+     */
+    @Nonnull
+    public TestIndex getTestIndex() {
+        return testIndex;
+    }
+
+    private String getMatrixVersion() {
         // TODO Can we make getAudit nonnull?
         final Audit audit = Preconditions.checkNotNull(matrix.getAudit(), "Missing audit");
-        return new ProctorResult(audit.getVersion(), testGroups, testAllocations, testDefinitions);
+        return audit.getVersion();
     }
 
     TestMatrixArtifact getArtifact() {
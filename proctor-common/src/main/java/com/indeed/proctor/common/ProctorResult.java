@@ -1,15 +1,16 @@
 package com.indeed.proctor.common;
 
+import com.google.common.base.Preconditions;
 import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.TestBucket;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
 
 import static java.util.Collections.emptyMap;
@@ -32,17 +33,26 @@ public class ProctorResult {
      * maps from testname to bucket
      */
     @Nonnull
-    private final SortedMap<String, TestBucket> buckets;
+    private final Map<String, TestBucket> buckets;
     /**
      * maps from testname to allocation
      */
     @Nonnull
-    private final SortedMap<String, Allocation> allocations;
+    private final Map<String, Allocation> allocations;
     /**
      * maps from testname to TestDefinition
      */
     @Nonnull
     private final Map<String, ConsumableTestDefinition> testDefinitions;
+    /**
+     * index of the tests of the Proctor determining this result, null for results not determined by a Proctor
+     */
+    @Nullable
+    private final TestIndex testIndex;
+    @Nullable
+    private final TestBucket[] bucketValues;
+    @Nullable
+    private final Allocation[] allocationValues;
 
     @Deprecated
     public ProctorResult(
@@ -73,6 +83,34 @@ public class ProctorResult {
         this.buckets = new TreeMap<>(buckets);
         this.allocations = new TreeMap<>(allocations);
         this.testDefinitions = (testDefinitions == null) ? emptyMap() : new HashMap<>(testDefinitions);
+        this.testIndex = null;
+        this.bucketValues = null;
+        this.allocationValues = null;
+    }
+
+    /**
+     * Result backed by arrays indexed by the test index of a {@link Proctor}, using the given arrays and
+     * test definitions without copying them, so that they can be shared.
+     *
+     * @param bucketCount     number of non-null buckets
+     * @param allocationCount number of non-null allocations
+     */
+    ProctorResult(
+            final String matrixVersion,
+            @Nonnull final TestIndex testIndex,
+            @Nonnull final TestBucket[] bucketValues,
+            final int bucketCount,
+            @Nonnull final Allocation[] allocationValues,
+            final int allocationCount,
+            @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions
+    ) {
+        this.matrixVersion = matrixVersion;
+        this.buckets = new IndexedArrayMap<>(testIndex, bucketValues, bucketCount);
+        this.allocations = new IndexedArrayMap<>(testIndex, allocationValues, allocationCount);
+        this.testDefinitions = testDefinitions;
+        this.testIndex = testIndex;
+        this.bucketValues = bucketValues;
+        this.allocationValues = allocationValues;
     }
 
     @SuppressWarnings("UnusedDeclaration")
@@ -103,5 +141,36 @@ public class ProctorResult {
         return testDefinitions;
     }
 
+    /**
+     * Returns the index of the tests of the {@link Proctor} that determined this result, shared by all its results,
+     * to look up buckets and allocations by index. Null for results not determined by a Proctor.
+     */
+    @CheckForNull
+    public TestIndex getTestIndex() {
+        return testIndex;
+    }
+
+    /**
+     * Same as getBuckets().get(testName), for the test at the given index of {@link #getTestIndex()}
+     *
+     * @throws IllegalStateException if this result has no test index
+     */
+    @CheckForNull
+    public TestBucket getBucket(final int testIndex) {
+        Preconditions.checkState(bucketValues != null, "Result has no test index");
+        return bucketValues[testIndex];
+    }
+
+    /**
+     * Same as getAllocations().get(testName), for the test at the given index of {@link #getTestIndex()}
+     *
+     * @throws IllegalStateException if this result has no test index
+     */
+    @CheckForNull
+    public Allocation getAllocation(final int testIndex) {
+        Preconditions.checkState(allocationValues != null, "Result has no test index");
+        return allocationValues[testIndex];
+    }
+
 
 }
@@ -53,16 +53,22 @@ public class ProctorRuleFunctions {
         return ((Number) number).longValue();
     }
 
+    /**
+     * Compiled regular expressions are cached, see {@link RuleFunctionCaches}
+     */
     public static boolean matches(final String value, final String regex) {
-        return value.matches(regex);
+        return RuleFunctionCaches.getPattern(regex).matcher(value).matches();
     }
 
     public static long now() {
         return System.currentTimeMillis();
     }
 
+    /**
+     * Parsed versions are cached, see {@link RuleFunctionCaches}
+     */
     public static ReleaseVersion version(final String versionString) {
-        return ReleaseVersion.fromString(versionString);
+        return RuleFunctionCaches.getVersion(versionString);
     }
 
     public static <T extends Comparable<T>> boolean inRange(final T value, final T closedLowerBound, final T openUpperBound) {
@@ -70,8 +76,20 @@ public class ProctorRuleFunctions {
     }
 
     public static boolean versionInRange(final ReleaseVersion version, final String startInclusive, final String endExclusive) {
-        final ReleaseVersion start = ReleaseVersion.fromString(startInclusive);
-        final ReleaseVersion end = ReleaseVersion.fromString(endExclusive);
+        final ReleaseVersion start = RuleFunctionCaches.getVersion(startInclusive);
+        final ReleaseVersion end = RuleFunctionCaches.getVersion(endExclusive);
+        return versionInRange(version, start, end, endExclusive);
+    }
+
+    /**
+     * @param endExclusive the upper bound before parsing, for the error message
+     */
+    static boolean versionInRange(
+            final ReleaseVersion version,
+            final ReleaseVersion start,
+            final ReleaseVersion end,
+            final String endExclusive
+    ) {
         if (end.getMatchPrecision() != ReleaseVersion.MatchPrecision.BUILD) {
             throw new IllegalStateException("Cannot use wildcard as open upper bound of range: " + endExclusive);
         }
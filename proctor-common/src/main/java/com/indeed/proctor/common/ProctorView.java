@@ -0,0 +1,91 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A view of a {@link Proctor} determining only a subset of its tests, created by {@link Proctor#createView}.
+ *
+ * Results have buckets and allocations for the tests of the view only, and share the test index and test definitions
+ * of the Proctor, like results determined with a test name filter.
+ * Immutable, a new view is to be created for each reloaded Proctor.
+ */
+public final class ProctorView {
+    @Nonnull
+    private final Proctor proctor;
+    /**
+     * choosers by test index of the Proctor, null for tests not in this view
+     */
+    @Nonnull
+    private final TestChooser<?>[] testChoosers;
+    @Nonnull
+    private final Set<String> testNames;
+
+    ProctorView(@Nonnull final Proctor proctor, @Nonnull final TestChooser<?>[] testChoosers) {
+        this.proctor = proctor;
+        this.testChoosers = testChoosers;
+        final Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < testChoosers.length; i++) {
+            if (testChoosers[i] != null) {
+                names.add(proctor.getTestIndex().getTestName(i));
+            }
+        }
+        this.testNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @return the Proctor of this view
+     */
+    @Nonnull
+    public Proctor getProctor() {
+        return proctor;
+    }
+
+    /**
+     * @return names of the tests of this view that are in the Proctor, in order of the test index
+     */
+    @Nonnull
+    public Set<String> getTestNames() {
+        return testNames;
+    }
+
+    /**
+     * Same as {@link Proctor#determineTestGroups(Identifiers, Map, Map)} for the tests of this view
+     */
+    @Nonnull
+    public ProctorResult determineTestGroups(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups) {
+        return proctor.determineTestGroups(identifiers, inputContext, forceGroups, testChoosers);
+    }
+
+    /**
+     * Same as {@link Proctor#determineTestGroupsLazily(Identifiers, Map, Map)} for the tests of this view
+     */
+    @Nonnull
+    public ProctorResult determineTestGroupsLazily(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups) {
+        return proctor.determineTestGroupsLazily(identifiers, inputContext, forceGroups, testChoosers);
+    }
+
+    /**
+     * Same as {@link Proctor#determineTestGroupsBatch(List, Map, Map, ForkJoinPool)} for the tests of this view
+     */
+    @Nonnull
+    public BatchProctorResult determineTestGroupsBatch(
+            @Nonnull final List<Identifiers> identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            @Nullable final ForkJoinPool pool) {
+        return proctor.determineTestGroupsBatch(identifiers, inputContext, forceGroups, testChoosers, pool);
+    }
+}
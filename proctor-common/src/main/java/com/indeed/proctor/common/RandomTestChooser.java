@@ -10,13 +10,15 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
+import javax.el.VariableMapper;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Embodies the logic for a single purely random test, including applicability rule and distribution.  {@link #choose(Void, java.util.Map)} is the only useful entry point.
@@ -24,22 +26,48 @@ import java.util.Random;
  */
 @VisibleForTesting
 class RandomTestChooser implements TestChooser<Void> {
-    @Nonnull
-    private final Random random;
+    /**
+     * bound of random values, a power of two so that drawing a value is a single shift.
+     * Allows ranges as small as 1e-9.
+     */
+    private static final int RANDOM_BOUND = 1 << 30;
+
+    /**
+     * generator of a seeded chooser, null to use {@link ThreadLocalRandom}
+     */
+    @Nullable
+    private final SplittableRandom seededRandom;
     @Nonnull
     private final TestRangeSelector testRangeSelector;
     @Nonnull
     private final List<Allocation> allocations;
+    /**
+     * per allocation, upper bounds (exclusive) of random values of each range
+     */
+    @Nonnull
+    private final int[][] cutoffs;
+    /**
+     * per allocation, bucket of each range, null if no bucket has the value of the range
+     */
+    @Nonnull
+    private final TestBucket[][] rangeBuckets;
 
+    /**
+     * Creates a chooser drawing from {@link ThreadLocalRandom}, free of contention between threads
+     */
     public RandomTestChooser(
             final ExpressionFactory expressionFactory,
             final FunctionMapper functionMapper,
             final String testName,
             @Nonnull final ConsumableTestDefinition testDefinition
     ) {
-        this(System.nanoTime(), expressionFactory, functionMapper, testName, testDefinition);
+        this(null, expressionFactory, functionMapper, testName, testDefinition, null);
     }
 
+    /**
+     * Creates a chooser drawing from a generator with the given seed, so that the sequence of chosen buckets is reproducible.
+     * Meant for tests, as threads choosing concurrently contend for the generator.
+     */
     public RandomTestChooser(
             final long seed,
             final ExpressionFactory expressionFactory,
@@ -47,9 +75,55 @@ class RandomTestChooser implements TestChooser<Void> {
             final String testName,
             @Nonnull final ConsumableTestDefinition testDefinition
     ) {
-        testRangeSelector = new TestRangeSelector(expressionFactory, functionMapper, testName, testDefinition);
-        allocations = testDefinition.getAllocations();
-        random = new Random(seed);
+        this(seed, expressionFactory, functionMapper, testName, testDefinition, null);
+    }
+
+    /**
+     * @param seed null to draw from {@link ThreadLocalRandom}
+     */
+    RandomTestChooser(
+            @Nullable final Long seed,
+            final ExpressionFactory expressionFactory,
+            final FunctionMapper functionMapper,
+            final String testName,
+            @Nonnull final ConsumableTestDefinition testDefinition,
+            @Nullable final SharedRuleIndex sharedRuleIndex
+    ) {
+        this(seed, new TestRangeSelector(expressionFactory, functionMapper, testName, testDefinition, sharedRuleIndex));
+    }
+
+    /**
+     * @param seed null to draw from {@link ThreadLocalRandom}
+     */
+    RandomTestChooser(@Nullable final Long seed, @Nonnull final TestRangeSelector selector) {
+        testRangeSelector = selector;
+        allocations = selector.getTestDefinition().getAllocations();
+        seededRandom = (seed == null) ? null : new SplittableRandom(seed);
+
+        cutoffs = new int[allocations.size()][];
+        rangeBuckets = new TestBucket[allocations.size()][];
+        for (int i = 0; i < allocations.size(); i++) {
+            final List<Range> ranges = allocations.get(i).getRanges();
+            final TestBucket[] bucketRange = testRangeSelector.getBucketRange(i);
+            cutoffs[i] = constructCutoffArray(ranges);
+            rangeBuckets[i] = new TestBucket[ranges.size()];
+            // null for ranges without bucket, failing the requests drawing them as in allocateRandomGroup
+            System.arraycopy(bucketRange, 0, rangeBuckets[i], 0, ranges.size());
+        }
+    }
+
+    /**
+     * Ranges are not required to add up to 1; as before, values beyond the total fall into the last range.
+     */
+    @Nonnull
+    private static int[] constructCutoffArray(@Nonnull final List<Range> ranges) {
+        final int[] cutoffs = new int[ranges.size()];
+        double bucketTotal = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            bucketTotal += ranges.get(i).getLength();
+            cutoffs[i] = (int) Math.min(RANDOM_BOUND, Math.round(bucketTotal * RANDOM_BOUND));
+        }
+        return cutoffs;
     }
 
     @Nonnull
@@ -97,50 +171,76 @@ class RandomTestChooser implements TestChooser<Void> {
         return testRangeSelector.getTestName();
     }
 
+    @Nonnull
+    @Override
+    public TestRangeSelector getTestRangeSelector() {
+        return testRangeSelector;
+    }
+
+    @Override
+    public long getRuleFailureCount() {
+        return testRangeSelector.getRuleFailureCount();
+    }
+
     @Nonnull
     @Override
     public TestChooser.Result choose(
             @Nullable final Void identifier,
             @Nonnull final Map<String, Object> values
     ) {
-        final int matchingRuleIndex = testRangeSelector.findMatchingRule(values);
+        return choose(identifier, testRangeSelector.createContextVariables(values), null);
+    }
+
+    @Nonnull
+    @Override
+    public TestChooser.Result choose(
+            @Nullable final Void identifier,
+            @Nonnull final VariableMapper contextVariables,
+            @Nullable final SharedRuleResults sharedRuleResults
+    ) {
+        final int matchingRuleIndex = testRangeSelector.findMatchingRule(contextVariables, sharedRuleResults);
         if (matchingRuleIndex < 0) {
             return TestChooser.Result.EMPTY;
         }
-        // TODO Reimplement
-        //noinspection deprecation
         return allocateRandomGroup(matchingRuleIndex);
     }
 
+    TestChooser.Result allocateRandomGroup(final int matchingRuleIndex) {
+        final int rangeIndex = chooseRange(matchingRuleIndex);
+        return new Result(rangeBuckets[matchingRuleIndex][rangeIndex], allocations.get(matchingRuleIndex));
+    }
+
     /**
-     * @deprecated Temporary implementation; this should be more like {@link StandardTestChooser}, with the cutoffs etc. set in the constructor.
+     * @param matchingRuleIndex index of the allocation matching the context, see {@link TestRangeSelector#findMatchingRule}
+     * @return index of a randomly drawn range of the allocation, of the bucket in {@link #getRangeBuckets(int)}
+     * @throws IllegalStateException if no bucket has the value of the drawn range
      */
-    TestChooser.Result allocateRandomGroup(final int matchingRuleIndex) {
-        final TestBucket[] matchingBucketRange = testRangeSelector.getBucketRange(matchingRuleIndex);
-        final Allocation allocation = allocations.get(matchingRuleIndex);
-        final List<Range> ranges = allocation.getRanges();
-
-        final double nextDouble = random.nextDouble();
-        double current = 0;
-
-        for (final Range range : ranges) {
-            final double max = current + range.getLength();
-            if (nextDouble < max) {
-                final int matchingBucketValue = range.getBucketValue();
-                return new Result(getBucketForValue(matchingBucketValue, matchingBucketRange), allocation);
-            }
-            current = max;
+    int chooseRange(final int matchingRuleIndex) {
+        final int[] matchingCutoffs = cutoffs[matchingRuleIndex];
+        final int value = nextRandomValue();
+        int i;
+        for (i = 0; i < matchingCutoffs.length - 1 && value >= matchingCutoffs[i]; i++) { /* intentionally empty */ }
+        if (rangeBuckets[matchingRuleIndex][i] == null) {
+            throw new IllegalStateException("Unable to find a bucket with value "
+                    + allocations.get(matchingRuleIndex).getRanges().get(i).getBucketValue());
         }
-        //  fallback because I don't trust double math to always do the right thing
-        return new Result(getBucketForValue(ranges.get(ranges.size() - 1).getBucketValue(), matchingBucketRange), allocation);
+        return i;
     }
 
-    static TestBucket getBucketForValue(final int matchingBucketValue, @Nonnull final TestBucket[] matchingBucketRange) {
-        for (final TestBucket bucket : matchingBucketRange) {
-            if (matchingBucketValue == bucket.getValue()) {
-                return bucket;
-            }
+    /**
+     * @return buckets of the ranges of the allocation at the given index
+     */
+    @Nonnull
+    TestBucket[] getRangeBuckets(final int matchingRuleIndex) {
+        return rangeBuckets[matchingRuleIndex];
+    }
+
+    private int nextRandomValue() {
+        if (seededRandom == null) {
+            return ThreadLocalRandom.current().nextInt(RANDOM_BOUND);
+        }
+        synchronized (seededRandom) {
+            return seededRandom.nextInt(RANDOM_BOUND);
         }
-        throw new IllegalStateException("Unable to find a bucket with value " + matchingBucketValue);
     }
 }
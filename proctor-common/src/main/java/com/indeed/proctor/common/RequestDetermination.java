@@ -0,0 +1,150 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.el.LazyReadOnlyVariableMapper;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestType;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.el.VariableMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Determines groups of single tests for one request.
+ * Holds what all tests of the request share, so that context variables are converted,
+ * identifiers are encoded and shared rules are evaluated at most once per request,
+ * no matter whether tests are determined all at once or one at a time.
+ *
+ * Not thread-safe, one instance per request.
+ */
+class RequestDetermination {
+    @Nonnull
+    private final Identifiers identifiers;
+    @Nonnull
+    private final Map<String, Integer> forceGroups;
+    @Nonnull
+    private final VariableMapper contextVariables;
+    @Nullable
+    private final SharedRuleResults sharedRuleResults;
+    /**
+     * identifiers encoded at most once per request and test type, instead of once per test
+     */
+    private final Map<TestType, byte[]> encodedIdentifiers = new HashMap<>();
+    /**
+     * counters of the Proctor if detailed metrics are enabled, null to skip all instrumentation
+     */
+    @Nullable
+    private final DetailedExport detailedExport;
+    /**
+     * whether to measure the latency of tests for this request
+     */
+    private final boolean measureLatency;
+
+    private int reportedHits;
+    private int reportedEvaluations;
+
+    RequestDetermination(
+            @Nonnull final Identifiers identifiers,
+            @Nonnull final Map<String, Object> inputContext,
+            @Nonnull final Map<String, Integer> forceGroups,
+            final int sharedRuleCount,
+            @Nullable final DetailedExport detailedExport
+    ) {
+        this.identifiers = identifiers;
+        this.forceGroups = forceGroups;
+        this.contextVariables = new LazyReadOnlyVariableMapper(RuleEvaluator.EXPRESSION_FACTORY, inputContext);
+        this.sharedRuleResults = (sharedRuleCount > 0) ? new SharedRuleResults(sharedRuleCount) : null;
+        this.detailedExport = detailedExport;
+        this.measureLatency = (detailedExport != null) && detailedExport.sampleLatency();
+    }
+
+    /**
+     * @param testIndex index of the test in the {@link TestIndex} of the Proctor, to count detailed metrics
+     * @return the chosen bucket and allocation of the test, {@link TestChooser.Result#EMPTY} if the test does not apply to the request
+     */
+    @Nonnull
+    TestChooser.Result determine(final int testIndex, @Nonnull final String testName, @Nonnull final TestChooser<?> testChooser) {
+        final byte[] identifier;
+        if (testChooser instanceof StandardTestChooser) {
+            final TestType testType = testChooser.getTestDefinition().getTestType();
+            identifier = getEncodedIdentifier(testType);
+            if (identifier == null) {
+                // No identifier for the testType of this chooser, nothing to do
+                if (detailedExport != null) {
+                    detailedExport.recordMissingIdentifier(testIndex);
+                }
+                return TestChooser.Result.EMPTY;
+            }
+        } else {
+            if (! identifiers.isRandomEnabled()) {
+                // test wants random chooser, but client disabled random, nothing to do
+                if (detailedExport != null) {
+                    detailedExport.recordMissingIdentifier(testIndex);
+                }
+                return TestChooser.Result.EMPTY;
+            }
+            identifier = null;
+        }
+        final Integer forceGroupBucket = forceGroups.get(testName);
+        if (forceGroupBucket != null) {
+            final TestBucket forcedTestBucket = testChooser.getTestBucket(forceGroupBucket);
+            if (forcedTestBucket != null) {
+                // use forced group
+                if (detailedExport != null) {
+                    detailedExport.recordForcedGroup(testIndex);
+                }
+                return new TestChooser.Result(forcedTestBucket, null);
+            }
+        }
+        if (detailedExport == null) {
+            return choose(identifier, testChooser);
+        }
+        final long start = measureLatency ? System.nanoTime() : 0;
+        final TestChooser.Result result = choose(identifier, testChooser);
+        detailedExport.recordEvaluation(testIndex, result.getTestBucket(), measureLatency ? (System.nanoTime() - start) : -1);
+        return result;
+    }
+
+    @Nonnull
+    private TestChooser.Result choose(@Nullable final byte[] identifier, @Nonnull final TestChooser<?> testChooser) {
+        if (identifier == null) {
+            return ((RandomTestChooser) testChooser).choose(null, contextVariables, sharedRuleResults);
+        } else {
+            return ((StandardTestChooser) testChooser).chooseEncoded(identifier, contextVariables, sharedRuleResults);
+        }
+    }
+
+    /**
+     * Adds hits and evaluations of shared rules since the last call to the given counters
+     */
+    void reportSharedRuleCounters(@Nonnull final LongAdder hits, @Nonnull final LongAdder evaluations) {
+        if (sharedRuleResults == null) {
+            return;
+        }
+        final int currentHits = sharedRuleResults.getHits();
+        final int currentEvaluations = sharedRuleResults.getEvaluations();
+        hits.add(currentHits - reportedHits);
+        evaluations.add(currentEvaluations - reportedEvaluations);
+        reportedHits = currentHits;
+        reportedEvaluations = currentEvaluations;
+    }
+
+    @CheckForNull
+    private byte[] getEncodedIdentifier(@Nonnull final TestType testType) {
+        final byte[] encoded = encodedIdentifiers.get(testType);
+        if (encoded != null) {
+            return encoded;
+        }
+        final String identifier = identifiers.getIdentifier(testType);
+        if (identifier == null) {
+            return null;
+        }
+        final byte[] newlyEncoded = identifier.getBytes(StandardCharsets.UTF_8);
+        encodedIdentifiers.put(testType, newlyEncoded);
+        return newlyEncoded;
+    }
+}
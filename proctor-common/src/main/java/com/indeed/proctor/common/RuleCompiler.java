@@ -0,0 +1,648 @@
+package com.indeed.proctor.common;
+
+import com.indeed.util.core.ReleaseVersion;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.el.lang.ELArithmetic;
+import org.apache.el.lang.ELSupport;
+import org.apache.el.lang.ExpressionBuilder;
+import org.apache.el.parser.AstAnd;
+import org.apache.el.parser.AstBracketSuffix;
+import org.apache.el.parser.AstChoice;
+import org.apache.el.parser.AstDiv;
+import org.apache.el.parser.AstDotSuffix;
+import org.apache.el.parser.AstEmpty;
+import org.apache.el.parser.AstEqual;
+import org.apache.el.parser.AstFalse;
+import org.apache.el.parser.AstFloatingPoint;
+import org.apache.el.parser.AstFunction;
+import org.apache.el.parser.AstGreaterThan;
+import org.apache.el.parser.AstGreaterThanEqual;
+import org.apache.el.parser.AstIdentifier;
+import org.apache.el.parser.AstInteger;
+import org.apache.el.parser.AstLessThan;
+import org.apache.el.parser.AstLessThanEqual;
+import org.apache.el.parser.AstMinus;
+import org.apache.el.parser.AstMod;
+import org.apache.el.parser.AstMult;
+import org.apache.el.parser.AstNegative;
+import org.apache.el.parser.AstNot;
+import org.apache.el.parser.AstNotEqual;
+import org.apache.el.parser.AstNull;
+import org.apache.el.parser.AstOr;
+import org.apache.el.parser.AstPlus;
+import org.apache.el.parser.AstString;
+import org.apache.el.parser.AstTrue;
+import org.apache.el.parser.AstValue;
+import org.apache.el.parser.BooleanNode;
+import org.apache.el.parser.Node;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.FunctionMapper;
+import javax.el.PropertyNotFoundException;
+import javax.el.ValueExpression;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles rules for {@link RuleEngine#COMPILED}.
+ *
+ * Translates the syntax tree of a rule parsed by apache-el once into a tree of {@link Evaluator}s applying the same coercions
+ * ({@link ELSupport}, {@link ELArithmetic}) as the nodes they replace, so that compiled rules have the same results and failures.
+ * Functions and test constants are resolved once while compiling instead of on each evaluation,
+ * and each property access remembers the getter for the last bean class it has read from.
+ *
+ * Rules with constructs not supported here, like method calls or non-boolean results, are not compiled
+ * and keep being interpreted by apache-el.
+ */
+final class RuleCompiler {
+
+    @Nonnull
+    private final FunctionMapper functionMapper;
+    @Nonnull
+    private final Map<String, Object> testConstants;
+
+    private RuleCompiler(@Nonnull final FunctionMapper functionMapper, @Nonnull final Map<String, Object> testConstants) {
+        this.functionMapper = functionMapper;
+        this.testConstants = testConstants;
+    }
+
+    /**
+     * Evaluates a compiled node of a rule, with the same side effects on the property resolution state of the context as apache-el
+     */
+    interface Evaluator {
+        @Nullable
+        Object getValue(@Nonnull ELContext context);
+    }
+
+    /**
+     * @param ve a rule parsed by {@link RuleEvaluator#compileBooleanRule(String)} without binding variables
+     * @param testConstants constants of the test of the rule, which take precedence over variables of the context
+     * @return the compiled rule, or null if the rule must be interpreted
+     */
+    @CheckForNull
+    static CompiledRuleExpression compile(
+            @Nonnull final ValueExpression ve,
+            @Nonnull final FunctionMapper functionMapper,
+            @Nonnull final Map<String, Object> testConstants
+    ) {
+        return new RuleCompiler(functionMapper, testConstants).compile(ve);
+    }
+
+    @CheckForNull
+    private CompiledRuleExpression compile(@Nonnull final ValueExpression ve) {
+        if (ve.isLiteralText()) {
+            return null;
+        }
+        final Node root;
+        try {
+            root = ExpressionBuilder.createNode(ve.getExpressionString());
+        } catch (final ELException e) {
+            return null;
+        }
+        final boolean checkTypeOnEvaluation;
+        if ((root instanceof BooleanNode) || (root instanceof AstNot) || (root instanceof AstEmpty)) {
+            checkTypeOnEvaluation = false;
+        } else if (root instanceof AstIdentifier) {
+            // the type of the rule is the type of the value of the variable
+            checkTypeOnEvaluation = true;
+        } else if (root instanceof AstFunction) {
+            final Method method = resolveFunction((AstFunction) root);
+            if ((method == null) || (ClassUtils.primitiveToWrapper(method.getReturnType()) != Boolean.class)) {
+                return null;
+            }
+            checkTypeOnEvaluation = false;
+        } else {
+            return null;
+        }
+        final Evaluator evaluator = compileNode(root);
+        if (evaluator == null) {
+            return null;
+        }
+        return new CompiledRuleExpression(ve, evaluator, checkTypeOnEvaluation);
+    }
+
+    @CheckForNull
+    private Evaluator compileNode(@Nonnull final Node node) {
+        if ((node instanceof AstString) || (node instanceof AstInteger) || (node instanceof AstFloatingPoint)
+                || (node instanceof AstTrue) || (node instanceof AstFalse) || (node instanceof AstNull)) {
+            return compileLiteral(node);
+        }
+        if (node instanceof AstNegative) {
+            final Node child = node.jjtGetChild(0);
+            // negative variables are rare, not worth replicating the coercions of AstNegative
+            return ((child instanceof AstInteger) || (child instanceof AstFloatingPoint)) ? compileLiteral(node) : null;
+        }
+        if (node instanceof AstIdentifier) {
+            final String name = node.getImage();
+            if (testConstants.containsKey(name)) {
+                return new ConstantEvaluator(testConstants.get(name), true);
+            }
+            return new IdentifierEvaluator(name);
+        }
+        if (node instanceof AstValue) {
+            return compileValue(node);
+        }
+        if (node instanceof AstFunction) {
+            return compileFunction((AstFunction) node);
+        }
+
+        final Evaluator[] children = new Evaluator[node.jjtGetNumChildren()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compileNode(node.jjtGetChild(i));
+            if (children[i] == null) {
+                return null;
+            }
+        }
+        if ((node instanceof AstNot) || (node instanceof AstEmpty)) {
+            if (children.length != 1) {
+                return null;
+            }
+            final Evaluator operand = children[0];
+            if (node instanceof AstNot) {
+                return context -> !ELSupport.coerceToBoolean(operand.getValue(context));
+            }
+            return context -> isEmpty(operand.getValue(context));
+        }
+        if (node instanceof AstChoice) {
+            if (children.length != 3) {
+                return null;
+            }
+            final Evaluator condition = children[0];
+            final Evaluator whenTrue = children[1];
+            final Evaluator whenFalse = children[2];
+            return context -> ELSupport.coerceToBoolean(condition.getValue(context))
+                    ? whenTrue.getValue(context)
+                    : whenFalse.getValue(context);
+        }
+        if (children.length != 2) {
+            return null;
+        }
+        final Evaluator left = children[0];
+        final Evaluator right = children[1];
+        if (node instanceof AstAnd) {
+            return context -> ELSupport.coerceToBoolean(left.getValue(context))
+                    && ELSupport.coerceToBoolean(right.getValue(context));
+        }
+        if (node instanceof AstOr) {
+            return context -> ELSupport.coerceToBoolean(left.getValue(context))
+                    || ELSupport.coerceToBoolean(right.getValue(context));
+        }
+        if (node instanceof AstEqual) {
+            return context -> ELSupport.equals(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstNotEqual) {
+            return context -> !ELSupport.equals(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstLessThan) {
+            return context -> {
+                final Object leftValue = left.getValue(context);
+                final Object rightValue = right.getValue(context);
+                return (leftValue != null) && (rightValue != null) && (ELSupport.compare(leftValue, rightValue) < 0);
+            };
+        }
+        if (node instanceof AstGreaterThan) {
+            return context -> {
+                final Object leftValue = left.getValue(context);
+                final Object rightValue = right.getValue(context);
+                return (leftValue != null) && (rightValue != null) && (ELSupport.compare(leftValue, rightValue) > 0);
+            };
+        }
+        if (node instanceof AstLessThanEqual) {
+            return context -> {
+                final Object leftValue = left.getValue(context);
+                final Object rightValue = right.getValue(context);
+                if (leftValue == rightValue) {
+                    return true;
+                }
+                return (leftValue != null) && (rightValue != null) && (ELSupport.compare(leftValue, rightValue) <= 0);
+            };
+        }
+        if (node instanceof AstGreaterThanEqual) {
+            return context -> {
+                final Object leftValue = left.getValue(context);
+                final Object rightValue = right.getValue(context);
+                if (leftValue == rightValue) {
+                    return true;
+                }
+                return (leftValue != null) && (rightValue != null) && (ELSupport.compare(leftValue, rightValue) >= 0);
+            };
+        }
+        if (node instanceof AstPlus) {
+            return context -> ELArithmetic.add(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstMinus) {
+            return context -> ELArithmetic.subtract(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstMult) {
+            return context -> ELArithmetic.multiply(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstDiv) {
+            return context -> ELArithmetic.divide(left.getValue(context), right.getValue(context));
+        }
+        if (node instanceof AstMod) {
+            return context -> ELArithmetic.mod(left.getValue(context), right.getValue(context));
+        }
+        return null;
+    }
+
+    /**
+     * literals do not depend on the context, their value is computed once
+     */
+    @CheckForNull
+    private static Evaluator compileLiteral(@Nonnull final Node node) {
+        final Object value;
+        try {
+            value = node.getValue(null);
+        } catch (final RuntimeException e) {
+            return null;
+        }
+        return new ConstantEvaluator(value, false);
+    }
+
+    @CheckForNull
+    private Evaluator compileValue(@Nonnull final Node node) {
+        final Evaluator base = compileNode(node.jjtGetChild(0));
+        if (base == null) {
+            return null;
+        }
+        final int suffixCount = node.jjtGetNumChildren() - 1;
+        final Evaluator[] properties = new Evaluator[suffixCount];
+        final PropertyAccessor[] accessors = new PropertyAccessor[suffixCount];
+        for (int i = 0; i < suffixCount; i++) {
+            final Node suffix = node.jjtGetChild(i + 1);
+            if (suffix instanceof AstDotSuffix) {
+                final String name = suffix.getImage();
+                properties[i] = context -> name;
+            } else if ((suffix instanceof AstBracketSuffix) && (suffix.jjtGetNumChildren() == 1)) {
+                properties[i] = compileNode(suffix.jjtGetChild(0));
+                if (properties[i] == null) {
+                    return null;
+                }
+            } else {
+                // method calls
+                return null;
+            }
+            accessors[i] = new PropertyAccessor();
+        }
+        return new ValueEvaluator(base, properties, accessors);
+    }
+
+    @CheckForNull
+    private Evaluator compileFunction(@Nonnull final AstFunction node) {
+        final Method method = resolveFunction(node);
+        if ((method == null) || (method.getParameterTypes().length != node.jjtGetNumChildren())) {
+            return null;
+        }
+        final Evaluator[] arguments = new Evaluator[node.jjtGetNumChildren()];
+        final Object[] constantArguments = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compileNode(node.jjtGetChild(i));
+            if (arguments[i] == null) {
+                return null;
+            }
+            if (arguments[i] instanceof ConstantEvaluator) {
+                try {
+                    constantArguments[i] = ELSupport.coerceToType(((ConstantEvaluator) arguments[i]).value, method.getParameterTypes()[i]);
+                } catch (final ELException e) {
+                    // fails on each evaluation
+                    constantArguments[i] = null;
+                }
+            }
+        }
+        final FunctionInvoker preResolved = preResolve(method, constantArguments);
+        if (preResolved != null) {
+            return new FunctionEvaluator(node.getOutputName(), method, arguments, preResolved, true);
+        }
+        return new FunctionEvaluator(node.getOutputName(), method, arguments, values -> method.invoke(null, values), false);
+    }
+
+    /**
+     * Parses regular expressions and versions passed to functions of {@link ProctorRuleFunctions} as literals or test constants
+     * once on compilation instead of on each evaluation.
+     *
+     * @param constantArguments arguments of the function known on compilation, coerced to the types of the parameters, null elements for others
+     * @return an invoker using the parsed arguments, or null to invoke the function as is
+     */
+    @CheckForNull
+    private static FunctionInvoker preResolve(@Nonnull final Method method, @Nonnull final Object[] constantArguments) {
+        if (method.getDeclaringClass() != ProctorRuleFunctions.class) {
+            return null;
+        }
+        try {
+            switch (method.getName()) {
+                case "matches":
+                    if (constantArguments[1] instanceof String) {
+                        final Pattern pattern = RuleFunctionCaches.getPattern((String) constantArguments[1]);
+                        return values -> pattern.matcher((String) values[0]).matches();
+                    }
+                    return null;
+                case "version":
+                    if (constantArguments[0] instanceof String) {
+                        final ReleaseVersion version = RuleFunctionCaches.getVersion((String) constantArguments[0]);
+                        return values -> version;
+                    }
+                    return null;
+                case "versionInRange":
+                    if ((constantArguments[1] instanceof String) && (constantArguments[2] instanceof String)) {
+                        final ReleaseVersion start = RuleFunctionCaches.getVersion((String) constantArguments[1]);
+                        final ReleaseVersion end = RuleFunctionCaches.getVersion((String) constantArguments[2]);
+                        final String endExclusive = (String) constantArguments[2];
+                        return values -> ProctorRuleFunctions.versionInRange((ReleaseVersion) values[0], start, end, endExclusive);
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        } catch (final RuntimeException e) {
+            // invalid argument, fails on each evaluation
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private Method resolveFunction(@Nonnull final AstFunction node) {
+        return functionMapper.resolveFunction(node.getPrefix(), node.getLocalName());
+    }
+
+    private static boolean isEmpty(@Nullable final Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof String) {
+            return ((String) value).isEmpty();
+        }
+        if (value instanceof Object[]) {
+            return ((Object[]) value).length == 0;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        return false;
+    }
+
+    /**
+     * Variable of the context or test constant, resolved the same way as by {@link com.indeed.proctor.common.el.VariableMapperELResolver}
+     */
+    private static class IdentifierEvaluator implements Evaluator {
+        @Nonnull
+        private final String name;
+
+        private IdentifierEvaluator(@Nonnull final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object getValue(@Nonnull final ELContext context) {
+            context.setPropertyResolved(false);
+            final ValueExpression ve = context.getVariableMapper().resolveVariable(name);
+            if (ve == null) {
+                throw new PropertyNotFoundException("Unable to resolve identifier '" + name + "'");
+            }
+            context.setPropertyResolved(true);
+            return ve.getValue(context);
+        }
+    }
+
+    /**
+     * Chain of property accesses like a.b["c"], null as soon as the base or a property is null
+     */
+    private static class ValueEvaluator implements Evaluator {
+        @Nonnull
+        private final Evaluator base;
+        @Nonnull
+        private final Evaluator[] properties;
+        @Nonnull
+        private final PropertyAccessor[] accessors;
+
+        private ValueEvaluator(
+                @Nonnull final Evaluator base,
+                @Nonnull final Evaluator[] properties,
+                @Nonnull final PropertyAccessor[] accessors
+        ) {
+            this.base = base;
+            this.properties = properties;
+            this.accessors = accessors;
+        }
+
+        @Override
+        public Object getValue(@Nonnull final ELContext context) {
+            Object value = base.getValue(context);
+            Object property = null;
+            for (int i = 0; (value != null) && (i < properties.length); i++) {
+                property = properties[i].getValue(context);
+                if (property == null) {
+                    return null;
+                }
+                context.setPropertyResolved(false);
+                value = accessors[i].getValue(context, value, property);
+            }
+            if (!context.isPropertyResolved()) {
+                throw new PropertyNotFoundException("Unable to resolve property '" + property + "' of " + value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads a property of arrays, lists, maps and beans, in the order of the resolvers of {@link RuleEvaluator}.
+     * Remembers the getter for the last bean class, which is the only one for most rules.
+     * Anything else is left to the resolvers.
+     */
+    private static class PropertyAccessor {
+        /**
+         * racy, but safely published as all fields of the getter are final
+         */
+        @Nullable
+        private CachedGetter cachedGetter;
+
+        @Nullable
+        private Object getValue(@Nonnull final ELContext context, @Nonnull final Object base, @Nonnull final Object property) {
+            if (base.getClass().isArray()) {
+                if (!(property instanceof Number)) {
+                    return resolve(context, base, property);
+                }
+                context.setPropertyResolved(true);
+                final int index = ((Number) property).intValue();
+                return ((index < 0) || (index >= Array.getLength(base))) ? null : Array.get(base, index);
+            }
+            if (base instanceof List) {
+                if (!(property instanceof Number)) {
+                    return resolve(context, base, property);
+                }
+                context.setPropertyResolved(true);
+                final List<?> list = (List<?>) base;
+                final int index = ((Number) property).intValue();
+                return ((index < 0) || (index >= list.size())) ? null : list.get(index);
+            }
+            if (base instanceof Map) {
+                context.setPropertyResolved(true);
+                return ((Map<?, ?>) base).get(property);
+            }
+
+            CachedGetter getter = cachedGetter;
+            if ((getter == null) || (getter.beanClass != base.getClass()) || !getter.propertyName.equals(property.toString())) {
+                getter = CachedGetter.lookUp(base.getClass(), property.toString());
+                if (getter == null) {
+                    return resolve(context, base, property);
+                }
+                cachedGetter = getter;
+            }
+            context.setPropertyResolved(true);
+            try {
+                return getter.method.invoke(base);
+            } catch (final InvocationTargetException e) {
+                throw new ELException(e.getCause());
+            } catch (final IllegalAccessException e) {
+                throw new ELException(e);
+            }
+        }
+
+        @Nullable
+        private static Object resolve(@Nonnull final ELContext context, @Nonnull final Object base, @Nonnull final Object property) {
+            return context.getELResolver().getValue(context, base, property);
+        }
+    }
+
+    private static class CachedGetter {
+        @Nonnull
+        private final Class<?> beanClass;
+        @Nonnull
+        private final String propertyName;
+        @Nonnull
+        private final Method method;
+
+        private CachedGetter(@Nonnull final Class<?> beanClass, @Nonnull final String propertyName, @Nonnull final Method method) {
+            this.beanClass = beanClass;
+            this.propertyName = propertyName;
+            this.method = method;
+        }
+
+        /**
+         * @return the public getter of the property, or null if there is none or it is not accessible through the bean class
+         */
+        @CheckForNull
+        private static CachedGetter lookUp(@Nonnull final Class<?> beanClass, @Nonnull final String propertyName) {
+            final PropertyDescriptor[] descriptors;
+            try {
+                descriptors = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+            } catch (final IntrospectionException e) {
+                return null;
+            }
+            for (final PropertyDescriptor descriptor : descriptors) {
+                if (propertyName.equals(descriptor.getName())) {
+                    final Method method = descriptor.getReadMethod();
+                    if ((method == null) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                        return null;
+                    }
+                    return new CachedGetter(beanClass, propertyName, method);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Literal or test constant
+     */
+    private static class ConstantEvaluator implements Evaluator {
+        @Nullable
+        private final Object value;
+        /**
+         * true for test constants, resolved like variables
+         */
+        private final boolean resolvesProperty;
+
+        private ConstantEvaluator(@Nullable final Object value, final boolean resolvesProperty) {
+            this.value = value;
+            this.resolvesProperty = resolvesProperty;
+        }
+
+        @Override
+        public Object getValue(@Nonnull final ELContext context) {
+            if (resolvesProperty) {
+                context.setPropertyResolved(true);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Calls a function with arguments coerced to its parameter types
+     */
+    private interface FunctionInvoker {
+        @Nullable
+        Object invoke(@Nonnull Object[] values) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    /**
+     * Function resolved once on compilation
+     */
+    private static class FunctionEvaluator implements Evaluator {
+        @Nonnull
+        private final String name;
+        @Nonnull
+        private final Class<?>[] parameterTypes;
+        @Nonnull
+        private final Evaluator[] arguments;
+        @Nonnull
+        private final FunctionInvoker invoker;
+        /**
+         * true if the invoker calls the function directly instead of reflectively, so that its exceptions are not wrapped
+         */
+        private final boolean preResolved;
+
+        private FunctionEvaluator(
+                @Nonnull final String name,
+                @Nonnull final Method method,
+                @Nonnull final Evaluator[] arguments,
+                @Nonnull final FunctionInvoker invoker,
+                final boolean preResolved
+        ) {
+            this.name = name;
+            this.parameterTypes = method.getParameterTypes();
+            this.arguments = arguments;
+            this.invoker = invoker;
+            this.preResolved = preResolved;
+        }
+
+        @Override
+        public Object getValue(@Nonnull final ELContext context) {
+            final Object[] values = new Object[arguments.length];
+            try {
+                for (int i = 0; i < arguments.length; i++) {
+                    values[i] = ELSupport.coerceToType(arguments[i].getValue(context), parameterTypes[i]);
+                }
+            } catch (final ELException e) {
+                throw new ELException("Problems calling function '" + name + "'", e);
+            }
+            try {
+                return invoker.invoke(values);
+            } catch (final IllegalAccessException e) {
+                throw new ELException("Problems calling function '" + name + "'", e);
+            } catch (final InvocationTargetException e) {
+                throw new ELException("Problems calling function '" + name + "'", e.getCause());
+            } catch (final RuntimeException e) {
+                if (preResolved) {
+                    throw new ELException("Problems calling function '" + name + "'", e);
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.indeed.proctor.common;
+
+/**
+ * How a {@link Proctor} evaluates test and allocation rules, chosen per loader, see {@link AbstractProctorLoader#setRuleEngine(RuleEngine)}.
+ */
+public enum RuleEngine {
+    /**
+     * interprets the parsed javax.el expression of a rule on each evaluation
+     */
+    EL,
+    /**
+     * compiles each rule once on construction of the Proctor into a tree of evaluators,
+     * with functions resolved upfront and bean properties read through cached getters.
+     * Rules using constructs the compiler does not support are interpreted as with {@link #EL}, with the same results.
+     */
+    COMPILED
+}
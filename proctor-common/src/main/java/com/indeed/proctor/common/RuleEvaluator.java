@@ -1,18 +1,26 @@
 package com.indeed.proctor.common;
 
+import com.indeed.proctor.common.el.LazyReadOnlyVariableMapper;
 import com.indeed.proctor.common.el.LibraryFunctionMapperBuilder;
 import com.indeed.proctor.common.el.MulticontextReadOnlyVariableMapper;
+import com.indeed.proctor.common.el.VariableMapperELResolver;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.el.ExpressionFactoryImpl;
+import org.apache.el.lang.ExpressionBuilder;
+import org.apache.el.parser.AstFunction;
+import org.apache.el.parser.AstIdentifier;
+import org.apache.el.parser.Node;
 import org.apache.log4j.Logger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.el.ArrayELResolver;
 import javax.el.BeanELResolver;
 import javax.el.CompositeELResolver;
 import javax.el.ELContext;
+import javax.el.ELException;
 import javax.el.ELResolver;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
@@ -20,6 +28,7 @@ import javax.el.ListELResolver;
 import javax.el.MapELResolver;
 import javax.el.ValueExpression;
 import javax.el.VariableMapper;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -36,6 +45,34 @@ public class RuleEvaluator {
 
     static final ExpressionFactory EXPRESSION_FACTORY = new ExpressionFactoryImpl();
 
+    /**
+     * Binds no variables while parsing, so that parsed rules resolve variables at evaluation time
+     */
+    @SuppressWarnings("unchecked")
+    private static final VariableMapper UNBOUND_VARIABLE_MAPPER = new MulticontextReadOnlyVariableMapper(Collections.emptyMap());
+
+    /**
+     * How the outcome of a rule depends on the context of a request, determined once per compiled rule
+     */
+    enum RuleKind {
+        /**
+         * blank rules and rules that are literally true
+         */
+        ALWAYS_TRUE,
+        /**
+         * rules that are literally false, or malformed
+         */
+        ALWAYS_FALSE,
+        /**
+         * rules referencing test constants and literals only, the outcome is the same for all requests
+         */
+        CONSTANT_ONLY,
+        /**
+         * rules referencing variables of the context or calling functions
+         */
+        CONTEXT_DEPENDENT
+    }
+
     @Nonnull
     final ExpressionFactory expressionFactory;
     @Nonnull
@@ -43,20 +80,38 @@ public class RuleEvaluator {
     @Nonnull
     private final Map<String, ValueExpression> testConstants;
     @Nonnull
+    private final Map<String, Object> testConstantValues;
+    @Nonnull
     private final FunctionMapper functionMapper;
+    @Nonnull
+    private final RuleEngine ruleEngine;
 
     RuleEvaluator(
             @Nonnull final ExpressionFactory expressionFactory,
             @Nonnull final FunctionMapper functionMapper,
             @Nonnull final Map<String, Object> testConstantsMap
+    ) {
+        this(expressionFactory, functionMapper, testConstantsMap, RuleEngine.EL);
+    }
+
+    /**
+     * @param ruleEngine how rules parsed by {@link #compileBooleanRule(String)} get evaluated
+     */
+    RuleEvaluator(
+            @Nonnull final ExpressionFactory expressionFactory,
+            @Nonnull final FunctionMapper functionMapper,
+            @Nonnull final Map<String, Object> testConstantsMap,
+            @Nonnull final RuleEngine ruleEngine
     ) {
         this.expressionFactory = expressionFactory;
 
         this.functionMapper = functionMapper;
+        this.ruleEngine = ruleEngine;
 
         elResolver = constructStandardElResolver();
 
         testConstants = ProctorUtils.convertToValueExpressionMap(expressionFactory, testConstantsMap);
+        testConstantValues = testConstantsMap;
     }
 
     public static RuleEvaluator createDefaultRuleEvaluator(final Map<String, Object> testConstantsMap) {
@@ -66,6 +121,7 @@ public class RuleEvaluator {
     @Nonnull
     private static CompositeELResolver constructStandardElResolver() {
         final CompositeELResolver elResolver = new CompositeELResolver();
+        elResolver.add(new VariableMapperELResolver()); // variables for rules parsed by compileBooleanRule()
         elResolver.add(new ArrayELResolver());
         elResolver.add(new ListELResolver());
         elResolver.add(new MapELResolver());
@@ -84,10 +140,18 @@ public class RuleEvaluator {
 
     @Nonnull
     ELContext createElContext(@Nonnull final Map<String, Object> values) {
-        final Map<String, ValueExpression> localContext = ProctorUtils.convertToValueExpressionMap(expressionFactory, values);
-        @SuppressWarnings("unchecked")
-        final VariableMapper variableMapper = new MulticontextReadOnlyVariableMapper(testConstants, localContext);
-        return createELContext(variableMapper);
+        return createELContext(withTestConstants(new LazyReadOnlyVariableMapper(expressionFactory, values)));
+    }
+
+    /**
+     * Layers the test constants on top of variables of a context, test constants take precedence.
+     */
+    @Nonnull
+    private VariableMapper withTestConstants(@Nonnull final VariableMapper contextVariables) {
+        if (testConstants.isEmpty()) {
+            return contextVariables;
+        }
+        return new TestConstantsVariableMapper(testConstants, contextVariables);
     }
 
     @Nonnull
@@ -110,27 +174,110 @@ public class RuleEvaluator {
             public VariableMapper getVariableMapper() {
                 return variableMapper;
             }
+
+            @Override
+            public Object getContext(final Class key) {
+                // used by VariableMapperELResolver, avoids allocating the context map of ELContext
+                if (key == VariableMapper.class) {
+                    return variableMapper;
+                }
+                return super.getContext(key);
+            }
         };
     }
 
-    public boolean evaluateBooleanRule(final String rule, @Nonnull final Map<String, Object> values) throws IllegalArgumentException {
+    /**
+     * Parses the rule once, so that it can be evaluated repeatedly against different contexts using {@link #evaluateBooleanExpression(ValueExpression, Map)}.
+     * Variables are not bound while parsing, they get resolved from the context of each evaluation.
+     *
+     * Blank rules and rules that are not an EL expression are returned as boolean literals.
+     * With {@link RuleEngine#COMPILED}, rules are also compiled if possible, see {@link RuleCompiler}.
+     *
+     * @throws ELException if the rule cannot be parsed or refers to an unknown function
+     */
+    @Nonnull
+    ValueExpression compileBooleanRule(@Nullable final String rule) {
         if (StringUtils.isBlank(rule)) {
-            return true;
+            return expressionFactory.createValueExpression(Boolean.TRUE, boolean.class);
         }
         if (!rule.startsWith("${") || !rule.endsWith("}")) {
             LOGGER.error("Invalid rule '" +  rule + "'");   //  TODO: should this be an exception?
-            return false;
+            return expressionFactory.createValueExpression(Boolean.FALSE, boolean.class);
         }
         final String bareRule = ProctorUtils.removeElExpressionBraces(rule);
         if (StringUtils.isBlank(bareRule) || "true".equalsIgnoreCase(bareRule)) {
-            return true;    //  always passes
+            return expressionFactory.createValueExpression(Boolean.TRUE, boolean.class);
         }
         if ("false".equalsIgnoreCase(bareRule)) {
+            return expressionFactory.createValueExpression(Boolean.FALSE, boolean.class);
+        }
+        final ValueExpression ve = expressionFactory.createValueExpression(createELContext(UNBOUND_VARIABLE_MAPPER), rule, boolean.class);
+        if (ruleEngine == RuleEngine.COMPILED) {
+            final CompiledRuleExpression compiled = RuleCompiler.compile(ve, functionMapper, testConstantValues);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        return ve;
+    }
+
+    /**
+     * Classifies a rule compiled by {@link #compileBooleanRule(String)}.
+     * Rules calling functions are context dependent, because functions like proctor:now() are not deterministic.
+     */
+    @Nonnull
+    RuleKind classifyBooleanRule(@Nonnull final ValueExpression ve) {
+        if (ve.isLiteralText()) {
+            return Boolean.TRUE.equals(ve.getValue(null)) ? RuleKind.ALWAYS_TRUE : RuleKind.ALWAYS_FALSE;
+        }
+        final Node root;
+        try {
+            root = ExpressionBuilder.createNode(ve.getExpressionString());
+        } catch (final ELException e) {
+            return RuleKind.CONTEXT_DEPENDENT;
+        }
+        return referencesTestConstantsOnly(root) ? RuleKind.CONSTANT_ONLY : RuleKind.CONTEXT_DEPENDENT;
+    }
+
+    private boolean referencesTestConstantsOnly(@Nonnull final Node node) {
+        if (node instanceof AstFunction) {
             return false;
         }
+        if (node instanceof AstIdentifier) {
+            return testConstants.containsKey(node.getImage());
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            if (!referencesTestConstantsOnly(node.jjtGetChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        final ELContext elContext = createElContext(values);
-        final ValueExpression ve = expressionFactory.createValueExpression(elContext, rule, boolean.class);
+    public boolean evaluateBooleanRule(final String rule, @Nonnull final Map<String, Object> values) throws IllegalArgumentException {
+        return evaluateBooleanExpression(compileBooleanRule(rule), values);
+    }
+
+    /**
+     * Evaluates a rule previously parsed by {@link #compileBooleanRule(String)} against the given context
+     */
+    boolean evaluateBooleanExpression(@Nonnull final ValueExpression ve, @Nonnull final Map<String, Object> values) throws IllegalArgumentException {
+        return evaluateBooleanExpression(ve, new LazyReadOnlyVariableMapper(expressionFactory, values));
+    }
+
+    /**
+     * Evaluates a rule previously parsed by {@link #compileBooleanRule(String)} against the given context variables,
+     * which may be shared by the evaluation of all tests of a request.
+     */
+    boolean evaluateBooleanExpression(@Nonnull final ValueExpression ve, @Nonnull final VariableMapper contextVariables) throws IllegalArgumentException {
+        if (ve.isLiteralText()) {
+            return (Boolean) ve.getValue(null);
+        }
+        final ELContext elContext = createELContext(withTestConstants(contextVariables));
+        if (ve instanceof CompiledRuleExpression) {
+            return ((CompiledRuleExpression) ve).evaluate(elContext);
+        }
+        final String rule = ve.getExpressionString();
         checkRuleIsBooleanType(rule, elContext, ve);
 
         final Object result = ve.getValue(elContext);
@@ -177,4 +324,37 @@ public class RuleEvaluator {
         return ve.getValue(elContext);
     }
 
+    /**
+     * Resolves test constants first and falls back to variables of the context
+     */
+    private static class TestConstantsVariableMapper extends VariableMapper {
+        @Nonnull
+        private final Map<String, ValueExpression> testConstants;
+        @Nonnull
+        private final VariableMapper contextVariables;
+
+        private TestConstantsVariableMapper(
+                @Nonnull final Map<String, ValueExpression> testConstants,
+                @Nonnull final VariableMapper contextVariables
+        ) {
+            this.testConstants = testConstants;
+            this.contextVariables = contextVariables;
+        }
+
+        @CheckForNull
+        @Override
+        public ValueExpression resolveVariable(final String name) {
+            final ValueExpression ve = testConstants.get(name);
+            if (ve != null) {
+                return ve;
+            }
+            return contextVariables.resolveVariable(name);
+        }
+
+        @Nonnull
+        @Override
+        public ValueExpression setVariable(final String name, final ValueExpression expression) {
+            throw new IllegalStateException("Setting variables is not allowed");
+        }
+    }
 }
@@ -0,0 +1,184 @@
+package com.indeed.proctor.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.apache.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Aggregates failures evaluating rules per request, so that a rule failing for every request,
+ * e.g. because a context variable is missing, does not log a stack trace per request and test.
+ *
+ * Failures are counted by test, rule and exception type, and logged at most once per interval
+ * with their count and the last failure. The first failure is logged immediately, failures after the last
+ * interval are logged with the next failure, the next load of an {@link AbstractProctorLoader}, or on {@link #flush()},
+ * e.g. to schedule for applications not loading Proctors through a loader.
+ * Logs are also passed to {@link RuleFailureReporter}s.
+ *
+ * Counters are never removed, so that failures are counted without locking, as the rules failing are few.
+ */
+public final class RuleFailureLog {
+    private static final Logger LOGGER = Logger.getLogger(TestRangeSelector.class);
+    private static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final RuleFailureLog INSTANCE = new RuleFailureLog(System::currentTimeMillis);
+
+    @Nonnull
+    private final LongSupplier clock;
+    private final Map<FailureKey, FailureCounter> failures = new ConcurrentHashMap<>();
+    private final List<RuleFailureReporter> reporters = new CopyOnWriteArrayList<>();
+    /**
+     * time of the next flush triggered by a failure, claimed by the first failure after it
+     */
+    private final AtomicLong nextFlushMillis = new AtomicLong();
+    private volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+
+    @VisibleForTesting
+    RuleFailureLog(@Nonnull final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the log of failures of all tests
+     */
+    @Nonnull
+    public static RuleFailureLog getInstance() {
+        return INSTANCE;
+    }
+
+    public void addReporter(@Nonnull final RuleFailureReporter reporter) {
+        reporters.add(Preconditions.checkNotNull(reporter, "RuleFailureReporter can't be null"));
+    }
+
+    public void removeReporter(@Nonnull final RuleFailureReporter reporter) {
+        reporters.remove(reporter);
+    }
+
+    /**
+     * @param interval minimum time between logs of failures, 1 minute by default
+     */
+    public void setInterval(final long interval, @Nonnull final TimeUnit unit) {
+        Preconditions.checkArgument(interval >= 0, "Interval must not be negative: %s", interval);
+        intervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Counts a failure evaluating a rule, logging all failures counted so far if the interval has passed
+     */
+    void record(@Nonnull final InvalidRuleException failure) {
+        final Throwable cause = failure.getCause();
+        final FailureKey key = new FailureKey(
+                String.valueOf(failure.getTestName()),
+                failure.getRule(),
+                (cause == null) ? failure.getClass() : cause.getClass());
+        FailureCounter counter = failures.get(key);
+        if (counter == null) {
+            counter = failures.computeIfAbsent(key, k -> new FailureCounter());
+        }
+        counter.count.increment();
+        counter.lastFailure = failure;
+
+        flushIfDue();
+    }
+
+    /**
+     * Logs failures counted since the last flush if the interval has passed, e.g. on each load of a Proctor,
+     * so that failures after the last logged one are logged once failures stop
+     */
+    void flushIfDue() {
+        final long now = clock.getAsLong();
+        final long next = nextFlushMillis.get();
+        if ((now >= next) && hasUnflushedFailures() && nextFlushMillis.compareAndSet(next, now + intervalMillis)) {
+            flush();
+        }
+    }
+
+    private boolean hasUnflushedFailures() {
+        for (final FailureCounter counter : failures.values()) {
+            if (counter.count.sum() != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Logs and reports failures counted since the last flush, e.g. to call periodically when failures are rare
+     */
+    public synchronized void flush() {
+        final List<RuleFailureReporter.RuleFailure> flushed = new ArrayList<>();
+        for (final Map.Entry<FailureKey, FailureCounter> entry : failures.entrySet()) {
+            final FailureCounter counter = entry.getValue();
+            // subtracted rather than reset, as sumThenReset() loses failures counted concurrently
+            final long count = counter.count.sum();
+            if (count == 0) {
+                continue;
+            }
+            counter.count.add(-count);
+            final FailureKey key = entry.getKey();
+            flushed.add(new RuleFailureReporter.RuleFailure(key.testName, key.rule, key.exceptionType, count, counter.lastFailure));
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        for (final RuleFailureReporter.RuleFailure failure : flushed) {
+            LOGGER.error(String.format("Failed to evaluate test rules %d times since last logged; last failure: ", failure.getCount()),
+                    failure.getLastFailure());
+        }
+        for (final RuleFailureReporter reporter : reporters) {
+            try {
+                reporter.reportRuleFailures(flushed);
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Failed to report rule failures to " + reporter, e);
+            }
+        }
+    }
+
+    private static class FailureCounter {
+        private final LongAdder count = new LongAdder();
+        private volatile InvalidRuleException lastFailure;
+    }
+
+    private static class FailureKey {
+        @Nonnull
+        private final String testName;
+        private final String rule;
+        @Nonnull
+        private final Class<? extends Throwable> exceptionType;
+
+        FailureKey(@Nonnull final String testName, final String rule, @Nonnull final Class<? extends Throwable> exceptionType) {
+            this.testName = testName;
+            this.rule = rule;
+            this.exceptionType = exceptionType;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            final FailureKey that = (FailureKey) o;
+            return testName.equals(that.testName)
+                    && Objects.equals(rule, that.rule)
+                    && exceptionType.equals(that.exceptionType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(testName, rule, exceptionType);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Receives failures evaluating rules per request, aggregated by {@link RuleFailureLog}, e.g. to report them to a metrics system.
+ * Called at most once per interval of the log, by a request thread, so implementations should be fast.
+ */
+public interface RuleFailureReporter {
+    /**
+     * @param failures failures since the previous report, never empty
+     */
+    void reportRuleFailures(@Nonnull List<RuleFailure> failures);
+
+    /**
+     * Failures of the same rule of a test with the same type of exception
+     */
+    final class RuleFailure {
+        @Nonnull
+        private final String testName;
+        private final String rule;
+        @Nonnull
+        private final Class<? extends Throwable> exceptionType;
+        private final long count;
+        @Nonnull
+        private final InvalidRuleException lastFailure;
+
+        RuleFailure(
+                @Nonnull final String testName,
+                final String rule,
+                @Nonnull final Class<? extends Throwable> exceptionType,
+                final long count,
+                @Nonnull final InvalidRuleException lastFailure
+        ) {
+            this.testName = testName;
+            this.rule = rule;
+            this.exceptionType = exceptionType;
+            this.count = count;
+            this.lastFailure = lastFailure;
+        }
+
+        @Nonnull
+        public String getTestName() {
+            return testName;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * @return type of the exception thrown evaluating the rule
+         */
+        @Nonnull
+        public Class<? extends Throwable> getExceptionType() {
+            return exceptionType;
+        }
+
+        /**
+         * @return number of failures since the previous report
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return one of the failures, with the exception thrown evaluating the rule as cause
+         */
+        @Nonnull
+        public InvalidRuleException getLastFailure() {
+            return lastFailure;
+        }
+    }
+}
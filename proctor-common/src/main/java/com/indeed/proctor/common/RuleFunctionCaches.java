@@ -0,0 +1,92 @@
+package com.indeed.proctor.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.indeed.util.core.ReleaseVersion;
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+
+import javax.annotation.Nonnull;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded caches of regular expressions and versions parsed by {@link ProctorRuleFunctions},
+ * as rules call these functions with the same few arguments for each request and test.
+ *
+ * Separate from {@link ProctorRuleFunctions} because all its public static methods are functions available to rules.
+ */
+final class RuleFunctionCaches {
+    private static final int MAXIMUM_SIZE = 1000;
+
+    private static final Cache<String, Pattern> PATTERNS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+    private static final Cache<String, ReleaseVersion> VERSIONS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+
+    static {
+        VarExporter.forNamespace(ProctorRuleFunctions.class.getSimpleName()).includeInGlobal().export(new Exports(), "");
+    }
+
+    private RuleFunctionCaches() {
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException like {@link Pattern#compile(String)}
+     */
+    @Nonnull
+    static Pattern getPattern(final String regex) {
+        if (regex == null) {
+            return Pattern.compile(regex);
+        }
+        final Pattern cached = PATTERNS.getIfPresent(regex);
+        if (cached != null) {
+            return cached;
+        }
+        final Pattern pattern = Pattern.compile(regex);
+        PATTERNS.put(regex, pattern);
+        return pattern;
+    }
+
+    /**
+     * @throws IllegalArgumentException like {@link ReleaseVersion#fromString(String)}
+     */
+    @Nonnull
+    static ReleaseVersion getVersion(final String versionString) {
+        if (versionString == null) {
+            return ReleaseVersion.fromString(versionString);
+        }
+        final ReleaseVersion cached = VERSIONS.getIfPresent(versionString);
+        if (cached != null) {
+            return cached;
+        }
+        final ReleaseVersion version = ReleaseVersion.fromString(versionString);
+        VERSIONS.put(versionString, version);
+        return version;
+    }
+
+    private static class Exports {
+        @Export(name = "pattern-cache-hits", doc = "Regular expressions of proctor:matches found compiled in the cache")
+        public long getPatternCacheHits() {
+            return PATTERNS.stats().hitCount();
+        }
+
+        @Export(name = "pattern-cache-misses", doc = "Regular expressions of proctor:matches compiled because they were not cached")
+        public long getPatternCacheMisses() {
+            return PATTERNS.stats().missCount();
+        }
+
+        @Export(name = "version-cache-hits", doc = "Versions of proctor:version and proctor:versionInRange found parsed in the cache")
+        public long getVersionCacheHits() {
+            return VERSIONS.stats().hitCount();
+        }
+
+        @Export(name = "version-cache-misses", doc = "Versions of proctor:version and proctor:versionInRange parsed because they were not cached")
+        public long getVersionCacheMisses() {
+            return VERSIONS.stats().missCount();
+        }
+    }
+}
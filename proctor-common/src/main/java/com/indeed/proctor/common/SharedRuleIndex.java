@@ -0,0 +1,179 @@
+package com.indeed.proctor.common;
+
+import org.apache.el.lang.ExpressionBuilder;
+import org.apache.el.parser.AstFunction;
+import org.apache.el.parser.AstIdentifier;
+import org.apache.el.parser.Node;
+
+import javax.annotation.Nonnull;
+import javax.el.ELException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Assigns an index to each distinct rule of a test matrix, so that the result of a rule used by several tests
+ * can be memoized for a request in {@link SharedRuleResults}.
+ *
+ * Rules are distinct by their normalized text and by the values of the test constants they reference,
+ * as the same rule text may have different results for tests with different constants.
+ *
+ * Only modified while constructing a Proctor, not thread-safe. The Proctor keeps its index,
+ * so that a later Proctor reusing its unchanged choosers can extend a copy of it, see {@link #SharedRuleIndex(SharedRuleIndex)}.
+ */
+class SharedRuleIndex {
+    @Nonnull
+    private final Map<RuleKey, Integer> indexes;
+    /**
+     * indexes of rules used by tests of the Proctor being constructed
+     */
+    @Nonnull
+    private final BitSet usedIndexes = new BitSet();
+
+    SharedRuleIndex() {
+        indexes = new HashMap<>();
+    }
+
+    /**
+     * Copies the indexes of the rules of a previous Proctor, so that its choosers remain valid with this index.
+     * Rules are only marked as used once registered again or marked with {@link #markUsed(int)}.
+     */
+    SharedRuleIndex(@Nonnull final SharedRuleIndex previous) {
+        indexes = new HashMap<>(previous.indexes);
+    }
+
+    /**
+     * @return the index of the rule, shared by all equivalent rules registered before
+     */
+    int register(@Nonnull final String rule, @Nonnull final Map<String, Object> testConstants) {
+        final RuleKey key = new RuleKey(normalize(rule), getReferencedConstants(rule, testConstants));
+        final Integer index = indexes.get(key);
+        if (index != null) {
+            usedIndexes.set(index);
+            return index;
+        }
+        final int newIndex = indexes.size();
+        indexes.put(key, newIndex);
+        usedIndexes.set(newIndex);
+        return newIndex;
+    }
+
+    /**
+     * Marks a rule registered in a previous index as used by a reused chooser
+     */
+    void markUsed(final int index) {
+        if (index >= 0) {
+            usedIndexes.set(index);
+        }
+    }
+
+    /**
+     * @return number of distinct rules, including rules of a previous index no longer used
+     */
+    int size() {
+        return indexes.size();
+    }
+
+    /**
+     * @return number of distinct rules used by tests
+     */
+    int usedSize() {
+        return usedIndexes.cardinality();
+    }
+
+    /**
+     * Describes the syntax tree of the rule, so that rules differing only by formatting
+     * or by the spelling of operators (e.g. == and eq) are shared.
+     */
+    @Nonnull
+    static String normalize(@Nonnull final String rule) {
+        final Node root;
+        try {
+            root = ExpressionBuilder.createNode(rule);
+        } catch (final ELException e) {
+            return rule;
+        }
+        final StringBuilder sb = new StringBuilder(rule.length() * 2);
+        appendNode(sb, root);
+        return sb.toString();
+    }
+
+    private static void appendNode(@Nonnull final StringBuilder sb, @Nonnull final Node node) {
+        sb.append(node.getClass().getSimpleName());
+        if (node instanceof AstFunction) {
+            // functions have no image, their name distinguishes e.g. fn:startsWith from fn:endsWith
+            sb.append('[').append(((AstFunction) node).getOutputName()).append(']');
+        } else if (node.getImage() != null) {
+            sb.append('[').append(node.getImage()).append(']');
+        }
+        if (node.jjtGetNumChildren() > 0) {
+            sb.append('(');
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendNode(sb, node.jjtGetChild(i));
+            }
+            sb.append(')');
+        }
+    }
+
+    @Nonnull
+    private static Map<String, Object> getReferencedConstants(@Nonnull final String rule, @Nonnull final Map<String, Object> testConstants) {
+        final Map<String, Object> referencedConstants = new TreeMap<>();
+        if (testConstants.isEmpty()) {
+            return referencedConstants;
+        }
+        try {
+            collectReferencedConstants(ExpressionBuilder.createNode(rule), testConstants, referencedConstants);
+        } catch (final ELException e) {
+            // not shared with other rules, cannot be evaluated anyway
+            referencedConstants.putAll(testConstants);
+        }
+        return referencedConstants;
+    }
+
+    private static void collectReferencedConstants(
+            @Nonnull final Node node,
+            @Nonnull final Map<String, Object> testConstants,
+            @Nonnull final Map<String, Object> referencedConstants
+    ) {
+        if ((node instanceof AstIdentifier) && testConstants.containsKey(node.getImage())) {
+            referencedConstants.put(node.getImage(), testConstants.get(node.getImage()));
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            collectReferencedConstants(node.jjtGetChild(i), testConstants, referencedConstants);
+        }
+    }
+
+    private static final class RuleKey {
+        @Nonnull
+        private final String rule;
+        @Nonnull
+        private final Map<String, Object> referencedConstants;
+
+        private RuleKey(@Nonnull final String rule, @Nonnull final Map<String, Object> referencedConstants) {
+            this.rule = rule;
+            this.referencedConstants = referencedConstants;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            final RuleKey ruleKey = (RuleKey) o;
+            return rule.equals(ruleKey.rule) && referencedConstants.equals(ruleKey.referencedConstants);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rule, referencedConstants);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Memoizes results of rules indexed by {@link SharedRuleIndex} while determining groups for a single request,
+ * so that a rule shared by several tests is evaluated at most once per request.
+ *
+ * Not thread-safe, one instance per request.
+ */
+class SharedRuleResults {
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+
+    private final byte[] results;
+    private int hits;
+    private int evaluations;
+
+    SharedRuleResults(final int size) {
+        results = new byte[size];
+    }
+
+    /**
+     * @return the memoized result of the rule, or null if not evaluated yet for this request
+     */
+    @CheckForNull
+    Boolean get(final int ruleIndex) {
+        final byte result = results[ruleIndex];
+        if (result == UNKNOWN) {
+            return null;
+        }
+        hits++;
+        return result == TRUE;
+    }
+
+    void put(final int ruleIndex, final boolean result) {
+        evaluations++;
+        results[ruleIndex] = result ? TRUE : FALSE;
+    }
+
+    /**
+     * @return number of rule evaluations avoided by memoized results
+     */
+    int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of rules evaluated and memoized
+     */
+    int getEvaluations() {
+        return evaluations;
+    }
+}
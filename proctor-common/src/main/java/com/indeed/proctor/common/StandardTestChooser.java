@@ -14,10 +14,10 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
+import javax.el.VariableMapper;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.security.MessageDigest;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +45,16 @@ class StandardTestChooser implements TestChooser<String> {
         this(new TestRangeSelector(expressionFactory, functionMapper, testName, testDefinition));
     }
 
+    StandardTestChooser(
+            @Nonnull final ExpressionFactory expressionFactory,
+            @Nonnull final FunctionMapper functionMapper,
+            @Nonnull final String testName,
+            @Nonnull final ConsumableTestDefinition testDefinition,
+            @Nullable final SharedRuleIndex sharedRuleIndex
+    ) {
+        this(new TestRangeSelector(expressionFactory, functionMapper, testName, testDefinition, sharedRuleIndex));
+    }
+
     @VisibleForTesting
     StandardTestChooser(@Nonnull final TestRangeSelector selector) {
         this.testRangeSelector = selector;
@@ -118,28 +128,54 @@ class StandardTestChooser implements TestChooser<String> {
     @Nonnull
     @Override
     public TestChooser.Result choose(@Nullable final String identifier, @Nonnull final Map<String, Object> values) {
-        final int matchingRuleIndex = testRangeSelector.findMatchingRule(values);
+        return choose(identifier, testRangeSelector.createContextVariables(values), null);
+    }
+
+    @Nonnull
+    @Override
+    public TestChooser.Result choose(
+            @Nullable final String identifier,
+            @Nonnull final VariableMapper contextVariables,
+            @Nullable final SharedRuleResults sharedRuleResults
+    ) {
+        return chooseEncoded((identifier == null) ? null : identifier.getBytes(Charsets.UTF_8), contextVariables, sharedRuleResults);
+    }
+
+    /**
+     * Same as {@link #choose(String, VariableMapper, SharedRuleResults)} for an identifier already encoded as UTF-8,
+     * so that callers can encode an identifier once for all tests of a request.
+     */
+    @Nonnull
+    TestChooser.Result chooseEncoded(
+            @Nullable final byte[] identifierUtf8,
+            @Nonnull final VariableMapper contextVariables,
+            @Nullable final SharedRuleResults sharedRuleResults
+    ) {
+        final int matchingRuleIndex = testRangeSelector.findMatchingRule(contextVariables, sharedRuleResults);
         if (matchingRuleIndex < 0) {
             return Result.EMPTY;
         }
 
         final Allocation matchingAllocation = testRangeSelector.getTestDefinition().getAllocations().get(matchingRuleIndex);
 
+        final int rangeIndex = chooseRange(matchingRuleIndex, Preconditions.checkNotNull(identifierUtf8, "Missing identifier"));
         return new Result(
-                chooseBucket(
-                        cutoffs[matchingRuleIndex],
-                        testRangeSelector.getBucketRange(matchingRuleIndex),
-                        Preconditions.checkNotNull(identifier, "Missing identifier")
-                ),
+                testRangeSelector.getBucketRange(matchingRuleIndex)[rangeIndex],
                 matchingAllocation
         );
     }
 
-    private TestBucket chooseBucket(@Nonnull final int[] matchingCutoffs, final TestBucket[] matchingBucketRange, @Nonnull final String identifier) {
-        final int value = hasher.hash(identifier);
+    /**
+     * @param matchingRuleIndex index of the allocation matching the context, see {@link TestRangeSelector#findMatchingRule}
+     * @return index of the range of the allocation the identifier is hashed to,
+     * of the bucket in {@link TestRangeSelector#getBucketRange(int)}
+     */
+    int chooseRange(final int matchingRuleIndex, @Nonnull final byte[] identifierUtf8) {
+        final int[] matchingCutoffs = cutoffs[matchingRuleIndex];
+        final int value = hasher.hash(identifierUtf8);
         int i;
         for (i = 0; i < matchingCutoffs.length && value > matchingCutoffs[i]; i++) { /* intentionally empty */ }
-        return matchingBucketRange[i];
+        return i;
     }
 
     private Map<String, String> getDescriptorParameters() {
@@ -188,41 +224,41 @@ class StandardTestChooser implements TestChooser<String> {
         return testRangeSelector.getTestName();
     }
 
+    @Nonnull
+    @Override
+    public TestRangeSelector getTestRangeSelector() {
+        return testRangeSelector;
+    }
+
+    @Override
+    public long getRuleFailureCount() {
+        return testRangeSelector.getRuleFailureCount();
+    }
+
     /**
      * @author matts
      */
     private interface Hasher {
-        int hash(@Nonnull String identifier);
+        int hash(@Nonnull byte[] identifierUtf8);
     }
 
     /**
+     * Hashes the salt followed by the identifier with MD5, and uses bytes 12 to 15 of the digest as a big-endian int.
+     * The offset 12 is an arbitrary choice; changing it would reshuffle all groups just like changing the salt.
+     *
+     * The salt is digested once per chooser, hashing an identifier does not allocate.
      * @author matts
      */
     private abstract static class AbstractMD5Hasher implements Hasher {
-        private final byte[] bytes;
+        private final PrefixedMD5 saltedMD5;
 
         public AbstractMD5Hasher(final String salt) {
-            this.bytes = salt.getBytes(Charsets.UTF_8);
+            this.saltedMD5 = new PrefixedMD5(salt.getBytes(Charsets.UTF_8));
         }
 
         @Override
-        public int hash(@Nonnull final String identifier) {
-            final MessageDigest md = ProctorUtils.createMessageDigest();
-
-            md.update(bytes);
-            md.update(identifier.getBytes(Charsets.UTF_8));
-
-            final byte[] digest = md.digest();
-
-            return convertToInt(digest);
-        }
-
-        private static int convertToInt(final byte[] digest) {
-            final int offset = 12;  //  arbitrary choice; changing this would reshuffle all groups just like changing the salt
-            return (0xff & digest[offset+0]) << 24 |
-                    (0xff & digest[offset+1]) << 16 |
-                    (0xff & digest[offset+2]) << 8 |
-                    (0xff & digest[offset+3]);
+        public int hash(@Nonnull final byte[] identifierUtf8) {
+            return saltedMD5.hashToInt(identifierUtf8);
         }
     }
 
@@ -0,0 +1,77 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.TestBucket;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Buckets of a test definition by value, so that looking up a bucket by value does not scan the buckets.
+ *
+ * Bucket values are usually small and contiguous (e.g. -1 to 3), so buckets are held in an array offset by the
+ * minimum value, falling back to a binary search of sorted values for sparse values.
+ * If several buckets have the same value, the first one is returned, like a scan of the buckets would.
+ * Immutable, built once per test definition of a {@link Proctor}.
+ */
+public final class TestBucketIndex {
+    public static final TestBucketIndex EMPTY = new TestBucketIndex(Collections.emptyList());
+
+    /**
+     * maximum ratio of array length to number of buckets for a dense array
+     */
+    private static final int MAX_SPARSENESS = 4;
+
+    private final int minValue;
+    /**
+     * dense: buckets by value - minValue, with null for values without bucket.
+     * sparse: buckets in order of {@link #sortedValues}
+     */
+    @Nonnull
+    private final TestBucket[] buckets;
+    /**
+     * sorted distinct values of the buckets, null if buckets are dense
+     */
+    @CheckForNull
+    private final int[] sortedValues;
+
+    public TestBucketIndex(@Nonnull final List<TestBucket> testBuckets) {
+        final int[] values = testBuckets.stream().mapToInt(TestBucket::getValue).distinct().sorted().toArray();
+        if (values.length == 0) {
+            minValue = 0;
+            buckets = new TestBucket[0];
+            sortedValues = null;
+        } else if (((long) values[values.length - 1] - values[0]) < (long) MAX_SPARSENESS * values.length) {
+            minValue = values[0];
+            buckets = new TestBucket[values[values.length - 1] - values[0] + 1];
+            sortedValues = null;
+            for (int i = testBuckets.size() - 1; i >= 0; i--) {
+                final TestBucket bucket = testBuckets.get(i);
+                buckets[bucket.getValue() - minValue] = bucket;
+            }
+        } else {
+            minValue = 0;
+            buckets = new TestBucket[values.length];
+            sortedValues = values;
+            for (int i = testBuckets.size() - 1; i >= 0; i--) {
+                final TestBucket bucket = testBuckets.get(i);
+                buckets[Arrays.binarySearch(values, bucket.getValue())] = bucket;
+            }
+        }
+    }
+
+    /**
+     * @return the bucket with the value, or null if none exists
+     */
+    @CheckForNull
+    public TestBucket get(final int value) {
+        if (sortedValues != null) {
+            final int index = Arrays.binarySearch(sortedValues, value);
+            return (index < 0) ? null : buckets[index];
+        }
+        final long offset = (long) value - minValue;
+        return ((offset < 0) || (offset >= buckets.length)) ? null : buckets[(int) offset];
+    }
+}
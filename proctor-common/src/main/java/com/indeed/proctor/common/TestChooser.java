@@ -4,8 +4,10 @@ import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.TestBucket;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.el.VariableMapper;
 import java.io.PrintWriter;
 import java.util.Map;
 
@@ -25,9 +27,35 @@ interface TestChooser<IdentifierType> {
     @Nonnull
     String getTestName();
 
+    /**
+     * @return the selector evaluating the rules of the test, null if this chooser has none
+     */
+    @CheckForNull
+    default TestRangeSelector getTestRangeSelector() {
+        return null;
+    }
+
+    /**
+     * @return number of requests for which evaluating the rules of the test failed, since this chooser was created
+     */
+    default long getRuleFailureCount() {
+        return 0;
+    }
+
     @Nonnull
     TestChooser.Result choose(@Nullable IdentifierType identifier, @Nonnull Map<String, Object> values);
 
+    /**
+     * @param contextVariables variables of the request context, shared by all tests evaluated for the request
+     * @param sharedRuleResults results of rules shared by tests, memoized for the request, or null to evaluate all rules
+     */
+    @Nonnull
+    TestChooser.Result choose(
+            @Nullable IdentifierType identifier,
+            @Nonnull VariableMapper contextVariables,
+            @Nullable SharedRuleResults sharedRuleResults
+    );
+
     /**
      * Models a result of an assigned bucket and allocation by {@code TestChooser}.
      */
@@ -0,0 +1,122 @@
+package com.indeed.proctor.common;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics of one test, counted by a {@link Proctor} since {@link Proctor#enableDetailedMetrics()}.
+ *
+ * Counters are read one after the other while requests are determined concurrently,
+ * so they may be slightly inconsistent with each other.
+ */
+public final class TestEvaluationMetrics {
+    private final long evaluations;
+    private final long ruleFailures;
+    private final long missingIdentifiers;
+    private final long forcedGroups;
+    private final long unmatched;
+    @Nonnull
+    private final Map<Integer, Long> bucketCounts;
+    private final long latencySamples;
+    private final long latencyNanos;
+
+    TestEvaluationMetrics(
+            final long evaluations,
+            final long ruleFailures,
+            final long missingIdentifiers,
+            final long forcedGroups,
+            final long unmatched,
+            @Nonnull final Map<Integer, Long> bucketCounts,
+            final long latencySamples,
+            final long latencyNanos
+    ) {
+        this.evaluations = evaluations;
+        this.ruleFailures = ruleFailures;
+        this.missingIdentifiers = missingIdentifiers;
+        this.forcedGroups = forcedGroups;
+        this.unmatched = unmatched;
+        this.bucketCounts = Collections.unmodifiableMap(bucketCounts);
+        this.latencySamples = latencySamples;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return number of times rules of the test were evaluated to choose a bucket
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return number of evaluations failing because a rule of the test threw an exception
+     */
+    public long getRuleFailures() {
+        return ruleFailures;
+    }
+
+    /**
+     * @return number of requests skipping the test because they had no identifier of its test type,
+     * or random tests were disabled
+     */
+    public long getMissingIdentifiers() {
+        return missingIdentifiers;
+    }
+
+    /**
+     * @return number of requests using a valid forced group instead of evaluating the test
+     */
+    public long getForcedGroups() {
+        return forcedGroups;
+    }
+
+    /**
+     * @return number of evaluations choosing no bucket, because no rule matched or a rule failed
+     */
+    public long getUnmatched() {
+        return unmatched;
+    }
+
+    /**
+     * @return number of evaluations choosing each bucket, by bucket value
+     */
+    @Nonnull
+    public Map<Integer, Long> getBucketCounts() {
+        return bucketCounts;
+    }
+
+    /**
+     * @return number of evaluations whose latency was measured
+     */
+    public long getLatencySamples() {
+        return latencySamples;
+    }
+
+    /**
+     * @return sum of the measured latencies in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return mean measured latency of evaluations in nanoseconds, 0 without samples
+     */
+    public double getMeanLatencyNanos() {
+        return (latencySamples == 0) ? 0 : ((double) latencyNanos / latencySamples);
+    }
+
+    @Override
+    public String toString() {
+        return "TestEvaluationMetrics{" +
+                "evaluations=" + evaluations +
+                ", ruleFailures=" + ruleFailures +
+                ", missingIdentifiers=" + missingIdentifiers +
+                ", forcedGroups=" + forcedGroups +
+                ", unmatched=" + unmatched +
+                ", bucketCounts=" + bucketCounts +
+                ", latencySamples=" + latencySamples +
+                ", latencyNanos=" + latencyNanos +
+                '}';
+    }
+}
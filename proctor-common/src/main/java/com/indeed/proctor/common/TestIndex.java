@@ -0,0 +1,100 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense integer indexes of the tests of a {@link Proctor}, assigned in order of test names.
+ *
+ * Results determined by the same Proctor share its index, so that test names can be resolved to indexes
+ * once per Proctor instead of once per lookup, see {@link ProctorResult#getBucket(int)}.
+ * Immutable, a new index is created for each reloaded test matrix.
+ */
+public final class TestIndex {
+    public static final TestIndex EMPTY = new TestIndex(Collections.emptyList());
+
+    @Nonnull
+    private final String[] testNames;
+    @Nonnull
+    private final Map<String, Integer> indexes;
+    @Nonnull
+    private final TestBucketIndex[] bucketIndexes;
+    @Nonnull
+    private final TestLoggingFragments loggingFragments;
+
+    TestIndex(@Nonnull final Collection<String> testNames) {
+        this(testNames, Collections.emptyMap());
+    }
+
+    /**
+     * @param testDefinitions definitions of the tests, to precompute their buckets by value and logging fragments
+     */
+    TestIndex(@Nonnull final Collection<String> testNames, @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions) {
+        this.testNames = testNames.toArray(new String[0]);
+        Arrays.sort(this.testNames);
+        this.indexes = new HashMap<>(this.testNames.length * 2);
+        for (int i = 0; i < this.testNames.length; i++) {
+            indexes.put(this.testNames[i], i);
+        }
+        this.bucketIndexes = new TestBucketIndex[this.testNames.length];
+        for (int i = 0; i < this.testNames.length; i++) {
+            final ConsumableTestDefinition definition = testDefinitions.get(this.testNames[i]);
+            bucketIndexes[i] = (definition == null) ? TestBucketIndex.EMPTY : new TestBucketIndex(definition.getBuckets());
+        }
+        this.loggingFragments = new TestLoggingFragments(this, testDefinitions);
+    }
+
+    /**
+     * @return number of tests, indexes range from 0 to size - 1
+     */
+    public int size() {
+        return testNames.length;
+    }
+
+    /**
+     * @return the index of the test, or -1 if the test is not in this index
+     */
+    public int indexOf(@Nonnull final String testName) {
+        final Integer index = indexes.get(testName);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * @return indexes of the given tests in the same order, -1 for tests not in this index
+     */
+    @Nonnull
+    public int[] indexesOf(@Nonnull final String... testNames) {
+        final int[] result = new int[testNames.length];
+        for (int i = 0; i < testNames.length; i++) {
+            result[i] = indexOf(testNames[i]);
+        }
+        return result;
+    }
+
+    @Nonnull
+    public String getTestName(final int index) {
+        return testNames[index];
+    }
+
+    /**
+     * @return buckets by value of the definition of the test at the index, precomputed from the test definitions of the Proctor
+     */
+    @Nonnull
+    public TestBucketIndex getBucketIndex(final int index) {
+        return bucketIndexes[index];
+    }
+
+    /**
+     * @return logging fragments of the tests by index, precomputed from the test definitions of the Proctor
+     */
+    @Nonnull
+    public TestLoggingFragments getLoggingFragments() {
+        return loggingFragments;
+    }
+}
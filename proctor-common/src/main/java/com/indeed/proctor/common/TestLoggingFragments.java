@@ -0,0 +1,121 @@
+package com.indeed.proctor.common;
+
+import com.google.common.base.Strings;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.TestBucket;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups of the logging string of a result, precomputed per test and bucket of a {@link Proctor},
+ * so that logging does not concatenate test names and bucket values per request.
+ *
+ * A group is [test name + bucket value], an allocation group is [allocation id + ":" + test name + bucket value],
+ * the format of {@code AbstractGroups.appendTestGroups}.
+ * Groups are looked up by the index of the test in the {@link TestIndex} of the same Proctor.
+ */
+public final class TestLoggingFragments {
+    private static final char ALLOCATION_GROUP_SEPARATOR = ':';
+
+    private final boolean[] silent;
+    /**
+     * per test, values of the buckets of its definition
+     */
+    private final int[][] bucketValues;
+    /**
+     * per test and bucket, the group
+     */
+    private final char[][][] groups;
+    /**
+     * per test, allocations of its definition
+     */
+    private final Allocation[][] allocations;
+    /**
+     * per test, allocation and bucket, the allocation group, null for allocations without id
+     */
+    private final char[][][][] allocationGroups;
+
+    TestLoggingFragments(@Nonnull final TestIndex testIndex, @Nonnull final Map<String, ConsumableTestDefinition> testDefinitions) {
+        final int size = testIndex.size();
+        silent = new boolean[size];
+        bucketValues = new int[size][];
+        groups = new char[size][][];
+        allocations = new Allocation[size][];
+        allocationGroups = new char[size][][][];
+        for (int i = 0; i < size; i++) {
+            final String testName = testIndex.getTestName(i);
+            final ConsumableTestDefinition definition = testDefinitions.get(testName);
+            final List<TestBucket> buckets = (definition == null) ? Collections.emptyList() : definition.getBuckets();
+            final List<Allocation> testAllocations = (definition == null) ? Collections.emptyList() : definition.getAllocations();
+            silent[i] = (definition != null) && definition.getSilent();
+            bucketValues[i] = new int[buckets.size()];
+            groups[i] = new char[buckets.size()][];
+            for (int j = 0; j < buckets.size(); j++) {
+                bucketValues[i][j] = buckets.get(j).getValue();
+                groups[i][j] = (testName + buckets.get(j).getValue()).toCharArray();
+            }
+            allocations[i] = testAllocations.toArray(new Allocation[0]);
+            allocationGroups[i] = new char[testAllocations.size()][][];
+            for (int k = 0; k < testAllocations.size(); k++) {
+                final String allocationId = testAllocations.get(k).getId();
+                if (Strings.isNullOrEmpty(allocationId)) {
+                    continue;
+                }
+                allocationGroups[i][k] = new char[buckets.size()][];
+                for (int j = 0; j < buckets.size(); j++) {
+                    allocationGroups[i][k][j] = (allocationId + ALLOCATION_GROUP_SEPARATOR + testName + buckets.get(j).getValue()).toCharArray();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the definition of the test is silent, i.e. the test is not logged
+     */
+    public boolean isSilent(final int testIndex) {
+        return silent[testIndex];
+    }
+
+    /**
+     * @return [test name + bucket value], or null if the definition of the test has no bucket with the value
+     */
+    @CheckForNull
+    public char[] getGroup(final int testIndex, final int bucketValue) {
+        final int bucket = indexOfBucket(testIndex, bucketValue);
+        return (bucket < 0) ? null : groups[testIndex][bucket];
+    }
+
+    /**
+     * @param allocation allocation of the result, an allocation of the definition of the test
+     * @return [allocation id + ":" + test name + bucket value], or null if the allocation is not an allocation
+     * with an id of the definition of the test, or if the definition of the test has no bucket with the value
+     */
+    @CheckForNull
+    public char[] getAllocationGroup(final int testIndex, @Nullable final Allocation allocation, final int bucketValue) {
+        final Allocation[] testAllocations = allocations[testIndex];
+        for (int k = 0; k < testAllocations.length; k++) {
+            if (testAllocations[k] == allocation) {
+                final char[][] groupsOfAllocation = allocationGroups[testIndex][k];
+                final int bucket = indexOfBucket(testIndex, bucketValue);
+                return ((groupsOfAllocation == null) || (bucket < 0)) ? null : groupsOfAllocation[bucket];
+            }
+        }
+        return null;
+    }
+
+    private int indexOfBucket(final int testIndex, final int bucketValue) {
+        final int[] values = bucketValues[testIndex];
+        for (int j = 0; j < values.length; j++) {
+            if (values[j] == bucketValue) {
+                return j;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,24 +1,28 @@
 package com.indeed.proctor.common;
 
-import com.google.common.collect.Maps;
+import com.indeed.proctor.common.el.LazyReadOnlyVariableMapper;
 import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.Range;
 import com.indeed.proctor.common.model.TestBucket;
-import org.apache.log4j.Logger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.el.ELException;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This is perhaps not the greatest abstraction the world has seen; is meant to consolidate common functionality needed for different types of choosers WITHOUT using inheritance
@@ -26,85 +30,254 @@ import java.util.Map.Entry;
  *
  */
 public class TestRangeSelector {
-    private static final Logger LOGGER = Logger.getLogger(TestRangeSelector.class);
-
     @Nonnull
     private final String testName;
     @Nonnull
     private final ConsumableTestDefinition testDefinition;
     @Nonnull
+    private final TestBucketIndex bucketIndex;
+    @Nonnull
     private final String[] rules;
+    /**
+     * test rule parsed once on construction, null if the test has no rule
+     */
+    @Nullable
+    private final ValueExpression testRuleExpression;
+    /**
+     * outcome of the test rule if the same for all requests, null if it must be evaluated per request
+     */
+    @Nullable
+    private final Boolean testRuleOutcome;
+    /**
+     * allocation rules parsed once on construction, same order as rules
+     */
+    @Nonnull
+    private final ValueExpression[] ruleExpressions;
+    /**
+     * outcomes of allocation rules that are the same for all requests, null elements for rules to evaluate per request
+     */
+    @Nonnull
+    private final Boolean[] ruleOutcomes;
+    /**
+     * indexes of rules in the {@link SharedRuleIndex} of the matrix, -1 for rules not evaluated per request or not shared
+     */
+    private final int testRuleSharedIndex;
+    @Nonnull
+    private final int[] ruleSharedIndexes;
     @Nonnull
     private final TestBucket[][] rangeToBucket;
     private final RuleEvaluator ruleEvaluator;
+    /**
+     * evaluations of rules failing with an {@link InvalidRuleException}, only incremented on failures
+     */
+    private final LongAdder ruleFailures = new LongAdder();
 
     TestRangeSelector(@Nonnull final ExpressionFactory expressionFactory, @Nonnull final FunctionMapper functionMapper, final String testName, @Nonnull final ConsumableTestDefinition testDefinition) {
-        this(new RuleEvaluator(expressionFactory, functionMapper, testDefinition.getConstants()), testName, testDefinition);
+        this(expressionFactory, functionMapper, testName, testDefinition, null);
+    }
+
+    TestRangeSelector(
+            @Nonnull final ExpressionFactory expressionFactory,
+            @Nonnull final FunctionMapper functionMapper,
+            final String testName,
+            @Nonnull final ConsumableTestDefinition testDefinition,
+            @Nullable final SharedRuleIndex sharedRuleIndex
+    ) {
+        this(new RuleEvaluator(expressionFactory, functionMapper, testDefinition.getConstants()), testName, testDefinition, sharedRuleIndex);
     }
 
     TestRangeSelector(
             @Nonnull final RuleEvaluator ruleEvaluator,
             @Nonnull final String testName,
             @Nonnull final ConsumableTestDefinition testDefinition
+    ) {
+        this(ruleEvaluator, testName, testDefinition, null);
+    }
+
+    /**
+     * @param sharedRuleIndex index of the rules of all tests of a matrix, to memoize results of rules shared by tests, or null to not share
+     * @throws IllegalArgumentException if the test rule or any allocation rule cannot be parsed
+     */
+    TestRangeSelector(
+            @Nonnull final RuleEvaluator ruleEvaluator,
+            @Nonnull final String testName,
+            @Nonnull final ConsumableTestDefinition testDefinition,
+            @Nullable final SharedRuleIndex sharedRuleIndex
     ) {
         this.ruleEvaluator = ruleEvaluator;
 
         this.testName = testName;
         this.testDefinition = testDefinition;
+        this.bucketIndex = new TestBucketIndex(testDefinition.getBuckets());
 
-        final Map<Integer, TestBucket> bucketValueToTest = Maps.newHashMap();
-        for (final TestBucket testBucket : testDefinition.getBuckets()) {
-            bucketValueToTest.put(testBucket.getValue(), testBucket);
+        final String testRule = testDefinition.getRule();
+        if (testRule == null) {
+            this.testRuleExpression = null;
+            this.testRuleOutcome = Boolean.TRUE;
+        } else {
+            this.testRuleExpression = compileRule(testRule);
+            this.testRuleOutcome = determineOutcome(testRuleExpression);
         }
+        this.testRuleSharedIndex = registerSharedRule(sharedRuleIndex, testRule, testRuleOutcome);
 
         final List<Allocation> allocations = testDefinition.getAllocations();
         this.rangeToBucket = new TestBucket[allocations.size()][];
         this.rules = new String[allocations.size()];
+        this.ruleExpressions = new ValueExpression[allocations.size()];
+        this.ruleOutcomes = new Boolean[allocations.size()];
+        this.ruleSharedIndexes = new int[allocations.size()];
         for (int i = 0; i < allocations.size(); i++) {
             final Allocation allocation = allocations.get(i);
             rules[i] = allocation.getRule();
+            ruleExpressions[i] = compileRule(rules[i]);
+            ruleOutcomes[i] = determineOutcome(ruleExpressions[i]);
+            ruleSharedIndexes[i] = registerSharedRule(sharedRuleIndex, rules[i], ruleOutcomes[i]);
             final List<Range> ranges = allocation.getRanges();
             this.rangeToBucket[i] = new TestBucket[ranges.size()];
             for (int j = 0; j < ranges.size(); j++) {
-                this.rangeToBucket[i][j] = bucketValueToTest.get(ranges.get(j).getBucketValue());
+                this.rangeToBucket[i][j] = bucketIndex.get(ranges.get(j).getBucketValue());
             }
         }
     }
 
+    @Nonnull
+    private ValueExpression compileRule(@Nullable final String rule) {
+        try {
+            return ruleEvaluator.compileBooleanRule(rule);
+        } catch (final ELException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Unable to parse rule '%s' for test '%s': '%s'", rule, testName, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * @return the outcome of a rule independent of the request context, or null if the rule must be evaluated per request
+     */
+    @CheckForNull
+    private Boolean determineOutcome(@Nonnull final ValueExpression ruleExpression) {
+        switch (ruleEvaluator.classifyBooleanRule(ruleExpression)) {
+            case ALWAYS_TRUE:
+                return Boolean.TRUE;
+            case ALWAYS_FALSE:
+                return Boolean.FALSE;
+            case CONSTANT_ONLY:
+                try {
+                    return ruleEvaluator.evaluateBooleanExpression(ruleExpression, Collections.<String, Object>emptyMap());
+                } catch (final RuntimeException e) {
+                    // keep failing and logging per request, as for other invalid rules
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return index of a rule evaluated per request in the shared index, or -1
+     */
+    private int registerSharedRule(
+            @Nullable final SharedRuleIndex sharedRuleIndex,
+            @Nullable final String rule,
+            @Nullable final Boolean ruleOutcome
+    ) {
+        if ((sharedRuleIndex == null) || (rule == null) || (ruleOutcome != null)) {
+            return -1;
+        }
+        return sharedRuleIndex.register(rule, testDefinition.getConstants());
+    }
+
+    /**
+     * Marks the rules of this selector as used in an index extending the index this selector was constructed with
+     */
+    void markSharedRulesUsed(@Nonnull final SharedRuleIndex sharedRuleIndex) {
+        sharedRuleIndex.markUsed(testRuleSharedIndex);
+        for (final int ruleSharedIndex : ruleSharedIndexes) {
+            sharedRuleIndex.markUsed(ruleSharedIndex);
+        }
+    }
+
     public TestBucket[] getBucketRange(final int index) {
         return rangeToBucket[index];
     }
 
     public int findMatchingRule(@Nonnull final Map<String, Object> values) {
+        return findMatchingRule(createContextVariables(values));
+    }
+
+    @Nonnull
+    VariableMapper createContextVariables(@Nonnull final Map<String, Object> values) {
+        return new LazyReadOnlyVariableMapper(ruleEvaluator.expressionFactory, values);
+    }
+
+    /**
+     * @param contextVariables variables of the request context, shared by all tests evaluated for the request
+     * @return index of the first matching allocation, or -1 if no allocation matches
+     */
+    public int findMatchingRule(@Nonnull final VariableMapper contextVariables) {
+        return findMatchingRule(contextVariables, null);
+    }
+
+    /**
+     * @param sharedRuleResults results of rules shared by tests, memoized for the request, or null to evaluate all rules
+     * @return index of the first matching allocation, or -1 if no allocation matches
+     */
+    int findMatchingRule(@Nonnull final VariableMapper contextVariables, @Nullable final SharedRuleResults sharedRuleResults) {
         try {
-            @Nullable final String rule = testDefinition.getRule();
-            if (rule != null) {
-                if (! evaluateRule(rule, values)) {
-                    return -1;
-                }
+            final boolean testRuleMatches = (testRuleOutcome != null)
+                    ? testRuleOutcome
+                    : evaluateRule(testDefinition.getRule(), testRuleExpression, testRuleSharedIndex, contextVariables, sharedRuleResults);
+            if (! testRuleMatches) {
+                return -1;
             }
 
             for (int i = 0; i < rules.length; i++) {
-                if (evaluateRule(rules[i], values)) {
+                final Boolean ruleOutcome = ruleOutcomes[i];
+                final boolean ruleMatches = (ruleOutcome != null)
+                        ? ruleOutcome
+                        : evaluateRule(rules[i], ruleExpressions[i], ruleSharedIndexes[i], contextVariables, sharedRuleResults);
+                if (ruleMatches) {
                     return i;
                 }
             }
 
         } catch (InvalidRuleException e) {
-            LOGGER.error("Failed to evaluate test rules; ", e);
+            ruleFailures.increment();
+            RuleFailureLog.getInstance().record(e);
         }
 
         return -1;
     }
 
-    private boolean evaluateRule(final String rule, @Nonnull final Map<String, Object> values) throws InvalidRuleException {
+    private boolean evaluateRule(
+            final String rule,
+            @Nonnull final ValueExpression ruleExpression,
+            final int sharedIndex,
+            @Nonnull final VariableMapper contextVariables,
+            @Nullable final SharedRuleResults sharedRuleResults
+    ) throws InvalidRuleException {
+        if ((sharedRuleResults == null) || (sharedIndex < 0)) {
+            return evaluateRule(rule, ruleExpression, contextVariables);
+        }
+        final Boolean memoized = sharedRuleResults.get(sharedIndex);
+        if (memoized != null) {
+            return memoized;
+        }
+        // failures are not memoized, so that they are reported for each test
+        final boolean result = evaluateRule(rule, ruleExpression, contextVariables);
+        sharedRuleResults.put(sharedIndex, result);
+        return result;
+    }
+
+    private boolean evaluateRule(
+            final String rule,
+            @Nonnull final ValueExpression ruleExpression,
+            @Nonnull final VariableMapper contextVariables
+    ) throws InvalidRuleException {
         try {
-            return ruleEvaluator.evaluateBooleanRule(rule, values);
+            return ruleEvaluator.evaluateBooleanExpression(ruleExpression, contextVariables);
 
         } catch (final RuntimeException e) {
-            throw new InvalidRuleException(e, String.format(
-                    "Error evaluating rule '%s' for test '%s': '%s'. Failing evaluation and continuing.",
-                    rule, testName, e.getMessage()));
+            throw new InvalidRuleException(e, rule, testName);
         }
     }
 
@@ -127,12 +300,7 @@ public class TestRangeSelector {
      */
     @CheckForNull
     public TestBucket getTestBucket(final int value) {
-        for (final TestBucket testBucket : testDefinition.getBuckets()) {
-            if (testBucket.getValue() == value) {
-                return testBucket;
-            }
-        }
-        return null;
+        return bucketIndex.get(value);
     }
 
     @Nonnull
@@ -140,6 +308,13 @@ public class TestRangeSelector {
         return testName;
     }
 
+    /**
+     * @return number of requests for which evaluating the rules of this test failed
+     */
+    long getRuleFailureCount() {
+        return ruleFailures.sum();
+    }
+
     /**
      * appends testbuckets in a notation a bit similar to Json
      */
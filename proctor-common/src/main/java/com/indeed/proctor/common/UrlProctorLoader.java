@@ -1,5 +1,7 @@
 package com.indeed.proctor.common;
 
+import com.google.common.base.Preconditions;
+import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.TestMatrixArtifact;
 
 import javax.annotation.CheckForNull;
@@ -7,18 +9,41 @@ import javax.annotation.Nonnull;
 import javax.el.FunctionMapper;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Support class for loading a test matrix artifact from a URL-based JSON file
+ *
+ * For http urls, the artifact is requested gzipped and only if modified since the last load,
+ * using the ETag and Last-Modified headers of the last response.
  * @author jack
  */
 public class UrlProctorLoader extends AbstractJsonProctorLoader {
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(60);
+
     @Nonnull
     private final URL inputURL;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /**
+     * validators of the last response and the version of the audit it contained, null before the first response
+     */
+    @CheckForNull
+    private String lastETag;
+    private long lastModified;
+    @CheckForNull
+    private String lastResponseAuditVersion;
 
     public UrlProctorLoader(@Nonnull final ProctorSpecification specification, @Nonnull final String inputUrl) throws MalformedURLException {
         this(specification, new URL(inputUrl));
@@ -37,6 +62,22 @@ public class UrlProctorLoader extends AbstractJsonProctorLoader {
         this.inputURL = inputUrl;
     }
 
+    /**
+     * @param connectTimeout timeout to connect to the url, 0 to wait indefinitely, 30 seconds by default
+     */
+    public void setConnectTimeout(final long connectTimeout, @Nonnull final TimeUnit unit) {
+        Preconditions.checkArgument(connectTimeout >= 0, "Connect timeout must not be negative: %s", connectTimeout);
+        this.connectTimeoutMillis = Math.toIntExact(unit.toMillis(connectTimeout));
+    }
+
+    /**
+     * @param readTimeout timeout to wait for data once connected, 0 to wait indefinitely, 60 seconds by default
+     */
+    public void setReadTimeout(final long readTimeout, @Nonnull final TimeUnit unit) {
+        Preconditions.checkArgument(readTimeout >= 0, "Read timeout must not be negative: %s", readTimeout);
+        this.readTimeoutMillis = Math.toIntExact(unit.toMillis(readTimeout));
+    }
+
     @Nonnull
     @Override
     protected String getSource() {
@@ -46,8 +87,53 @@ public class UrlProctorLoader extends AbstractJsonProctorLoader {
     @CheckForNull
     @Override
     protected TestMatrixArtifact loadTestMatrix() throws IOException {
-        try (Reader reader = new BufferedReader(new InputStreamReader(inputURL.openStream()))) {
-            return loadJsonTestMatrix(reader);
+        final Audit lastAudit = getLastAudit();
+        // only ask for changes if the last response is the loaded matrix, and not a matrix that failed to load
+        final boolean conditional = (lastAudit != null) && lastAudit.getVersion().equals(lastResponseAuditVersion);
+        final URLConnection connection = inputURL.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (connection instanceof HttpURLConnection) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (conditional) {
+                if (lastETag != null) {
+                    connection.setRequestProperty("If-None-Match", lastETag);
+                }
+                if (lastModified > 0) {
+                    connection.setIfModifiedSince(lastModified);
+                }
+            }
+            final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                httpConnection.disconnect();
+                if (conditional) {
+                    return createUnchangedTestMatrix(lastAudit);
+                }
+                throw new IOException("Unexpected response 304 Not Modified to an unconditional request for " + inputURL);
+            }
+        }
+
+        final InputStream inputStream = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                ? new GZIPInputStream(connection.getInputStream())
+                : connection.getInputStream();
+        final TestMatrixArtifact testMatrix;
+        try (Reader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            testMatrix = loadJsonTestMatrix(reader);
         }
+        lastETag = connection.getHeaderField("ETag");
+        lastModified = connection.getLastModified();
+        lastResponseAuditVersion = ((testMatrix == null) || (testMatrix.getAudit() == null)) ? null : testMatrix.getAudit().getVersion();
+        return testMatrix;
+    }
+
+    /**
+     * @return a matrix with the last audit and no tests, discarded by {@link #doLoad()} as unchanged
+     */
+    @Nonnull
+    private static TestMatrixArtifact createUnchangedTestMatrix(@Nonnull final Audit lastAudit) {
+        final TestMatrixArtifact testMatrix = new TestMatrixArtifact();
+        testMatrix.setAudit(lastAudit);
+        testMatrix.setTests(Collections.emptyMap());
+        return testMatrix;
     }
 }
@@ -69,10 +69,10 @@ public class DynamicFilters implements JsonSerializable {
             final Set<String> requiredTests
     ) {
         return definedTests.entrySet().stream()
+                // Skip if testName exists in requiredTests, before accessing a possibly lazily decoded testDefinition
+                .filter(entry -> !requiredTests.contains(entry.getKey()))
                 // Skip if testDefinition is null
                 .filter(entry -> entry.getValue() != null)
-                // Skip if testName exists in requiredTests
-                .filter(entry -> !requiredTests.contains(entry.getKey()))
                 // Check dynamicFilters
                 .filter(entry -> matches(entry.getKey(), entry.getValue()))
                 .map(Map.Entry::getKey)
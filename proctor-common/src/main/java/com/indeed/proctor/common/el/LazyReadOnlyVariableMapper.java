@@ -0,0 +1,56 @@
+package com.indeed.proctor.common.el;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.el.ExpressionFactory;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides read-only variables from a map of values, creating a {@link ValueExpression} only for variables that are actually looked up.
+ *
+ * Meant to wrap the context of a single request once, and to be shared by all rules evaluated for that request.
+ * Not thread-safe.
+ */
+public class LazyReadOnlyVariableMapper extends VariableMapper {
+    @Nonnull
+    private final ExpressionFactory expressionFactory;
+    @Nonnull
+    private final Map<String, Object> values;
+    @Nullable
+    private Map<String, ValueExpression> resolved;
+
+    public LazyReadOnlyVariableMapper(@Nonnull final ExpressionFactory expressionFactory, @Nonnull final Map<String, Object> values) {
+        this.expressionFactory = expressionFactory;
+        this.values = values;
+    }
+
+    @Nullable
+    @Override
+    public ValueExpression resolveVariable(final String name) {
+        if (resolved != null) {
+            final ValueExpression ve = resolved.get(name);
+            if (ve != null) {
+                return ve;
+            }
+        }
+        final Object value = values.get(name);
+        if ((value == null) && !values.containsKey(name)) {
+            return null;
+        }
+        final ValueExpression ve = expressionFactory.createValueExpression(value, Object.class);
+        if (resolved == null) {
+            resolved = new HashMap<>();
+        }
+        resolved.put(name, ve);
+        return ve;
+    }
+
+    @Nonnull
+    @Override
+    public ValueExpression setVariable(final String name, final ValueExpression expression) {
+        throw new IllegalStateException("Setting variables is not allowed");
+    }
+}
@@ -0,0 +1,79 @@
+package com.indeed.proctor.common.el;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.PropertyNotWritableException;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import java.beans.FeatureDescriptor;
+import java.util.Iterator;
+
+/**
+ * Resolves top-level identifiers using the {@link VariableMapper} registered in the {@link ELContext} under the key {@code VariableMapper.class}.
+ *
+ * apache-el binds variables while parsing, so a {@link ValueExpression} is tied to the variables of the context it was created with.
+ * Expressions parsed without any variables fall back to the resolver chain instead, which allows to parse a rule once
+ * and to evaluate it against many contexts.
+ */
+public class VariableMapperELResolver extends ELResolver {
+
+    @CheckForNull
+    private static ValueExpression resolveVariable(final ELContext context, @Nullable final Object base, final Object property) {
+        if ((base != null) || !(property instanceof String)) {
+            return null;
+        }
+        final Object variableMapper = context.getContext(VariableMapper.class);
+        if (!(variableMapper instanceof VariableMapper)) {
+            return null;
+        }
+        return ((VariableMapper) variableMapper).resolveVariable((String) property);
+    }
+
+    @Override
+    public Object getValue(final ELContext context, final Object base, final Object property) {
+        final ValueExpression ve = resolveVariable(context, base, property);
+        if (ve == null) {
+            return null;
+        }
+        context.setPropertyResolved(true);
+        return ve.getValue(context);
+    }
+
+    @Override
+    public Class<?> getType(final ELContext context, final Object base, final Object property) {
+        final ValueExpression ve = resolveVariable(context, base, property);
+        if (ve == null) {
+            return null;
+        }
+        context.setPropertyResolved(true);
+        return ve.getType(context);
+    }
+
+    @Override
+    public void setValue(final ELContext context, final Object base, final Object property, final Object value) {
+        if (resolveVariable(context, base, property) != null) {
+            throw new PropertyNotWritableException("Setting variables is not allowed");
+        }
+    }
+
+    @Override
+    public boolean isReadOnly(final ELContext context, final Object base, final Object property) {
+        if (resolveVariable(context, base, property) != null) {
+            context.setPropertyResolved(true);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<FeatureDescriptor> getFeatureDescriptors(final ELContext context, final Object base) {
+        return null;
+    }
+
+    @Override
+    public Class<?> getCommonPropertyType(final ELContext context, final Object base) {
+        return (base == null) ? String.class : null;
+    }
+}
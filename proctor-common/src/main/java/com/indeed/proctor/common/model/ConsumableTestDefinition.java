@@ -1,5 +1,7 @@
 package com.indeed.proctor.common.model;
 
+import com.google.common.base.Objects;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
@@ -200,4 +202,34 @@ public class ConsumableTestDefinition {
     public void setMetaTags(final List<String> metaTags) {
         this.metaTags = metaTags;
     }
+
+    @Override
+    public int hashCode() {
+        // consistent with equals, as buckets with all values equal have equal names
+        return Objects.hashCode(version, constants, salt, rule, buckets, allocations, silent, testType, description, metaTags);
+    }
+
+    /**
+     * Same as {@link TestDefinition#equals(Object)}, comparing all values of buckets rather than only their names
+     */
+    @Override
+    public boolean equals(final Object otherDefinition) {
+        if (this == otherDefinition) {
+            return true;
+        }
+        if (otherDefinition == null || getClass() != otherDefinition.getClass()) {
+            return false;
+        }
+        final ConsumableTestDefinition that = (ConsumableTestDefinition) otherDefinition;
+        return silent == that.silent &&
+                Objects.equal(version, that.version) &&
+                Objects.equal(constants, that.constants) &&
+                Objects.equal(salt, that.salt) &&
+                Objects.equal(rule, that.rule) &&
+                TestDefinition.bucketListEqual(buckets, that.buckets) &&
+                Objects.equal(allocations, that.allocations) &&
+                Objects.equal(testType, that.testType) &&
+                Objects.equal(description, that.description) &&
+                Objects.equal(metaTags, that.metaTags);
+    }
 }
@@ -107,6 +107,14 @@ public class AbstractProctorLoaderTest {
         }
     }
 
+    @Test
+    public void testRuleEngine() {
+        final TestProctorLoader loader = createTestProctorLoader(dataLoaderTimerMock);
+        assertEquals(RuleEngine.EL, loader.getRuleEngine());
+        loader.setRuleEngine(RuleEngine.COMPILED);
+        assertEquals(RuleEngine.COMPILED, loader.getRuleEngine());
+    }
+
     private static Audit getAuditMockForLoad() {
         final Audit audit = createMock(Audit.class);
         expect(audit.getUpdated()).andReturn(1234L).times(2);
@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.indeed.proctor.common.dynamic.DynamicFilters;
 import com.indeed.proctor.common.dynamic.MetaTagsFilter;
+import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.TestMatrixArtifact;
 import org.assertj.core.api.Assertions;
@@ -13,6 +14,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.Collections;
 import java.util.Set;
 import java.util.function.Function;
@@ -100,6 +102,29 @@ public class TestAbstractJsonProctorLoader {
                 .containsExactlyInAnyOrder("sometst", "meta_tags_tst");
     }
 
+    @Test
+    public void testLoadJsonTestMatrixStopsAfterUnchangedAudit() throws IOException {
+        proctorLoader = new ExampleJsonProctorLoader(
+                TESTS_IN_EXAMPLE_TEST_MATRIX,
+                Collections.emptySet()
+        );
+        final Audit lastAudit = new Audit();
+        lastAudit.setVersion("1524");
+        proctorLoader.setLastAudit(lastAudit);
+
+        // tests are not parsed
+        final String json = "{\"audit\": {\"version\": \"1524\", \"updated\": 1313525000000, \"updatedBy\": \"shoichi\"}, \"tests\": {invalid";
+        final TestMatrixArtifact unchanged = proctorLoader.loadJsonTestMatrix(new StringReader(json));
+        assertEquals("1524", unchanged.getAudit().getVersion());
+        assertTrue(unchanged.getTests().isEmpty());
+
+        lastAudit.setVersion("1523");
+        final String path = getClass().getResource("example-test-matrix.json").getPath();
+        final TestMatrixArtifact changed = proctorLoader.loadJsonTestMatrix(new FileReader(new File(path)));
+        assertEquals("1524", changed.getAudit().getVersion());
+        assertEquals(4, changed.getTests().size());
+    }
+
     class ExampleJsonProctorLoader extends AbstractJsonProctorLoader {
         public ExampleJsonProctorLoader(final Set<String> requiredTests, final Set<String> metaTags) {
             super(
@@ -0,0 +1,163 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.indeed.proctor.common.dynamic.DynamicFilters;
+import com.indeed.proctor.common.dynamic.MetaTagsFilter;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Payload;
+import com.indeed.proctor.common.model.Range;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import com.indeed.proctor.common.model.TestType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestBinaryTestMatrix {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final TestMatrixArtifact artifact = readJsonArtifact();
+        final Map<String, ConsumableTestDefinition> tests = new HashMap<>(artifact.getTests());
+        tests.put("payload_tst", createPayloadTest());
+        artifact.setTests(tests);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryTestMatrixWriter.write(artifact, output);
+        final ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray());
+        assertThat(BinaryTestMatrixReader.isBinaryTestMatrix(buffer)).isTrue();
+        final BinaryTestMatrixReader reader = new BinaryTestMatrixReader(buffer);
+
+        assertThat(reader.getAudit().getVersion()).isEqualTo("1524");
+        assertThat(reader.getAudit().getUpdated()).isEqualTo(1313525000000L);
+        assertThat(reader.getAudit().getUpdatedDate()).isEqualTo(artifact.getAudit().getUpdatedDate());
+        assertThat(reader.getAudit().getUpdatedBy()).isEqualTo("shoichi");
+
+        final Map<String, ConsumableTestDefinition> decoded = new HashMap<>();
+        for (int i = 0; i < reader.getTestCount(); i++) {
+            decoded.put(reader.getTestName(i), reader.readTest(i));
+        }
+        assertThat(decoded).isEqualTo(tests);
+        assertThat(decoded.get("null_tst")).isNull();
+        final ConsumableTestDefinition payloadTest = decoded.get("payload_tst");
+        for (int i = 0; i < payloadTest.getBuckets().size(); i++) {
+            final TestBucket expected = tests.get("payload_tst").getBuckets().get(i);
+            assertThat(payloadTest.getBuckets().get(i).getDescription()).isEqualTo(expected.getDescription());
+            assertThat(payloadTest.getBuckets().get(i).getPayload()).isEqualTo(expected.getPayload());
+        }
+        assertThat(payloadTest.getConstants()).isEqualTo(tests.get("payload_tst").getConstants());
+    }
+
+    @Test
+    public void testNotBinary() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(getClass().getResource("example-test-matrix.json").getPath())));
+        assertThat(BinaryTestMatrixReader.isBinaryTestMatrix(buffer)).isFalse();
+    }
+
+    @Test
+    public void testLoadRequiredTests() throws Exception {
+        final File file = writeBinaryArtifact();
+        final BinaryFileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst", "null_tst"), Collections.emptySet());
+        final TestMatrixArtifact loaded = loader.loadTestMatrix();
+        assertThat(loaded.getAudit().getVersion()).isEqualTo("1524");
+        assertThat(loaded.getTests()).containsOnlyKeys("exampletst", "null_tst");
+        assertThat(loaded.getTests().get("exampletst")).isEqualTo(readJsonArtifact().getTests().get("exampletst"));
+        assertThat(loaded.getTests().get("null_tst")).isNull();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        final File file = writeBinaryArtifact();
+        final BinaryFileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), Collections.emptySet());
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.get()).isNotNull();
+        assertThat(loader.getLastAudit().getVersion()).isEqualTo("1524");
+
+        // unchanged audit, tests are not decoded again
+        assertThat(loader.loadTestMatrix().getTests()).isEmpty();
+    }
+
+    @Test
+    public void testLoadDynamicTests() throws Exception {
+        final File file = writeBinaryArtifact();
+        final BinaryFileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), ImmutableSet.of("sometag"));
+        assertThat(loader.loadTestMatrix().getTests()).containsOnlyKeys("exampletst", "sometst");
+    }
+
+    @Test
+    public void testLoadJson() throws Exception {
+        final File file = new File(getClass().getResource("example-test-matrix.json").getPath());
+        final BinaryFileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), ImmutableSet.of("sometag"));
+        final TestMatrixArtifact loaded = loader.loadTestMatrix();
+        assertThat(loaded.getAudit().getVersion()).isEqualTo("1524");
+        assertThat(loaded.getTests()).containsOnlyKeys("exampletst", "sometst");
+    }
+
+    private File writeBinaryArtifact() throws IOException {
+        final File file = temporaryFolder.newFile("proctor-tests-matrix.bin");
+        try (OutputStream output = new FileOutputStream(file)) {
+            BinaryTestMatrixWriter.write(readJsonArtifact(), output);
+        }
+        return file;
+    }
+
+    private TestMatrixArtifact readJsonArtifact() throws IOException {
+        return Serializers.lenient().readValue(getClass().getResource("example-test-matrix.json"), TestMatrixArtifact.class);
+    }
+
+    private static BinaryFileProctorLoader createLoader(final File file, final Set<String> requiredTests, final Set<String> metaTags) {
+        return new BinaryFileProctorLoader(
+                new ProctorSpecification(
+                        Collections.emptyMap(),
+                        requiredTests.stream()
+                                .collect(Collectors.toMap(Function.identity(), (e) -> new TestSpecification())),
+                        metaTags.isEmpty() ? new DynamicFilters() : new DynamicFilters(
+                                ImmutableList.of(new MetaTagsFilter(metaTags))
+                        )
+                ),
+                file,
+                RuleEvaluator.defaultFunctionMapperBuilder().build());
+    }
+
+    private static ConsumableTestDefinition createPayloadTest() {
+        return new ConsumableTestDefinition(
+                "1",
+                null,
+                TestType.ANONYMOUS_USER,
+                "&payload_tst",
+                ImmutableList.of(
+                        new TestBucket("inactive", -1, "inactive", new Payload(new String[]{"a", "b"})),
+                        new TestBucket("control", 0, "control", new Payload(0.123456789012345)),
+                        new TestBucket("test", 1, null, new Payload(ImmutableMap.of("key", 1, "list", ImmutableList.of("x")))),
+                        new TestBucket("nopayload", 2, "no payload")),
+                ImmutableList.of(
+                        new Allocation("${lang == 'en'}", ImmutableList.of(new Range(0, 0.5), new Range(1, 0.5)), "#A1"),
+                        new Allocation(null, ImmutableList.of(new Range(-1, 1.0)), "#B1")),
+                true,
+                ImmutableMap.of("COUNTRIES", ImmutableList.of("US", "JP"), "RATIO", 0.1),
+                "payloads 日本語",
+                ImmutableList.of("tag"));
+    }
+}
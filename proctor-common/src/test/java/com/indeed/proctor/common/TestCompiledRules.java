@@ -0,0 +1,225 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.indeed.util.core.ReleaseVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.el.ValueExpression;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Evaluates the rules of {@link TestRuleEvaluator} and more with both {@link RuleEngine}s, expecting the same results
+ */
+public class TestCompiledRules {
+
+    private RuleEvaluator elEvaluator;
+    private RuleEvaluator compiledEvaluator;
+
+    @Before
+    public void setUp() {
+        final Map<String, Object> testConstants = ImmutableMap.of(
+                "LANGUAGES_ENABLED", Lists.newArrayList("en", "fr", "de"),
+                "COUNTRY", "US",
+                "HEX_COLOR", "^#[0-9a-fA-F]{3,6}$",
+                "MIN_VERSION", "1.2.x"
+        );
+        elEvaluator = new RuleEvaluator(RuleEvaluator.EXPRESSION_FACTORY, RuleEvaluator.FUNCTION_MAPPER, testConstants, RuleEngine.EL);
+        compiledEvaluator = new RuleEvaluator(RuleEvaluator.EXPRESSION_FACTORY, RuleEvaluator.FUNCTION_MAPPER, testConstants, RuleEngine.COMPILED);
+    }
+
+    public static class Temp {
+        public String getY() {
+            return "barY";
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public Temp getSelf() {
+            return this;
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("failing getter");
+        }
+    }
+
+    public static class OtherTemp {
+        public String getY() {
+            return "otherY";
+        }
+    }
+
+    @Test
+    public void testTrivialRulesAreNotCompiled() {
+        for (final String rule : new String[] { null, "", "${}", "${true}", "${false}", "true", " ${true} " }) {
+            assertThat(compiledEvaluator.compileBooleanRule(rule).isLiteralText()).as(String.valueOf(rule)).isTrue();
+            assertSameResult(rule, emptyMap());
+        }
+    }
+
+    @Test
+    public void testLiteralAndNonBooleanRules() {
+        for (final String rule : new String[] {
+                "${null}", "${1 == 1}", "${1 == 1}}", "${1 + 1}}", "${'tr'}${'ue'}", "${'true'}", "${1}", "${-1 < 0}",
+                "${1 + 2 * 3 == 7}", "${7 / 2 == 3.5}", "${7 % 2 == 1}", "${1.5 > 1}", "${'a' < 'b'}", "${null == null}",
+                "${null < 1}", "${null <= null}", "${null >= 1}", "${empty ''}", "${not empty 'a'}", "${true ? true : false}",
+                "${'a' == 1}", "${'1' == 1}", "${'x' ? true : false}"
+        }) {
+            assertSameResult(rule, emptyMap());
+        }
+    }
+
+    @Test
+    public void testVariables() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("lang", "en");
+        values.put("count", 3);
+        values.put("ratio", 0.5);
+        values.put("flag", true);
+        values.put("flagString", "true");
+        values.put("nothing", null);
+        values.put("emptyList", Collections.emptyList());
+        values.put("array", new String[] { "foo", "bar" });
+        for (final String rule : new String[] {
+                "${lang == 'en'}", "${!(lang == 'fr')}", "${lang == 'fr'}", "${lang != 'fr' && count > 2}",
+                "${lang == 'fr' || count >= 3}", "${count + 1 == 4}", "${count / 2 > 1}", "${count % 2 == 1}", "${-count < 0}",
+                "${ratio * 2 == 1}", "${count == '3'}", "${count > '2'}", "${count > 'x'}", "${flag}", "${!flag}", "${flagString}",
+                "${lang}", "${count}", "${nothing}", "${nothing == null}", "${empty nothing}", "${empty emptyList}", "${empty array}",
+                "${not empty lang}", "${unknown == 'x'}", "${unknown}", "${nothing.size == 0}", "${flag ? lang == 'en' : false}",
+                "${lang == COUNTRY}", "${COUNTRY == 'US'}", "${LANGUAGES_ENABLED[0] == lang}", "${lang eq 'en' and count gt 2}"
+        }) {
+            assertSameResult(rule, values);
+        }
+        // test constants take precedence
+        assertSameResult("${COUNTRY == 'US'}", singletonMap("COUNTRY", "CA"));
+    }
+
+    @Test
+    public void testElPropertyResolvers() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("map", ImmutableMap.of("foo", "bar", "one", 1));
+        values.put("array", new String[] { "foo", "bar" });
+        values.put("list", Arrays.asList("foo", "bar"));
+        values.put("bean", new Temp());
+        values.put("otherBean", new OtherTemp());
+        for (final String rule : new String[] {
+                "${map['foo'] == 'bar'}", "${map.foo == 'bar'}", "${map.missing == null}", "${map.one > 0}", "${map[null] == null}",
+                "${array[1] == 'bar'}", "${array[2] == null}", "${array[-1] == null}", "${array['1'] == 'bar'}", "${array['x'] == 'bar'}",
+                "${list[1] == 'bar'}", "${list[5] == null}", "${list['0'] == 'foo'}", "${list.size == 2}",
+                "${bean.y == 'barY'}", "${bean['y'] == 'barY'}", "${bean.active}", "${bean.self.self.y == 'barY'}",
+                "${bean.missing == 'x'}", "${bean.failing == 'x'}", "${otherBean.y == 'otherY'}", "${map.foo.bytes == null}",
+                "${LANGUAGES_ENABLED.contains('en')}", "${bean.active && list[0] == 'foo'}"
+        }) {
+            assertSameResult(rule, values);
+        }
+    }
+
+    @Test
+    public void testBeanPropertyOfChangingClasses() {
+        final ValueExpression compiled = compiledEvaluator.compileBooleanRule("${bean.y == 'barY'}");
+        assertThat(compiled).isInstanceOf(CompiledRuleExpression.class);
+        for (final Object bean : new Object[] { new Temp(), new OtherTemp(), new Temp(), ImmutableMap.of("y", "barY"), "string" }) {
+            final Map<String, Object> values = singletonMap("bean", bean);
+            assertThat(evaluate(compiledEvaluator, compiled, values))
+                    .as(String.valueOf(bean))
+                    .isEqualTo(evaluate(elEvaluator, elEvaluator.compileBooleanRule("${bean.y == 'barY'}"), values));
+        }
+    }
+
+    @Test
+    public void testFunctions() {
+        for (final String lang : new String[] { "en", "en_US", "it", "fr" }) {
+            final Map<String, Object> values = singletonMap("lang", lang);
+            for (final String rule : new String[] {
+                    "${proctor:contains(LANGUAGES_ENABLED, lang)}", "${fn:startsWith(lang, 'en')}", "${fn:length(lang) > 2}",
+                    "${fn:toUpperCase(lang) == 'EN'}", "${indeed:contains(LANGUAGES_ENABLED, lang)}", "${fn:startsWith(missing, 'en')}",
+                    "${proctor:now() > 0}", "${fn:contains(fn:toLowerCase(lang), 'e')}", "${fn:substring(lang, 0, 1) == 'e'}"
+            }) {
+                assertSameResult(rule, values);
+            }
+        }
+        for (final String hex : new String[] { "#000", "#0000", "#00000", "#AEFFB3", "#aE3FB3", "#00", "abc3f", "#000000d", "abe4z ", "" }) {
+            assertSameResult("${proctor:matches(value, '^#[0-9a-fA-F]{3,6}$')}", singletonMap("value", hex));
+            assertSameResult("${proctor:matches(value, HEX_COLOR)}", singletonMap("value", hex));
+            assertSameResult("${proctor:matches(value, pattern)}", ImmutableMap.of("value", hex, "pattern", "^#[0-9a-fA-F]{3,6}$"));
+            assertSameResult("${proctor:matches(value, '[')}", singletonMap("value", hex));
+        }
+    }
+
+    @Test
+    public void testVersions() {
+        for (final String version : new String[] { "0.9.0.0", "1.1.0.0", "1.1.9.500", "1.2.0.0", "1.2.0.1", "1.3.0.0", "2.0.0.0", "2.3.9.1024", "2.4.0.0", "2.4.1.0", "5.4.3.0", "5.4.3.200" }) {
+            final Map<String, Object> values = singletonMap("version", ReleaseVersion.fromString(version));
+            for (final String rule : new String[] {
+                    "${version < proctor:version('1.2.x')}", "${version < proctor:version('1.2.0.0')}",
+                    "${version <= proctor:version('1.2.x')}", "${version <= proctor:version('1.2.0.0')}",
+                    "${version == proctor:version('5.4.3.x')}", "${version == proctor:version('5.4.3.0')}",
+                    "${version > proctor:version('1.2.x')}", "${version > proctor:version('1.2.0.0')}",
+                    "${version >= proctor:version('1.2.x')}", "${version >= proctor:version('1.2.0.0')}",
+                    "${proctor:versionInRange(version, '1.2.x', '2.4.0.0')}", "${proctor:versionInRange(version, '1.2.0.0', '2.4.0.0')}",
+                    "${proctor:versionInRange(version, '1.2.x', '2.4.x')}", "${proctor:version('1.2.0.0')}",
+                    "${version >= proctor:version(MIN_VERSION)}", "${proctor:versionInRange(version, MIN_VERSION, '2.4.0.0')}",
+                    "${version >= proctor:version('invalid')}", "${proctor:versionInRange(version, 'invalid', '2.4.0.0')}",
+                    "${proctor:versionInRange(null, '1.2.x', '2.4.0.0')}"
+            }) {
+                assertSameResult(rule, values);
+            }
+        }
+    }
+
+    @Test
+    public void testCompilesSupportedRules() {
+        for (final String rule : new String[] {
+                "${lang == 'en'}", "${!(lang == 'fr')}", "${not empty lang}", "${flag}", "${proctor:contains(LANGUAGES_ENABLED, lang)}",
+                "${bean.y == 'barY' && map['foo'] == list[0]}", "${(count + 1 > -1 ? lang : 'x') == 'en'}",
+                "${version >= proctor:version('1.2.0.0')}"
+        }) {
+            assertThat(compiledEvaluator.compileBooleanRule(rule)).as(rule).isInstanceOf(CompiledRuleExpression.class);
+            assertThat(elEvaluator.compileBooleanRule(rule)).as(rule).isNotInstanceOf(CompiledRuleExpression.class);
+        }
+    }
+
+    @Test
+    public void testFallsBackToElForUnsupportedRules() {
+        for (final String rule : new String[] {
+                // method calls
+                "${LANGUAGES_ENABLED.contains(lang)}",
+                // not boolean at the root
+                "${1}", "${'true'}", "${null}", "${map.flag}", "${flag ? true : false}", "${proctor:version('1.2.0.0')}",
+                // negative variables
+                "${-count < 0}",
+                // composite
+                "${'tr'}${'ue'}"
+        }) {
+            assertThat(compiledEvaluator.compileBooleanRule(rule)).as(rule).isNotInstanceOf(CompiledRuleExpression.class);
+        }
+    }
+
+    private void assertSameResult(final String rule, final Map<String, Object> values) {
+        final Object expected = evaluate(elEvaluator, elEvaluator.compileBooleanRule(rule), values);
+        final Object actual = evaluate(compiledEvaluator, compiledEvaluator.compileBooleanRule(rule), values);
+        assertThat(actual).as("rule '%s' for %s", rule, values).isEqualTo(expected);
+    }
+
+    /**
+     * @return the result of the rule, or the class of the thrown exception
+     */
+    private static Object evaluate(final RuleEvaluator ruleEvaluator, final ValueExpression ve, final Map<String, Object> values) {
+        try {
+            return ruleEvaluator.evaluateBooleanExpression(ve, values);
+        } catch (final RuntimeException e) {
+            return e.getClass();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+import com.indeed.proctor.common.dynamic.DynamicFilters;
+import com.indeed.proctor.common.dynamic.MetaTagsFilter;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestFileProctorLoader {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryMappedJson() throws Exception {
+        final File file = new File(getClass().getResource("example-test-matrix.json").getPath());
+        assertMemoryMappedMatchesJson(file);
+    }
+
+    @Test
+    public void testMemoryMappedBinary() throws Exception {
+        final File file = temporaryFolder.newFile("proctor-tests-matrix.bin");
+        try (OutputStream output = new FileOutputStream(file)) {
+            BinaryTestMatrixWriter.write(readJsonArtifact(), output);
+        }
+        assertMemoryMappedMatchesJson(file);
+    }
+
+    @Test
+    public void testMemoryMappedDynamicTests() throws Exception {
+        final File file = new File(getClass().getResource("example-test-matrix.json").getPath());
+        final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), ImmutableSet.of("sometag"));
+        loader.setMemoryMapped(true);
+        final TestMatrixArtifact loaded = loader.loadTestMatrix();
+        assertThat(loaded.getTests()).containsOnlyKeys("exampletst", "sometst");
+        assertThat(loaded.getTests().get("sometst")).isEqualTo(readJsonArtifact().getTests().get("sometst"));
+    }
+
+    @Test
+    public void testMemoryMappedLoad() throws Exception {
+        final File file = new File(getClass().getResource("example-test-matrix.json").getPath());
+        final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst", "sometst"), Collections.emptySet());
+        loader.setMemoryMapped(true);
+        assertThat(loader.load()).isTrue();
+        final Proctor proctor = loader.get();
+        assertThat(proctor).isNotNull();
+        assertThat(proctor.getTestDefinition("sometst")).isNotNull();
+        assertThat(((LazyTestDefinitionMap) proctor.getArtifact().getTests()).getEncodedCount()).isZero();
+
+        // unchanged audit, not reloaded
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.get()).isSameAs(proctor);
+    }
+
+    @Test
+    public void testMissingTests() throws Exception {
+        final File file = temporaryFolder.newFile("proctor-tests-matrix.json");
+        Files.write(file.toPath(), "{ \"audit\" : { \"version\" : \"1\", \"updatedBy\" : \"nobody\", \"updated\" : 0 } }".getBytes(StandardCharsets.UTF_8));
+        for (final boolean memoryMapped : new boolean[]{false, true}) {
+            final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), Collections.emptySet());
+            loader.setMemoryMapped(memoryMapped);
+            assertThatThrownBy(loader::loadTestMatrix)
+                    .as("memory-mapped: " + memoryMapped)
+                    .hasMessageContaining("\"tests\" was not found");
+        }
+    }
+
+    @Test
+    public void testMemoryMappedIteratorRemove() throws Exception {
+        final File file = new File(getClass().getResource("example-test-matrix.json").getPath());
+        final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst", "sometst"), Collections.emptySet());
+        loader.setMemoryMapped(true);
+        final LazyTestDefinitionMap tests = (LazyTestDefinitionMap) loader.loadTestMatrix().getTests();
+        tests.entrySet().removeIf(entry -> "sometst".equals(entry.getKey()));
+        // removed without decoding
+        assertThat(tests.getEncodedCount()).isEqualTo(1);
+        assertThat(tests.keySet()).containsOnly("exampletst");
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        final String json = Resources.toString(getClass().getResource("example-test-matrix.json"), StandardCharsets.UTF_8);
+        final File file = temporaryFolder.newFile("proctor-tests-matrix.json");
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), Collections.emptySet());
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.getLastAudit().getVersion()).isEqualTo("1524");
+
+        loader.startWatching(10, TimeUnit.MILLISECONDS);
+        try {
+            // replace by atomic rename
+            final File newFile = temporaryFolder.newFile("proctor-tests-matrix.json.tmp");
+            Files.write(newFile.toPath(), json.replace("\"version\" : \"1524\"", "\"version\" : \"1525\"").getBytes(StandardCharsets.UTF_8));
+            Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            awaitAuditVersion(loader, "1525");
+
+            // modify in place
+            Files.write(file.toPath(), json.replace("\"version\" : \"1524\"", "\"version\" : \"1526\"").getBytes(StandardCharsets.UTF_8));
+            awaitAuditVersion(loader, "1526");
+        } finally {
+            loader.stopWatching();
+        }
+    }
+
+    @Test
+    public void testWatchIgnoresOtherFilesDuringDebounce() throws Exception {
+        final String json = Resources.toString(getClass().getResource("example-test-matrix.json"), StandardCharsets.UTF_8);
+        final File file = temporaryFolder.newFile("proctor-tests-matrix.json");
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        final File otherFile = temporaryFolder.newFile("other.log");
+        final FileProctorLoader loader = createLoader(file, ImmutableSet.of("exampletst"), Collections.emptySet());
+        assertThat(loader.load()).isTrue();
+
+        loader.startWatching(200, TimeUnit.MILLISECONDS);
+        try {
+            Files.write(file.toPath(), json.replace("\"version\" : \"1524\"", "\"version\" : \"1525\"").getBytes(StandardCharsets.UTF_8));
+            // another file of the directory written more often than the debounce delay does not postpone the reload
+            final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!"1525".equals(loader.getLastAudit().getVersion()) && (System.currentTimeMillis() < deadline)) {
+                Files.write(otherFile.toPath(), "line\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                Thread.sleep(20);
+            }
+            assertThat(loader.getLastAudit().getVersion()).isEqualTo("1525");
+        } finally {
+            loader.stopWatching();
+        }
+    }
+
+    private static void awaitAuditVersion(final FileProctorLoader loader, final String version) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!version.equals(loader.getLastAudit().getVersion()) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        assertThat(loader.getLastAudit().getVersion()).isEqualTo(version);
+    }
+
+    private void assertMemoryMappedMatchesJson(final File file) throws IOException, MissingTestMatrixException {
+        final Set<String> requiredTests = ImmutableSet.of("exampletst", "sometst", "null_tst", "missing_tst");
+        final FileProctorLoader loader = createLoader(file, requiredTests, Collections.emptySet());
+        loader.setMemoryMapped(true);
+        final TestMatrixArtifact loaded = loader.loadTestMatrix();
+        assertThat(loaded.getAudit().getVersion()).isEqualTo("1524");
+        assertThat(loaded.getTests()).isInstanceOf(LazyTestDefinitionMap.class);
+        final LazyTestDefinitionMap tests = (LazyTestDefinitionMap) loaded.getTests();
+        assertThat(tests.keySet()).containsOnly("exampletst", "sometst", "null_tst");
+
+        // decoded on first access only
+        assertThat(tests.getEncodedCount()).isGreaterThanOrEqualTo(2);
+        final TestMatrixArtifact json = readJsonArtifact();
+        assertThat(tests.get("exampletst")).isEqualTo(json.getTests().get("exampletst"));
+        assertThat(tests.get("exampletst")).isSameAs(tests.get("exampletst"));
+        assertThat(tests.get("null_tst")).isNull();
+        assertThat(tests.getEncodedCount()).isEqualTo(1);
+        assertThat(tests).containsEntry("sometst", json.getTests().get("sometst"));
+        assertThat(tests.getEncodedCount()).isZero();
+    }
+
+    private TestMatrixArtifact readJsonArtifact() throws IOException {
+        return Serializers.lenient().readValue(getClass().getResource("example-test-matrix.json"), TestMatrixArtifact.class);
+    }
+
+    private static FileProctorLoader createLoader(final File file, final Set<String> requiredTests, final Set<String> metaTags) {
+        return new FileProctorLoader(
+                new ProctorSpecification(
+                        Collections.emptyMap(),
+                        requiredTests.stream()
+                                .collect(Collectors.toMap(Function.identity(), (e) -> new TestSpecification())),
+                        metaTags.isEmpty() ? new DynamicFilters() : new DynamicFilters(
+                                ImmutableList.of(new MetaTagsFilter(metaTags))
+                        )
+                ),
+                file,
+                RuleEvaluator.defaultFunctionMapperBuilder().build());
+    }
+}
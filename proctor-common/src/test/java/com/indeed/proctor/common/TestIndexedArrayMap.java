@@ -0,0 +1,77 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestIndexedArrayMap {
+
+    @Test
+    public void testTestIndex() {
+        final TestIndex testIndex = new TestIndex(Arrays.asList("c_tst", "a_tst", "b_tst"));
+        assertThat(testIndex.size()).isEqualTo(3);
+        assertThat(testIndex.getTestName(0)).isEqualTo("a_tst");
+        assertThat(testIndex.getTestName(2)).isEqualTo("c_tst");
+        assertThat(testIndex.indexOf("b_tst")).isEqualTo(1);
+        assertThat(testIndex.indexOf("d_tst")).isEqualTo(-1);
+        assertThat(testIndex.indexesOf("c_tst", "d_tst", "a_tst")).containsExactly(2, -1, 0);
+        assertThat(TestIndex.EMPTY.size()).isZero();
+    }
+
+    @Test
+    public void testSameAsTreeMap() {
+        final List<String> testNames = new ArrayList<>();
+        for (int i = 10; i < 30; i++) {
+            testNames.add("test" + i);
+        }
+        Collections.shuffle(testNames);
+        final TestIndex testIndex = new TestIndex(testNames);
+        final Integer[] values = new Integer[testIndex.size()];
+        final TreeMap<String, Integer> expected = new TreeMap<>();
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            // leave gaps, including first and last
+            if (i % 3 != 0 && i != values.length - 1) {
+                values[i] = i;
+                expected.put(testIndex.getTestName(i), i);
+                size++;
+            }
+        }
+        final IndexedArrayMap<Integer> map = new IndexedArrayMap<>(testIndex, values, size);
+
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(map.toString()).isEqualTo(expected.toString());
+        assertThat(map.keySet()).containsExactlyElementsOf(expected.keySet());
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.get("test11")).isEqualTo(1);
+        assertThat(map.containsKey("test11")).isTrue();
+        assertThat(map.containsKey("test10")).isFalse();
+        assertThat(map.get("test9")).isNull();
+        assertThat(map.get(15)).isNull();
+        assertThat(map.containsKey(null)).isFalse();
+    }
+
+    @Test
+    public void testEmpty() {
+        final IndexedArrayMap<Integer> map = new IndexedArrayMap<>(TestIndex.EMPTY, new Integer[0], 0);
+        assertThat(map).isEmpty();
+        assertThat(map.get("test")).isNull();
+        assertThat(map).isEqualTo(ImmutableMap.of());
+    }
+
+    @Test
+    public void testReadOnly() {
+        final IndexedArrayMap<Integer> map = new IndexedArrayMap<>(new TestIndex(Collections.singleton("a")), new Integer[]{1}, 1);
+        assertThatThrownBy(() -> map.put("b", 2)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> map.entrySet().iterator().next().setValue(2)).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,74 @@
+package com.indeed.proctor.common;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestPrefixedMD5 {
+
+    @Test
+    public void testMatchesMessageDigestAcrossBlockBoundaries() {
+        final Random random = new Random(42);
+        for (int prefixLength = 0; prefixLength <= 200; prefixLength++) {
+            final byte[] prefix = randomBytes(random, prefixLength);
+            final PrefixedMD5 md5 = new PrefixedMD5(prefix);
+            for (int suffixLength = 0; suffixLength <= 200; suffixLength++) {
+                final byte[] suffix = randomBytes(random, suffixLength);
+                assertThat(md5.hashToInt(suffix))
+                        .as("prefix length %d, suffix length %d", prefixLength, suffixLength)
+                        .isEqualTo(legacyHash(prefix, suffix));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesMessageDigestForTestSalts() {
+        final String[] salts = {"exampletst", "&exampletst", "example_tst|&shared_salt", "", "été"};
+        for (final String salt : salts) {
+            final byte[] prefix = salt.getBytes(StandardCharsets.UTF_8);
+            final PrefixedMD5 md5 = new PrefixedMD5(prefix);
+            for (int accountId = 0; accountId < 200000; accountId++) {
+                final byte[] suffix = String.valueOf(accountId).getBytes(StandardCharsets.UTF_8);
+                assertThat(md5.hashToInt(suffix)).isEqualTo(legacyHash(prefix, suffix));
+            }
+            final byte[] unicode = "日本語😀-user".getBytes(StandardCharsets.UTF_8);
+            assertThat(md5.hashToInt(unicode)).isEqualTo(legacyHash(prefix, unicode));
+        }
+    }
+
+    @Test
+    public void testDoesNotModifyInputs() {
+        final byte[] prefix = "salt".getBytes(StandardCharsets.UTF_8);
+        final byte[] suffix = "identifier".getBytes(StandardCharsets.UTF_8);
+        final PrefixedMD5 md5 = new PrefixedMD5(prefix);
+        final int first = md5.hashToInt(suffix);
+        Arrays.fill(prefix, (byte) 0);
+        assertThat(md5.hashToInt(suffix)).isEqualTo(first);
+        assertThat(new String(suffix, StandardCharsets.UTF_8)).isEqualTo("identifier");
+    }
+
+    private static byte[] randomBytes(final Random random, final int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * The bucket hash as computed before {@link PrefixedMD5}: bytes 12 to 15 of the MD5 digest, big-endian.
+     */
+    private static int legacyHash(final byte[] prefix, final byte[] suffix) {
+        final MessageDigest md = ProctorUtils.createMessageDigest();
+        md.update(prefix);
+        md.update(suffix);
+        final byte[] digest = md.digest();
+        return (0xff & digest[12]) << 24 |
+                (0xff & digest[13]) << 16 |
+                (0xff & digest[14]) << 8 |
+                (0xff & digest[15]);
+    }
+}
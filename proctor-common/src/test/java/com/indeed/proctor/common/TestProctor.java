@@ -6,14 +6,17 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Range;
 import com.indeed.proctor.common.model.TestBucket;
 import com.indeed.proctor.common.model.TestMatrixArtifact;
 import com.indeed.proctor.common.model.TestType;
 import org.junit.Test;
 
+import javax.el.VariableMapper;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -23,11 +26,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -279,7 +285,7 @@ public class TestProctor {
                 testBucket, allocation
         );
 
-        when(testChooser.choose(null, inputContext)).thenReturn(result);
+        when(testChooser.choose(isNull(), any(VariableMapper.class), isNull())).thenReturn(result);
 
         final ProctorResult proctorResultWithRandom = proctor.determineTestGroups(
                 identifiersWithRandom,
@@ -299,7 +305,431 @@ public class TestProctor {
         assertThat(proctorResultWithoutRandom.getAllocations()).isEqualTo(Collections.emptyMap());
 
         // choose should not be called for identifiers with randomEnabled == false.
-        verify(testChooser, times(1)).choose(null, inputContext);
+        verify(testChooser, times(1)).choose(isNull(), any(VariableMapper.class), isNull());
+    }
+
+    @Test
+    public void testDetermineTestGroupsEvaluatesSharedRulesOncePerRequest() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        // same rule with different formatting
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${ lang=='en' }", Collections.emptyMap()));
+        // unrelated test constants do not prevent sharing
+        tests.put("three_tst", createStandardTest("${lang == 'en'}", ImmutableMap.of("UNUSED", "x")));
+        // referenced test constants with different values prevent sharing
+        tests.put("four_tst", createStandardTest("${lang == LANG}", ImmutableMap.of("LANG", "en")));
+        tests.put("five_tst", createStandardTest("${lang == LANG}", ImmutableMap.of("LANG", "fr")));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final ProctorResult result = proctor.determineTestGroups(
+                Identifiers.of(TestType.ANONYMOUS_USER, "user"),
+                ImmutableMap.of("lang", "en"),
+                Collections.emptyMap()
+        );
+
+        assertThat(result.getBuckets().keySet()).containsExactlyInAnyOrder("one_tst", "two_tst", "three_tst", "four_tst");
+        assertThat(proctor.getSharedRuleEvaluations()).isEqualTo(3);
+        assertThat(proctor.getSharedRuleHits()).isEqualTo(2);
+        assertThat(proctor.getSharedRuleHitRatio()).isEqualTo(0.4);
+    }
+
+    @Test
+    public void testDetermineTestGroupsSharesTestDefinitions() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("c_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("a_tst", createStandardTest(null, Collections.emptyMap()));
+        tests.put("b_tst", createStandardTest("${lang == 'fr'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+        final ProctorResult first = proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        final ProctorResult second = proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "fr"), Collections.emptyMap());
+
+        assertThat(first.getTestDefinitions()).isSameAs(second.getTestDefinitions());
+        assertThat(first.getTestDefinitions()).isEqualTo(tests);
+        // ordered by test name
+        assertThat(first.getBuckets().keySet()).containsExactly("a_tst", "c_tst");
+        assertThat(first.getAllocations().keySet()).containsExactly("a_tst", "c_tst");
+        assertThat(second.getBuckets().keySet()).containsExactly("a_tst", "b_tst");
+
+        // looking up by the index shared by all results
+        final TestIndex testIndex = proctor.getTestIndex();
+        assertThat(first.getTestIndex()).isSameAs(testIndex);
+        assertThat(second.getTestIndex()).isSameAs(testIndex);
+        assertThat(first.getBucket(testIndex.indexOf("c_tst"))).isEqualTo(first.getBuckets().get("c_tst"));
+        assertThat(first.getAllocation(testIndex.indexOf("c_tst"))).isEqualTo(first.getAllocations().get("c_tst"));
+        assertThat(first.getBucket(testIndex.indexOf("b_tst"))).isNull();
+
+        final ProctorResult filtered = proctor.determineTestGroups(
+                identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap(), Arrays.asList("c_tst", "b_tst"));
+        assertThat(filtered.getBuckets().keySet()).containsExactly("c_tst");
+    }
+
+    @Test
+    public void testCreateView() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("c_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("a_tst", createStandardTest(null, Collections.emptyMap()));
+        tests.put("b_tst", createStandardTest(null, Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final ProctorView view = proctor.createView(Arrays.asList("c_tst", "b_tst", "missing_tst"));
+        assertThat(view.getProctor()).isSameAs(proctor);
+        assertThat(view.getTestNames()).containsExactly("b_tst", "c_tst");
+
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+        final Map<String, Object> context = ImmutableMap.of("lang", "en");
+        final ProctorResult result = view.determineTestGroups(identifiers, context, Collections.emptyMap());
+        assertThat(result.getBuckets().keySet()).containsExactly("b_tst", "c_tst");
+        assertThat(result.getBuckets()).isEqualTo(proctor.determineTestGroups(
+                identifiers, context, Collections.emptyMap(), Arrays.asList("c_tst", "b_tst")).getBuckets());
+        // same index and definitions as the Proctor, for consistent logging and lookups by index
+        assertThat(result.getTestIndex()).isSameAs(proctor.getTestIndex());
+        assertThat(result.getTestDefinitions()).isEqualTo(tests);
+
+        final ProctorResult lazyResult = view.determineTestGroupsLazily(identifiers, context, Collections.emptyMap());
+        assertThat(lazyResult.getBuckets()).isEqualTo(result.getBuckets());
+
+        // unlike an empty filter, an empty view determines no test
+        assertThat(proctor.createView(Collections.emptyList())
+                .determineTestGroups(identifiers, context, Collections.emptyMap()).getBuckets()).isEmpty();
+    }
+
+    @Test
+    public void testDetermineTestGroupsLazilyDeterminesTestsOnLookup() {
+        final RandomTestChooser oneChooser = mock(RandomTestChooser.class);
+        final RandomTestChooser twoChooser = mock(RandomTestChooser.class);
+        final Map<String, TestChooser<?>> choosers = ImmutableMap.of("one_tst", oneChooser, "two_tst", twoChooser);
+        final TestChooser.Result oneResult = new TestChooser.Result(new TestBucket("one", 1, ""), new Allocation());
+        final TestChooser.Result twoResult = new TestChooser.Result(new TestBucket("two", 2, ""), new Allocation());
+        when(oneChooser.choose(isNull(), any(VariableMapper.class), isNull())).thenReturn(oneResult);
+        when(twoChooser.choose(isNull(), any(VariableMapper.class), isNull())).thenReturn(twoResult);
+
+        final Proctor proctor = new Proctor(createTestMatrixWithOneRandomTest("one_tst"), null, choosers);
+        final ProctorResult result = proctor.determineTestGroupsLazily(
+                new Identifiers(Collections.emptyMap(), true),
+                Collections.emptyMap(),
+                Collections.emptyMap()
+        );
+        verify(oneChooser, times(0)).choose(isNull(), any(VariableMapper.class), isNull());
+        verify(twoChooser, times(0)).choose(isNull(), any(VariableMapper.class), isNull());
+
+        assertThat(result.getBuckets().get("one_tst")).isEqualTo(oneResult.getTestBucket());
+        assertThat(result.getAllocations().get("one_tst")).isEqualTo(oneResult.getAllocation());
+        assertThat(result.getBuckets().containsKey("one_tst")).isTrue();
+        assertThat(result.getBucket(proctor.getTestIndex().indexOf("one_tst"))).isEqualTo(oneResult.getTestBucket());
+        assertThat(result.getBuckets().get("unknown_tst")).isNull();
+        verify(oneChooser, times(1)).choose(isNull(), any(VariableMapper.class), isNull());
+        verify(twoChooser, times(0)).choose(isNull(), any(VariableMapper.class), isNull());
+
+        // iterating needs all tests
+        assertThat(result.getBuckets()).isEqualTo(ImmutableMap.of(
+                "one_tst", oneResult.getTestBucket(),
+                "two_tst", twoResult.getTestBucket()));
+        assertThat(result.getAllocations()).isEqualTo(ImmutableMap.of(
+                "one_tst", oneResult.getAllocation(),
+                "two_tst", twoResult.getAllocation()));
+        assertThat(((LazyProctorResult) result).isFullyDetermined()).isTrue();
+        verify(oneChooser, times(1)).choose(isNull(), any(VariableMapper.class), isNull());
+        verify(twoChooser, times(1)).choose(isNull(), any(VariableMapper.class), isNull());
+    }
+
+    @Test
+    public void testDetermineTestGroupsLazilySameAsEager() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("three_tst", createStandardTest("${lang == 'fr'}", Collections.emptyMap()));
+        tests.put("four_tst", createStandardTest("${lang == 'fr'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+        final Map<String, Object> context = ImmutableMap.of("lang", "en");
+        final Map<String, Integer> forceGroups = ImmutableMap.of("three_tst", 1);
+
+        final ProctorResult eager = proctor.determineTestGroups(identifiers, context, forceGroups);
+        final ProctorResult lazy = proctor.determineTestGroupsLazily(identifiers, context, forceGroups);
+        assertThat(lazy.getBuckets().get("three_tst")).isEqualTo(eager.getBuckets().get("three_tst"));
+        assertThat(lazy.getBuckets().get("four_tst")).isNull();
+
+        assertThat(lazy.getBuckets().toString()).isEqualTo(eager.getBuckets().toString());
+        assertThat(lazy.getAllocations().toString()).isEqualTo(eager.getAllocations().toString());
+        assertThat(lazy.getBuckets().keySet()).containsExactly("one_tst", "three_tst", "two_tst");
+        assertThat(lazy.getMatrixVersion()).isEqualTo(eager.getMatrixVersion());
+        assertThat(lazy.getTestDefinitions()).isEqualTo(eager.getTestDefinitions());
+        // the shared rule is evaluated once per request, in either mode
+        assertThat(proctor.getSharedRuleEvaluations()).isEqualTo(4);
+        assertThat(proctor.getSharedRuleHits()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDetermineTestGroupsBatchSameAsSingle() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createTestWithTwoBuckets(TestType.ANONYMOUS_USER, "${lang == 'en'}"));
+        tests.put("two_tst", createTestWithTwoBuckets(TestType.AUTHENTICATED_USER, null));
+        tests.put("three_tst", createTestWithTwoBuckets(TestType.ANONYMOUS_USER, "${lang == 'fr'}"));
+        tests.put("forced_tst", createTestWithTwoBuckets(TestType.ANONYMOUS_USER, "${lang == 'fr'}"));
+        tests.put("random_tst", createTestWithTwoBuckets(TestType.RANDOM, null));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+        matrix.getAudit().setVersion("1");
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final List<Identifiers> identifiers = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            // only some identifiers have an account, and random tests are disabled for some
+            final Map<TestType, String> typedIdentifiers = (i % 3 == 0)
+                    ? ImmutableMap.of(TestType.ANONYMOUS_USER, "user" + i, TestType.AUTHENTICATED_USER, "account" + i)
+                    : ImmutableMap.of(TestType.ANONYMOUS_USER, "user" + i);
+            identifiers.add(new Identifiers(typedIdentifiers, i % 2 == 0));
+        }
+        final Map<String, Object> context = ImmutableMap.of("lang", "en");
+        final Map<String, Integer> forceGroups = ImmutableMap.of("forced_tst", 1);
+
+        final BatchProctorResult sequential = proctor.determineTestGroupsBatch(identifiers, context, forceGroups);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final BatchProctorResult parallel;
+        try {
+            parallel = proctor.determineTestGroupsBatch(identifiers, context, forceGroups, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        final TestIndex testIndex = proctor.getTestIndex();
+        final int randomIndex = testIndex.indexOf("random_tst");
+        for (final BatchProctorResult batch : Arrays.asList(sequential, parallel)) {
+            assertThat(batch.getIdentifierCount()).isEqualTo(identifiers.size());
+            assertThat(batch.getTestIndex()).isSameAs(testIndex);
+            assertThat(batch.getMatrixVersion()).isEqualTo("1");
+            for (int i = 0; i < identifiers.size(); i++) {
+                final ProctorResult single = proctor.determineTestGroups(identifiers.get(i), context, forceGroups);
+                final ProctorResult result = batch.getResult(i);
+                // random buckets are drawn independently, only whether random tests apply is the same
+                assertThat(result.getBuckets().keySet()).isEqualTo(single.getBuckets().keySet());
+                assertThat(result.getBuckets().get("random_tst") != null).isEqualTo(identifiers.get(i).isRandomEnabled());
+                for (int test = 0; test < testIndex.size(); test++) {
+                    if (test == randomIndex) {
+                        continue;
+                    }
+                    assertThat(batch.getBucket(test, i)).isEqualTo(single.getBucket(test));
+                    assertThat(batch.getAllocation(test, i)).isEqualTo(single.getAllocation(test));
+                    assertThat(batch.getBucketValue(test, i, -99))
+                            .isEqualTo((single.getBucket(test) == null) ? -99 : single.getBucket(test).getValue());
+                }
+            }
+        }
+        // the forced bucket has no allocation, a test whose rule does not match has no bucket
+        assertThat(sequential.getBucket(testIndex.indexOf("forced_tst"), 1).getValue()).isEqualTo(1);
+        assertThat(sequential.getAllocation(testIndex.indexOf("forced_tst"), 1)).isNull();
+        assertThat(sequential.getBucket(testIndex.indexOf("three_tst"), 1)).isNull();
+        // identifiers are hashed to both buckets
+        final Set<Integer> values = Sets.newHashSet();
+        for (int i = 0; i < identifiers.size(); i++) {
+            values.add(sequential.getBucketValue(testIndex.indexOf("one_tst"), i, -99));
+        }
+        assertThat(values).containsOnly(0, 1);
+    }
+
+    @Test
+    public void testDetermineTestGroupsBatchEvaluatesRulesOncePerBatch() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final List<Identifiers> identifiers = Arrays.asList(
+                Identifiers.of(TestType.ANONYMOUS_USER, "user1"),
+                Identifiers.of(TestType.ANONYMOUS_USER, "user2"),
+                Identifiers.of(TestType.ANONYMOUS_USER, "user3"));
+        final BatchProctorResult result = proctor.determineTestGroupsBatch(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        assertThat(result.getBucket(0, 2)).isNotNull();
+        // the shared rule is evaluated once for all identifiers
+        assertThat(proctor.getSharedRuleEvaluations()).isEqualTo(1);
+        assertThat(proctor.getSharedRuleHits()).isEqualTo(1);
+
+        // a view only determines its tests
+        final BatchProctorResult viewResult = proctor.createView(Collections.singleton("two_tst"))
+                .determineTestGroupsBatch(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap(), null);
+        assertThat(viewResult.getBucket(0, 0)).isNull();
+        assertThat(viewResult.getBucket(1, 0)).isEqualTo(result.getBucket(1, 0));
+
+        // an empty batch determines nothing
+        assertThat(proctor.determineTestGroupsBatch(Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap())
+                .getIdentifierCount()).isZero();
+    }
+
+    @Test
+    public void testDetermineTestGroupsDoesNotShareRulesOfDifferentFunctions() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("starts_tst", createStandardTest("${fn:startsWith(url, '/jobs')}", Collections.emptyMap()));
+        tests.put("ends_tst", createStandardTest("${fn:endsWith(url, '/jobs')}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        for (final RuleEngine ruleEngine : RuleEngine.values()) {
+            final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, ruleEngine);
+            final ProctorResult result = proctor.determineTestGroups(
+                    Identifiers.of(TestType.ANONYMOUS_USER, "user"),
+                    ImmutableMap.of("url", "/jobs/search"),
+                    Collections.emptyMap());
+            assertThat(result.getBuckets().keySet()).as(ruleEngine.name()).containsExactly("starts_tst");
+        }
+    }
+
+    @Test
+    public void testConstructWithCompiledRules() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${proctor:contains(LANGS, lang)}", ImmutableMap.of("LANGS", Arrays.asList("en", "fr"))));
+        tests.put("three_tst", createStandardTest("${fn:startsWith(lang, 'f') || country == 'US'}", Collections.emptyMap()));
+        tests.put("four_tst", createStandardTest("${unknown == 'x'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+
+        final Proctor elProctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, RuleEngine.EL);
+        final Proctor compiledProctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, RuleEngine.COMPILED);
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+        for (final Map<String, Object> context : Arrays.<Map<String, Object>>asList(
+                ImmutableMap.of("lang", "en", "country", "US"),
+                ImmutableMap.of("lang", "fr", "country", "CA"),
+                ImmutableMap.of("lang", "de", "country", "DE")
+        )) {
+            final ProctorResult elResult = elProctor.determineTestGroups(identifiers, context, Collections.emptyMap());
+            final ProctorResult compiledResult = compiledProctor.determineTestGroups(identifiers, context, Collections.emptyMap());
+            assertThat(compiledResult.getBuckets()).as(context.toString()).isEqualTo(elResult.getBuckets());
+            assertThat(compiledResult.getAllocations()).as(context.toString()).isEqualTo(elResult.getAllocations());
+        }
+    }
+
+    @Test
+    public void testConstructReusesUnchangedChoosers() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${country == 'US'}", Collections.emptyMap()));
+        tests.put("removed_tst", createStandardTest("${country == 'CA'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+        final Proctor previous = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        assertEquals(0, previous.getReusedChooserCount());
+
+        final Map<String, ConsumableTestDefinition> newTests = Maps.newLinkedHashMap();
+        // equal but not the same definition
+        newTests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        newTests.put("two_tst", createStandardTest("${country == 'FR'}", Collections.emptyMap()));
+        newTests.put("three_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        newTests.put("four_tst", createStandardTest("${lang == 'fr'}", Collections.emptyMap()));
+        final TestMatrixArtifact newMatrix = new TestMatrixArtifact();
+        newMatrix.setTests(newTests);
+        newMatrix.setAudit(new Audit());
+        final Proctor proctor = Proctor.construct(newMatrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, RuleEngine.EL, previous);
+        assertEquals(1, proctor.getReusedChooserCount());
+
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+        for (final String lang : new String[] { "en", "fr" }) {
+            final Map<String, Object> context = ImmutableMap.of("lang", lang, "country", "FR");
+            final ProctorResult result = proctor.determineTestGroups(identifiers, context, Collections.emptyMap());
+            final ProctorResult expected = Proctor.construct(newMatrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER)
+                    .determineTestGroups(identifiers, context, Collections.emptyMap());
+            assertThat(result.getBuckets()).as(lang).isEqualTo(expected.getBuckets());
+            assertThat(result.getBuckets().keySet()).as(lang).contains("two_tst").doesNotContain("removed_tst");
+        }
+
+        // choosers are not reused if constructed differently
+        assertEquals(0, Proctor.construct(newMatrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, RuleEngine.COMPILED, proctor)
+                .getReusedChooserCount());
+        // versions must match
+        newTests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        newTests.get("one_tst").setVersion("2");
+        final TestMatrixArtifact newVersionMatrix = new TestMatrixArtifact();
+        newVersionMatrix.setTests(newTests);
+        newVersionMatrix.setAudit(new Audit());
+        assertEquals(3, Proctor.construct(newVersionMatrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER, RuleEngine.EL, proctor)
+                .getReusedChooserCount());
+    }
+
+    @Test
+    public void testDetailedMetrics() {
+        final Map<String, ConsumableTestDefinition> tests = Maps.newLinkedHashMap();
+        tests.put("one_tst", createStandardTest("${lang == 'en'}", Collections.emptyMap()));
+        tests.put("two_tst", createStandardTest("${unknown == 'x'}", Collections.emptyMap()));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(tests);
+        matrix.setAudit(new Audit());
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.FUNCTION_MAPPER);
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "user");
+
+        // disabled by default
+        proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        assertThat(proctor.getDetailedMetrics()).isEmpty();
+
+        proctor.enableDetailedMetrics(1);
+        proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "fr"), Collections.emptyMap());
+        proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "fr"), ImmutableMap.of("one_tst", 1));
+        proctor.determineTestGroups(Identifiers.of(TestType.EMAIL_ADDRESS, "user@example.com"), ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        proctor.determineTestGroupsLazily(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap()).getBuckets().get("one_tst");
+
+        final Map<String, TestEvaluationMetrics> metrics = proctor.getDetailedMetrics();
+        assertThat(metrics.keySet()).containsExactly("one_tst", "two_tst");
+
+        final TestEvaluationMetrics one = metrics.get("one_tst");
+        assertEquals(3, one.getEvaluations());
+        assertEquals(0, one.getRuleFailures());
+        assertEquals(1, one.getMissingIdentifiers());
+        assertEquals(1, one.getForcedGroups());
+        assertEquals(1, one.getUnmatched());
+        assertEquals(ImmutableMap.of(1, 2L), one.getBucketCounts());
+        assertEquals(3, one.getLatencySamples());
+
+        // not determined by the lazy result
+        final TestEvaluationMetrics two = metrics.get("two_tst");
+        assertEquals(3, two.getEvaluations());
+        assertEquals(3, two.getRuleFailures());
+        assertEquals(1, two.getMissingIdentifiers());
+        assertEquals(0, two.getForcedGroups());
+        assertEquals(3, two.getUnmatched());
+        assertEquals(ImmutableMap.of(1, 0L), two.getBucketCounts());
+
+        proctor.disableDetailedMetrics();
+        proctor.determineTestGroups(identifiers, ImmutableMap.of("lang", "en"), Collections.emptyMap());
+        assertThat(proctor.getDetailedMetrics()).isEmpty();
+    }
+
+    private static ConsumableTestDefinition createStandardTest(final String rule, final Map<String, Object> constants) {
+        final ConsumableTestDefinition testDefinition = new ConsumableTestDefinition();
+        testDefinition.setTestType(TestType.ANONYMOUS_USER);
+        testDefinition.setConstants(constants);
+        testDefinition.setBuckets(Collections.singletonList(new TestBucket("active", 1, "")));
+        testDefinition.setAllocations(Collections.singletonList(new Allocation(rule, Collections.singletonList(new Range(1, 1.0)))));
+        return testDefinition;
+    }
+
+    private static ConsumableTestDefinition createTestWithTwoBuckets(final TestType testType, final String rule) {
+        final ConsumableTestDefinition testDefinition = new ConsumableTestDefinition();
+        testDefinition.setTestType(testType);
+        testDefinition.setConstants(Collections.emptyMap());
+        testDefinition.setBuckets(Arrays.asList(new TestBucket("control", 0, ""), new TestBucket("active", 1, "")));
+        testDefinition.setAllocations(Collections.singletonList(new Allocation(rule, Arrays.asList(new Range(0, 0.5), new Range(1, 0.5)))));
+        return testDefinition;
     }
 
     private static TestMatrixArtifact createTestMatrixWithOneRandomTest(final String testName) {
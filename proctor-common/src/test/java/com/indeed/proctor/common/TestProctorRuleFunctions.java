@@ -1,11 +1,16 @@
 package com.indeed.proctor.common;
 
+import com.indeed.util.core.ReleaseVersion;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.regex.PatternSyntaxException;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestProctorRuleFunctions {
@@ -24,4 +29,25 @@ public class TestProctorRuleFunctions {
         assertFalse(ProctorRuleFunctions.contains(Arrays.asList(1, 2, 3), null));
         assertFalse(ProctorRuleFunctions.contains(Collections.emptyList(), 1));
     }
+
+    @Test
+    public void testMatches() {
+        assertTrue(ProctorRuleFunctions.matches("#aE3FB3", "^#[0-9a-fA-F]{3,6}$"));
+        assertFalse(ProctorRuleFunctions.matches("#00", "^#[0-9a-fA-F]{3,6}$"));
+        // whole value must match, like String.matches
+        assertFalse(ProctorRuleFunctions.matches("abc", "b"));
+        assertSame(RuleFunctionCaches.getPattern("^#[0-9a-fA-F]{3,6}$"), RuleFunctionCaches.getPattern("^#[0-9a-fA-F]{3,6}$"));
+        assertThatThrownBy(() -> ProctorRuleFunctions.matches("abc", "[")).isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> ProctorRuleFunctions.matches("abc", null)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void testVersion() {
+        assertEquals(ReleaseVersion.fromString("1.2.3.4"), ProctorRuleFunctions.version("1.2.3.4"));
+        assertSame(ProctorRuleFunctions.version("1.2.x"), ProctorRuleFunctions.version("1.2.x"));
+        assertTrue(ProctorRuleFunctions.versionInRange(ReleaseVersion.fromString("1.5.0.0"), "1.2.x", "2.0.0.0"));
+        assertFalse(ProctorRuleFunctions.versionInRange(ReleaseVersion.fromString("2.0.0.0"), "1.2.x", "2.0.0.0"));
+        assertThatThrownBy(() -> ProctorRuleFunctions.versionInRange(ReleaseVersion.fromString("1.5.0.0"), "1.2.x", "2.x"))
+                .isInstanceOf(IllegalStateException.class);
+    }
 }
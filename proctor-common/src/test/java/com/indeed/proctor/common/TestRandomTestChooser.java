@@ -8,6 +8,7 @@ import com.indeed.proctor.common.model.TestBucket;
 import org.apache.el.ExpressionFactoryImpl;
 import org.junit.Test;
 
+import javax.annotation.Nullable;
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
 import java.util.Collections;
@@ -15,8 +16,10 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestRandomTestChooser {
     @Test
@@ -87,7 +90,66 @@ public class TestRandomTestChooser {
         assertTrue(found[2] < 400);
     }
 
+    @Test
+    public void testSeededChoicesAreReproducible() {
+        final List<Range> ranges = Lists.newArrayList(new Range(0, 0.25), new Range(1, 0.25), new Range(2, 0.5));
+        final List<TestBucket> buckets = Lists.newArrayList(new TestBucket("inactive", 0, "zoot", null), new TestBucket("control", 1, "zoot", null), new TestBucket("test", 2, "zoot", null));
+
+        final RandomTestChooser first = initializeRandomTestChooser(ranges, buckets, 42L);
+        final RandomTestChooser second = initializeRandomTestChooser(ranges, buckets, 42L);
+        final RandomTestChooser other = initializeRandomTestChooser(ranges, buckets, 43L);
+
+        final Map<String, Object> values = Collections.emptyMap();
+        final List<Integer> firstValues = Lists.newArrayList();
+        final List<Integer> secondValues = Lists.newArrayList();
+        final List<Integer> otherValues = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            firstValues.add(first.choose(null, values).getTestBucket().getValue());
+            secondValues.add(second.choose(null, values).getTestBucket().getValue());
+            otherValues.add(other.choose(null, values).getTestBucket().getValue());
+        }
+        assertEquals(firstValues, secondValues);
+        assertNotEquals(firstValues, otherValues);
+    }
+
+    @Test
+    public void testEmptyRangesNeverChosen() {
+        final List<Range> ranges = Lists.newArrayList(new Range(-1, 0.0), new Range(0, 0.5), new Range(2, 0.0), new Range(1, 0.5));
+        final List<TestBucket> buckets = Lists.newArrayList(new TestBucket("inactive", -1, "zoot", null), new TestBucket("control", 0, "zoot", null), new TestBucket("test", 1, "zoot", null), new TestBucket("test2", 2, "zoot", null));
+
+        final RandomTestChooser rtc = initializeRandomTestChooser(ranges, buckets);
+
+        final int[] found = { 0, 0, 0 };
+        final Map<String, Object> values = Collections.emptyMap();
+        for (int i = 0; i < 10000; i++) {
+            final int value = rtc.choose(null, values).getTestBucket().getValue();
+            assertTrue("unexpected bucket " + value, value == 0 || value == 1);
+            found[value]++;
+        }
+        assertTrue(found[0] > 4500);
+        assertTrue(found[1] > 4500);
+    }
+
+    @Test
+    public void testRangeWithoutBucketFailsPerChoice() {
+        // unverified definition, constructing the chooser must not fail
+        final List<Range> ranges = Lists.newArrayList(new Range(0, 0.0), new Range(5, 1.0));
+        final List<TestBucket> buckets = Lists.newArrayList(new TestBucket("control", 0, "zoot", null));
+
+        final RandomTestChooser rtc = initializeRandomTestChooser(ranges, buckets);
+        try {
+            rtc.choose(null, Collections.emptyMap());
+            fail("expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("Unable to find a bucket with value 5", e.getMessage());
+        }
+    }
+
     static RandomTestChooser initializeRandomTestChooser(final List<Range> ranges, final List<TestBucket> buckets) {
+        return initializeRandomTestChooser(ranges, buckets, null);
+    }
+
+    static RandomTestChooser initializeRandomTestChooser(final List<Range> ranges, final List<TestBucket> buckets, @Nullable final Long seed) {
         final ExpressionFactory expressionFactory = new ExpressionFactoryImpl();
 
         final FunctionMapper functionMapper = RuleEvaluator.FUNCTION_MAPPER;
@@ -101,7 +163,9 @@ public class TestRandomTestChooser {
         allocations.add(new Allocation("${}", ranges, "#A1"));
         testDefinition.setAllocations(allocations);
 
-        final RandomTestChooser rtc = new RandomTestChooser(expressionFactory, functionMapper, "testName", testDefinition);
-        return rtc;
+        if (seed == null) {
+            return new RandomTestChooser(expressionFactory, functionMapper, "testName", testDefinition);
+        }
+        return new RandomTestChooser(seed, expressionFactory, functionMapper, "testName", testDefinition);
     }
 }
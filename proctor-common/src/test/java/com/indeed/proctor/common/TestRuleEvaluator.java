@@ -7,12 +7,15 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.el.ELException;
+import javax.el.PropertyNotFoundException;
+import javax.el.ValueExpression;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -109,6 +112,64 @@ public class TestRuleEvaluator {
         }
     }
 
+    @Test
+    public void testCompiledRuleEvaluatedAgainstDifferentContexts() {
+        final ValueExpression ve = ruleEvaluator.compileBooleanRule("${proctor:contains(LANGUAGES_ENABLED, lang)}");
+        assertTrue(ruleEvaluator.evaluateBooleanExpression(ve, singletonMap("lang", "en")));
+        assertTrue(ruleEvaluator.evaluateBooleanExpression(ve, singletonMap("lang", "de")));
+        assertFalse(ruleEvaluator.evaluateBooleanExpression(ve, singletonMap("lang", "ja")));
+        // context variables do not override test constants
+        assertFalse(ruleEvaluator.evaluateBooleanExpression(ve, ImmutableMap.of("lang", "ja", "LANGUAGES_ENABLED", singletonList("ja"))));
+        assertThatThrownBy(() -> ruleEvaluator.evaluateBooleanExpression(ve, emptyMap()))
+                .isInstanceOf(ELException.class)
+                .hasRootCauseInstanceOf(PropertyNotFoundException.class);
+    }
+
+    @Test
+    public void testCompileTrivialRules() {
+        for (final String rule : new String[] { null, "", "${}", "${true}", "${ TRUE }" }) {
+            assertThat(ruleEvaluator.compileBooleanRule(rule).isLiteralText()).isTrue();
+            assertTrue("rule '" + rule + "' should be true", ruleEvaluator.evaluateBooleanExpression(ruleEvaluator.compileBooleanRule(rule), emptyMap()));
+        }
+        for (final String rule : new String[] { "${false}", "true", " ${true} " }) {
+            assertThat(ruleEvaluator.compileBooleanRule(rule).isLiteralText()).isTrue();
+            assertFalse("rule '" + rule + "' should be false", ruleEvaluator.evaluateBooleanExpression(ruleEvaluator.compileBooleanRule(rule), emptyMap()));
+        }
+    }
+
+    @Test
+    public void testCompileInvalidRule() {
+        assertThatThrownBy(() -> ruleEvaluator.compileBooleanRule("${lang == }"))
+                .isInstanceOf(ELException.class);
+        assertThatThrownBy(() -> ruleEvaluator.compileBooleanRule("${proctor:unknownFunction(lang)}"))
+                .isInstanceOf(ELException.class);
+    }
+
+    @Test
+    public void testClassifyRules() {
+        for (final String rule : new String[] { null, "", "${}", "${true}" }) {
+            assertThat(ruleEvaluator.classifyBooleanRule(ruleEvaluator.compileBooleanRule(rule)))
+                    .as(String.valueOf(rule)).isEqualTo(RuleEvaluator.RuleKind.ALWAYS_TRUE);
+        }
+        for (final String rule : new String[] { "${false}", "true" }) {
+            assertThat(ruleEvaluator.classifyBooleanRule(ruleEvaluator.compileBooleanRule(rule)))
+                    .as(String.valueOf(rule)).isEqualTo(RuleEvaluator.RuleKind.ALWAYS_FALSE);
+        }
+        for (final String rule : new String[] { "${1 > 0}", "${LANGUAGES_ENABLED.size() > 0}", "${not empty LANGUAGES_ENABLED && 'a' == 'b'}" }) {
+            assertThat(ruleEvaluator.classifyBooleanRule(ruleEvaluator.compileBooleanRule(rule)))
+                    .as(String.valueOf(rule)).isEqualTo(RuleEvaluator.RuleKind.CONSTANT_ONLY);
+        }
+        for (final String rule : new String[] {
+                "${lang == 'en'}",
+                "${LANGUAGES_ENABLED.contains(lang)}",
+                "${proctor:contains(LANGUAGES_ENABLED, 'en')}",
+                "${proctor:now() > 0}"
+        }) {
+            assertThat(ruleEvaluator.classifyBooleanRule(ruleEvaluator.compileBooleanRule(rule)))
+                    .as(String.valueOf(rule)).isEqualTo(RuleEvaluator.RuleKind.CONTEXT_DEPENDENT);
+        }
+    }
+
     public static class Temp {
         public String getY() {
             return "barY";
@@ -0,0 +1,134 @@
+package com.indeed.proctor.common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.el.PropertyNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestRuleFailureLog {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final List<List<RuleFailureReporter.RuleFailure>> reports = new ArrayList<>();
+    private RuleFailureLog log;
+
+    @Before
+    public void setUp() {
+        log = new RuleFailureLog(now::get);
+        log.setInterval(10, TimeUnit.SECONDS);
+        log.addReporter(reports::add);
+    }
+
+    @Test
+    public void testAggregatesFailuresPerInterval() {
+        // first failure is reported immediately
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(1);
+        assertThat(reports.get(0)).hasSize(1);
+        final RuleFailureReporter.RuleFailure first = reports.get(0).get(0);
+        assertThat(first.getTestName()).isEqualTo("one_tst");
+        assertThat(first.getRule()).isEqualTo("${missing}");
+        assertThat(first.getExceptionType()).isEqualTo(PropertyNotFoundException.class);
+        assertThat(first.getCount()).isEqualTo(1);
+
+        // later failures within the interval are only counted
+        for (int i = 0; i < 5; i++) {
+            log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        }
+        log.record(failure("one_tst", "${missing}", new IllegalStateException("other")));
+        log.record(failure("two_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(1);
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        log.record(failure("two_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(2);
+        assertThat(reports.get(1))
+                .extracting(f -> f.getTestName() + " " + f.getExceptionType().getSimpleName() + " " + f.getCount())
+                .containsExactlyInAnyOrder(
+                        "one_tst PropertyNotFoundException 5",
+                        "one_tst IllegalStateException 1",
+                        "two_tst PropertyNotFoundException 2");
+    }
+
+    @Test
+    public void testFlush() {
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(1);
+
+        log.flush();
+        assertThat(reports).hasSize(2);
+        assertThat(reports.get(1)).extracting(RuleFailureReporter.RuleFailure::getCount).containsExactly(1L);
+
+        // nothing to report
+        log.flush();
+        assertThat(reports).hasSize(2);
+    }
+
+    @Test
+    public void testFlushIfDue() {
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(1);
+
+        // failures stopped, the last one is logged once the interval has passed
+        log.flushIfDue();
+        assertThat(reports).hasSize(1);
+        now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        log.flushIfDue();
+        assertThat(reports).hasSize(2);
+        assertThat(reports.get(1)).extracting(RuleFailureReporter.RuleFailure::getCount).containsExactly(1L);
+
+        // nothing to report, the next failure is logged immediately
+        now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        log.flushIfDue();
+        assertThat(reports).hasSize(2);
+        log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+        assertThat(reports).hasSize(3);
+    }
+
+    @Test
+    public void testFlushConcurrentlyWithFailures() throws Exception {
+        final int threadCount = 4;
+        final int failuresPerThread = 20000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < failuresPerThread; i++) {
+                    log.record(failure("one_tst", "${missing}", new PropertyNotFoundException("missing")));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        // flushes forget counters without failures since the last flush while failures are counted
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            log.flush();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        log.flush();
+
+        // no failure is counted to a forgotten counter
+        assertThat(reports.stream().flatMap(List::stream).mapToLong(RuleFailureReporter.RuleFailure::getCount).sum())
+                .isEqualTo((long) threadCount * failuresPerThread);
+    }
+
+    @Test
+    public void testMessageIsFormattedLazily() {
+        final InvalidRuleException failure = failure("one_tst", "${missing}", new PropertyNotFoundException("Cannot find property missing"));
+        assertThat(failure.getStackTrace()).isEmpty();
+        assertThat(failure.getMessage()).isEqualTo(
+                "Error evaluating rule '${missing}' for test 'one_tst': 'Cannot find property missing'. Failing evaluation and continuing.");
+        assertThat(new InvalidRuleException("message").getMessage()).isEqualTo("message");
+    }
+
+    private static InvalidRuleException failure(final String testName, final String rule, final RuntimeException cause) {
+        return new InvalidRuleException(cause, rule, testName);
+    }
+}
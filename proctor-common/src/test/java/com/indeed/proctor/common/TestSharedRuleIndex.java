@@ -0,0 +1,50 @@
+package com.indeed.proctor.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSharedRuleIndex {
+
+    @Test
+    public void testNormalize() {
+        final String normalized = SharedRuleIndex.normalize("${lang == 'en' && country == 'US'}");
+        assertThat(SharedRuleIndex.normalize("${  lang=='en'   &&\tcountry == 'US' }")).isEqualTo(normalized);
+        assertThat(SharedRuleIndex.normalize("${lang eq 'en' and country eq 'US'}")).isEqualTo(normalized);
+        assertThat(SharedRuleIndex.normalize("${lang == 'en ' && country == 'US'}")).isNotEqualTo(normalized);
+        assertThat(SharedRuleIndex.normalize("${country == 'US' && lang == 'en'}")).isNotEqualTo(normalized);
+        assertThat(SharedRuleIndex.normalize("${lang == 'en' || country == 'US'}")).isNotEqualTo(normalized);
+        // functions with the same arguments are distinct by prefix and name
+        final String startsWith = SharedRuleIndex.normalize("${fn:startsWith(url, '/jobs')}");
+        assertThat(SharedRuleIndex.normalize("${fn:startsWith( url,'/jobs' )}")).isEqualTo(startsWith);
+        assertThat(SharedRuleIndex.normalize("${fn:endsWith(url, '/jobs')}")).isNotEqualTo(startsWith);
+        assertThat(SharedRuleIndex.normalize("${proctor:contains(A, b)}")).isNotEqualTo(SharedRuleIndex.normalize("${fn:contains(A, b)}"));
+        assertThat(SharedRuleIndex.normalize("${proctor:contains(A, b)}")).isNotEqualTo(SharedRuleIndex.normalize("${proctor:matches(A, b)}"));
+        // unparsable rules are kept as is
+        assertThat(SharedRuleIndex.normalize("${lang == }")).isEqualTo("${lang == }");
+    }
+
+    @Test
+    public void testRegister() {
+        final SharedRuleIndex index = new SharedRuleIndex();
+        final int lang = index.register("${lang == 'en'}", Collections.emptyMap());
+        assertThat(index.register("${ lang == 'en' }", Collections.emptyMap())).isEqualTo(lang);
+        assertThat(index.register("${lang == 'en'}", ImmutableMap.of("OTHER", 1))).isEqualTo(lang);
+        assertThat(index.register("${lang == 'fr'}", Collections.emptyMap())).isNotEqualTo(lang);
+
+        final int constantEn = index.register("${lang == LANG}", ImmutableMap.of("LANG", "en"));
+        assertThat(index.register("${lang == LANG}", ImmutableMap.of("LANG", "en", "OTHER", 1))).isEqualTo(constantEn);
+        assertThat(index.register("${lang == LANG}", ImmutableMap.of("LANG", "fr"))).isNotEqualTo(constantEn);
+        // LANG from the context
+        assertThat(index.register("${lang == LANG}", Collections.emptyMap())).isNotEqualTo(constantEn);
+
+        final int startsWith = index.register("${fn:startsWith(url, '/jobs')}", Collections.emptyMap());
+        assertThat(index.register("${fn:endsWith(url, '/jobs')}", Collections.emptyMap())).isNotEqualTo(startsWith);
+        assertThat(index.register("${fn:startsWith(url, '/jobs')}", Collections.emptyMap())).isEqualTo(startsWith);
+
+        assertThat(index.size()).isEqualTo(7);
+    }
+}
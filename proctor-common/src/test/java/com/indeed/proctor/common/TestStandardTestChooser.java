@@ -1,6 +1,7 @@
 package com.indeed.proctor.common;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
@@ -14,10 +15,13 @@ import org.junit.Test;
 
 import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -170,9 +174,10 @@ public class TestStandardTestChooser {
         testDefinition.setBuckets(Collections.<TestBucket>emptyList());
 
         final RuleEvaluator ruleEvaluator = EasyMock.createMock(RuleEvaluator.class);
-        EasyMock.expect(ruleEvaluator.evaluateBooleanRule(
-                EasyMock.<String>anyObject(),
-                EasyMock.<Map<String,Object>>anyObject()
+        expectCompileBooleanRule(ruleEvaluator);
+        EasyMock.expect(ruleEvaluator.evaluateBooleanExpression(
+                EasyMock.<ValueExpression>anyObject(),
+                EasyMock.<VariableMapper>anyObject()
         ))
                 // throw an unexpected type of runtime exception
                 .andThrow(new RuntimeException() {})
@@ -197,6 +202,72 @@ public class TestStandardTestChooser {
         EasyMock.verify(ruleEvaluator);
     }
 
+    @Test
+    public void testUnparsableRuleFailsOnConstruction() {
+        final List<Allocation> allocations = Lists.newArrayList();
+        allocations.add(new Allocation("${country == }", RANGES_50_50, "#A1"));
+        allocations.add(new Allocation("", RANGES_100_0, "#B1"));
+        testDefinition.setAllocations(allocations);
+
+        assertThatThrownBy(this::newChooser)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("${country == }")
+                .hasMessageContaining(testName);
+    }
+
+    @Test
+    public void testCompiledRulesEvaluatedPerContext() {
+        final List<Allocation> allocations = Lists.newArrayList();
+        allocations.add(new Allocation("${country == 'US'}", RANGES_100_0, "#A1"));
+        allocations.add(new Allocation("${country == 'GB'}", RANGES_50_50, "#B1"));
+        testDefinition.setAllocations(allocations);
+        testDefinition.setRule("${lang == 'en'}");
+
+        final StandardTestChooser chooser = newChooser();
+        assertEquals("#A1", chooser.choose("1", ImmutableMap.of("lang", "en", "country", "US")).getAllocation().getId());
+        assertEquals("#B1", chooser.choose("1", ImmutableMap.of("lang", "en", "country", "GB")).getAllocation().getId());
+        assertNull(chooser.choose("1", ImmutableMap.of("lang", "en", "country", "JP")).getAllocation());
+        assertNull(chooser.choose("1", ImmutableMap.of("lang", "fr", "country", "US")).getAllocation());
+        // missing variable fails the rule evaluation
+        assertNull(chooser.choose("1", ImmutableMap.of("lang", "en")).getAllocation());
+    }
+
+    @Test
+    public void testKnownRuleOutcomesNotEvaluatedPerRequest() {
+        final List<Allocation> allocations = Lists.newArrayList();
+        allocations.add(new Allocation("${}", RANGES_100_0, "#A1"));
+        testDefinition.setAllocations(allocations);
+        testDefinition.setRule("${true}");
+
+        final RuleEvaluator ruleEvaluator = EasyMock.createMock(RuleEvaluator.class);
+        expectCompileBooleanRule(ruleEvaluator, RuleEvaluator.RuleKind.ALWAYS_TRUE);
+        // no call to evaluateBooleanExpression expected
+        EasyMock.replay(ruleEvaluator);
+
+        final StandardTestChooser chooser = new StandardTestChooser(new TestRangeSelector(ruleEvaluator, testName, testDefinition));
+        assertEquals("#A1", chooser.choose("1", Collections.<String, Object>emptyMap()).getAllocation().getId());
+
+        EasyMock.verify(ruleEvaluator);
+    }
+
+    @Test
+    public void testConstantRulesEvaluatedOnce() {
+        final List<Allocation> allocations = Lists.newArrayList();
+        allocations.add(new Allocation("${COUNTRIES.size() > 2}", RANGES_50_50, "#A1"));
+        allocations.add(new Allocation("${proctor:contains(COUNTRIES, 'US')}", RANGES_100_0, "#B1"));
+        testDefinition.setAllocations(allocations);
+        testDefinition.setRule("${ENABLED}");
+        testDefinition.setConstants(ImmutableMap.<String, Object>of(
+                "ENABLED", true,
+                "COUNTRIES", Lists.newArrayList("US", "GB")
+        ));
+
+        final StandardTestChooser chooser = newChooser();
+        // constants take precedence over the context
+        assertEquals("#B1", chooser.choose("1", ImmutableMap.<String, Object>of("ENABLED", false)).getAllocation().getId());
+        assertEquals("#B1", chooser.choose("1", Collections.<String, Object>emptyMap()).getAllocation().getId());
+    }
+
     @Test
     public void testDefaultAllocationWithNonEmptyRule_fallback() {
         final String testName = "test";
@@ -274,9 +345,10 @@ public class TestStandardTestChooser {
 
     private RuleEvaluator newRuleEvaluator(final boolean result) {
         final RuleEvaluator ruleEvaluator = EasyMock.createMock(RuleEvaluator.class);
-        EasyMock.expect(ruleEvaluator.evaluateBooleanRule(
-            EasyMock.<String>anyObject(),
-            EasyMock.<Map<String,Object>>anyObject()
+        expectCompileBooleanRule(ruleEvaluator);
+        EasyMock.expect(ruleEvaluator.evaluateBooleanExpression(
+            EasyMock.<ValueExpression>anyObject(),
+            EasyMock.<VariableMapper>anyObject()
         ))
             .andReturn(result)
             .anyTimes();
@@ -284,6 +356,19 @@ public class TestStandardTestChooser {
         return ruleEvaluator;
     }
 
+    private static void expectCompileBooleanRule(final RuleEvaluator ruleEvaluator) {
+        expectCompileBooleanRule(ruleEvaluator, RuleEvaluator.RuleKind.CONTEXT_DEPENDENT);
+    }
+
+    private static void expectCompileBooleanRule(final RuleEvaluator ruleEvaluator, final RuleEvaluator.RuleKind ruleKind) {
+        EasyMock.expect(ruleEvaluator.compileBooleanRule(EasyMock.<String>anyObject()))
+            .andReturn(RuleEvaluator.EXPRESSION_FACTORY.createValueExpression(Boolean.TRUE, boolean.class))
+            .anyTimes();
+        EasyMock.expect(ruleEvaluator.classifyBooleanRule(EasyMock.<ValueExpression>anyObject()))
+            .andReturn(ruleKind)
+            .anyTimes();
+    }
+
     private void exerciseChooser(final StandardTestChooser rtc) {
         final int num = 10000000;
 
@@ -0,0 +1,58 @@
+package com.indeed.proctor.common;
+
+import com.indeed.proctor.common.model.TestBucket;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestTestBucketIndex {
+
+    @Test
+    public void testDenseValues() {
+        final TestBucket inactive = new TestBucket("inactive", -1, "");
+        final TestBucket control = new TestBucket("control", 0, "");
+        final TestBucket test = new TestBucket("test", 2, "");
+        final TestBucketIndex index = new TestBucketIndex(Arrays.asList(test, inactive, control));
+        assertThat(index.get(-1)).isSameAs(inactive);
+        assertThat(index.get(0)).isSameAs(control);
+        assertThat(index.get(1)).isNull();
+        assertThat(index.get(2)).isSameAs(test);
+        assertThat(index.get(-2)).isNull();
+        assertThat(index.get(3)).isNull();
+        assertThat(index.get(Integer.MIN_VALUE)).isNull();
+        assertThat(index.get(Integer.MAX_VALUE)).isNull();
+    }
+
+    @Test
+    public void testSparseValues() {
+        final List<TestBucket> buckets = new ArrayList<>();
+        for (final int value : new int[]{Integer.MAX_VALUE, -1, 1000, Integer.MIN_VALUE, 3}) {
+            buckets.add(new TestBucket("bucket" + value, value, ""));
+        }
+        final TestBucketIndex index = new TestBucketIndex(buckets);
+        for (final TestBucket bucket : buckets) {
+            assertThat(index.get(bucket.getValue())).isSameAs(bucket);
+        }
+        assertThat(index.get(0)).isNull();
+        assertThat(index.get(999)).isNull();
+    }
+
+    @Test
+    public void testSameAsFirstBucketWithValue() {
+        final TestBucket first = new TestBucket("first", 1, "");
+        final TestBucket second = new TestBucket("second", 1, "");
+        assertThat(new TestBucketIndex(Arrays.asList(first, second)).get(1)).isSameAs(first);
+        assertThat(new TestBucketIndex(Arrays.asList(new TestBucket("sparse", 100, ""), first, second)).get(1)).isSameAs(first);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(new TestBucketIndex(Collections.emptyList()).get(0)).isNull();
+        assertThat(TestBucketIndex.EMPTY.get(-1)).isNull();
+    }
+}
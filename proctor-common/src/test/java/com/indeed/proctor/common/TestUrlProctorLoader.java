@@ -0,0 +1,105 @@
+package com.indeed.proctor.common;
+
+import com.google.common.io.Resources;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestUrlProctorLoader {
+
+    private HttpServer server;
+    private byte[] matrix;
+    private String etag = "\"v1\"";
+    private boolean gzip;
+    private final List<String> requestETags = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        matrix = Resources.toByteArray(getClass().getResource("example-test-matrix.json"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/matrix.json", this::handle);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        requestETags.add(ifNoneMatch);
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(ifNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        final boolean acceptsGzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (gzip && acceptsGzip) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = (gzip && acceptsGzip) ? new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody()) {
+            body.write(matrix);
+        }
+    }
+
+    private UrlProctorLoader createLoader() {
+        final UrlProctorLoader loader = new UrlProctorLoader(new ProctorSpecification(), createUrl());
+        loader.setConnectTimeout(5, TimeUnit.SECONDS);
+        loader.setReadTimeout(5, TimeUnit.SECONDS);
+        return loader;
+    }
+
+    private URL createUrl() {
+        try {
+            return new URL("http://localhost:" + server.getAddress().getPort() + "/matrix.json");
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testNotModified() {
+        final UrlProctorLoader loader = createLoader();
+        assertThat(loader.load()).isTrue();
+        final Proctor proctor = loader.get();
+        assertThat(proctor).isNotNull();
+        assertThat(loader.getLastAudit().getVersion()).isEqualTo("1524");
+
+        // unchanged, not parsed again
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.get()).isSameAs(proctor);
+        assertThat(requestETags).containsExactly(null, "\"v1\"");
+
+        // changed etag, same audit version
+        etag = "\"v2\"";
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.get()).isSameAs(proctor);
+        assertThat(loader.load()).isTrue();
+        assertThat(requestETags).containsExactly(null, "\"v1\"", "\"v1\"", "\"v2\"");
+    }
+
+    @Test
+    public void testGzip() {
+        gzip = true;
+        final UrlProctorLoader loader = createLoader();
+        assertThat(loader.load()).isTrue();
+        assertThat(loader.get()).isNotNull();
+        assertThat(loader.getLastAudit().getVersion()).isEqualTo("1524");
+    }
+}
@@ -0,0 +1,40 @@
+package com.indeed.proctor.common.el;
+
+import org.apache.el.ExpressionFactoryImpl;
+import org.junit.Test;
+
+import javax.el.ValueExpression;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestLazyReadOnlyVariableMapper {
+    @Test
+    public void testResolveVariable() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("lang", "en");
+        values.put("nothing", null);
+        final LazyReadOnlyVariableMapper variableMapper = new LazyReadOnlyVariableMapper(new ExpressionFactoryImpl(), values);
+
+        final ValueExpression lang = variableMapper.resolveVariable("lang");
+        assertThat(lang).isNotNull();
+        assertThat(lang.getValue(null)).isEqualTo("en");
+        // value expressions are created once per variable
+        assertThat(variableMapper.resolveVariable("lang")).isSameAs(lang);
+
+        final ValueExpression nothing = variableMapper.resolveVariable("nothing");
+        assertThat(nothing).isNotNull();
+        assertThat(nothing.getValue(null)).isNull();
+
+        assertThat(variableMapper.resolveVariable("country")).isNull();
+    }
+
+    @Test
+    public void testSetVariable() {
+        final LazyReadOnlyVariableMapper variableMapper = new LazyReadOnlyVariableMapper(new ExpressionFactoryImpl(), new HashMap<>());
+        assertThatThrownBy(() -> variableMapper.setVariable("lang", null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
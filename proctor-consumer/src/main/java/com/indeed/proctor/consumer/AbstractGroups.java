@@ -2,6 +2,8 @@ package com.indeed.proctor.consumer;
 
 import com.google.common.base.Strings;
 import com.indeed.proctor.common.ProctorResult;
+import com.indeed.proctor.common.TestIndex;
+import com.indeed.proctor.common.TestLoggingFragments;
 import com.indeed.proctor.common.model.Allocation;
 import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.Payload;
@@ -10,9 +12,9 @@ import org.apache.log4j.Logger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.AbstractMap;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +31,19 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractGroups {
     private static final Logger LOGGER = Logger.getLogger(AbstractGroups.class);
+    /**
+     * whether a subclass overrides getValue(), which logging of indexed results and lookups by slot would bypass
+     */
+    private static final ClassValue<Boolean> OVERRIDES_GET_VALUE = overridesMethod("getValue", String.class, int.class);
+    /**
+     * whether a subclass overrides isBucketActive(), which lookups by slot would bypass
+     */
+    private static final ClassValue<Boolean> OVERRIDES_IS_BUCKET_ACTIVE = overridesMethod("isBucketActive", String.class, int.class, int.class);
+    /**
+     * whether a subclass overrides overrideDeterminedBucketValue(), which is to be called on each lookup by slot
+     */
+    private static final ClassValue<Boolean> OVERRIDES_DETERMINED_BUCKET_VALUE =
+            overridesMethod("overrideDeterminedBucketValue", String.class, TestBucket.class);
     private final ProctorResult proctorResult;
 
     /**
@@ -117,6 +132,62 @@ public abstract class AbstractGroups {
                 .orElse(defaultValue);
     }
 
+    /**
+     * Same as {@link #isBucketActive(String, int, int)} for the test at the given slot, see {@link #getValue(TestSlots, int[], int, int)}
+     */
+    // used from generated code
+    protected final boolean isBucketActive(
+            @Nonnull final TestSlots testSlots,
+            @Nonnull final int[] slotValues,
+            final int slot,
+            final int value,
+            final int defaultValue
+    ) {
+        if (OVERRIDES_IS_BUCKET_ACTIVE.get(getClass())) {
+            return isBucketActive(testSlots.getTestName(slot), value, defaultValue);
+        }
+        return value == getValue(testSlots, slotValues, slot, defaultValue);
+    }
+
+    /**
+     * Same as {@link #getValue(String, int)} for the test at the given slot, looking up the determined bucket by index.
+     * The value of the active bucket is resolved on first access and cached in slotValues, an array created by
+     * {@link TestSlots#newValues()} for this instance, so that later calls only read the array.
+     * Resolved on first access rather than on construction, so that lazily determined results only determine the tests that are used.
+     * Not cached if a subclass overrides overrideDeterminedBucketValue(), which is then called on each lookup as for lookups by name.
+     */
+    // used from generated code
+    protected final int getValue(
+            @Nonnull final TestSlots testSlots,
+            @Nonnull final int[] slotValues,
+            final int slot,
+            final int defaultValue
+    ) {
+        if (OVERRIDES_GET_VALUE.get(getClass())) {
+            return getValue(testSlots.getTestName(slot), defaultValue);
+        }
+        if (OVERRIDES_DETERMINED_BUCKET_VALUE.get(getClass())) {
+            return getActiveBucket(testSlots, slot)
+                    .map(TestBucket::getValue)
+                    .orElse(defaultValue);
+        }
+        final int cached = slotValues[slot];
+        if (cached != TestSlots.UNRESOLVED) {
+            return (cached == TestSlots.ABSENT) ? defaultValue : cached;
+        }
+        final Optional<TestBucket> activeBucket = getActiveBucket(testSlots, slot);
+        if (!activeBucket.isPresent()) {
+            slotValues[slot] = TestSlots.ABSENT;
+            return defaultValue;
+        }
+        final int value = activeBucket.get().getValue();
+        // bucket values equal to a marker are not cached, but resolved on each call
+        if ((value != TestSlots.UNRESOLVED) && (value != TestSlots.ABSENT)) {
+            slotValues[slot] = value;
+        }
+        return value;
+    }
+
     /**
      * @return the bucket that has been determined by the current proctorResult, or override bucket if valid, or empty if testname not valid
      */
@@ -125,27 +196,47 @@ public abstract class AbstractGroups {
         // intentionally not allowing subclasses to override returning empty for testnames that do not exist in ProctorResult
         // the semantics of this class would become too confusing
         // if clients somehow need that, they should provide a proctorResult instance having additional testNames with buckets
-        final TestBucket bucket = proctorResult.getBuckets().get(testName);
+        return toActiveBucket(testName, proctorResult.getBuckets().get(testName));
+    }
+
+    /**
+     * Same as {@link #getActiveBucket(String)} for the test at the given slot, looking up the determined bucket
+     * by index rather than by name if the result has a test index
+     */
+    // intentionally final, other developers should only override overrideDeterminedBucketValue()
+    protected final Optional<TestBucket> getActiveBucket(@Nonnull final TestSlots testSlots, final int slot) {
+        final String testName = testSlots.getTestName(slot);
+        final TestIndex testIndex = proctorResult.getTestIndex();
+        if (testIndex == null) {
+            return getActiveBucket(testName);
+        }
+        final int index = testSlots.getTestIndex(testIndex, slot);
+        return toActiveBucket(testName, (index < 0) ? null : proctorResult.getBucket(index));
+    }
+
+    private Optional<TestBucket> toActiveBucket(final String testName, @Nullable final TestBucket bucket) {
         if (bucket == null) {
             return Optional.empty();
         }
         // allow users to select a different testbucket, if testname was valid
-        final int overrideBucketValue = overrideDeterminedBucketValue(testName, bucket);
+        return Optional.of(toOverrideBucket(testName, bucket, overrideDeterminedBucketValue(testName, bucket)));
+    }
+
+    /**
+     * @return the bucket of the definition with the override value, or the determined bucket if there is none
+     */
+    @Nonnull
+    private TestBucket toOverrideBucket(final String testName, @Nonnull final TestBucket bucket, final int overrideBucketValue) {
         if ((overrideBucketValue != bucket.getValue())) {
             // get bucket from definition with that override value from Definition
-            final Optional<TestBucket> overrideBucketOpt = Optional.ofNullable(proctorResult.getTestDefinitions().get(testName))
-                    .map(ConsumableTestDefinition::getBuckets)
-                    .orElse(Collections.emptyList())
-                    .stream()
-                    .filter(b -> b.getValue() == overrideBucketValue)
-                    .findFirst();
-            if (overrideBucketOpt.isPresent()) {
-                return overrideBucketOpt;
+            final TestBucket overrideBucket = getTestBucketWithValue(testName, overrideBucketValue);
+            if (overrideBucket != null) {
+                return overrideBucket;
             }
             LOGGER.warn("Overriding bucket value " + overrideBucketValue + " for test '" + testName
                     + "' does not match any bucket in test definition, using determined bucket value " + bucket.getValue());
         }
-        return Optional.of(bucket);
+        return bucket;
     }
 
     /**
@@ -196,8 +287,8 @@ public abstract class AbstractGroups {
     /**
      * Return the TestBucket, as defined in the current test matrix, for the test called testName with bucket value targetBucket.getValue().
      * Can return null if it can't find any such bucket.
-     * This does a linear search over the list of defined buckets.  There shouldn't be too many buckets in any test,
-     * so this should be fast enough.
+     * For results determined by a Proctor, buckets are looked up in the index of buckets by value of the Proctor,
+     * otherwise this does a linear search over the list of defined buckets.
      *
      * @param testName     test name
      * @param targetBucket target bucket
@@ -211,6 +302,12 @@ public abstract class AbstractGroups {
 
     @CheckForNull
     final TestBucket getTestBucketWithValue(final String testName, final int bucketValue) {
+        final TestIndex testIndex = proctorResult.getTestIndex();
+        final int index = (testIndex == null) ? -1 : testIndex.indexOf(testName);
+        if (index >= 0) {
+            // buckets by value precomputed by the Proctor from the same definitions
+            return testIndex.getBucketIndex(index).get(bucketValue);
+        }
         return Optional.ofNullable(proctorResult.getTestDefinitions())
                 .map(testDefinitions -> testDefinitions.get(testName))
                 .map(ConsumableTestDefinition::getBuckets)
@@ -314,12 +411,80 @@ public abstract class AbstractGroups {
      * appends an empty string or a x-separated, x-finalized list of groups
      */
     public void appendTestGroups(final StringBuilder sb, final char separator) {
+        final TestIndex testIndex = proctorResult.getTestIndex();
+        if ((testIndex != null) && !OVERRIDES_GET_VALUE.get(getClass())) {
+            appendIndexedTestGroups(sb, separator, testIndex);
+            return;
+        }
         final List<String> testNames = getLoggingTestNames();
         // log all tests without allocations first, in case logging string gets cut off
         appendTestGroupsWithoutAllocations(sb, separator, testNames);
         appendTestGroupsWithAllocations(sb, separator, testNames);
     }
 
+    /**
+     * Same as {@link #appendTestGroups(StringBuilder, char)} for a result with a test index,
+     * appending the groups precomputed by the Proctor instead of concatenating test names and bucket values.
+     * The value of each test is determined once, and the builder is sized for all groups before appending them.
+     */
+    private void appendIndexedTestGroups(final StringBuilder sb, final char separator, @Nonnull final TestIndex testIndex) {
+        final TestLoggingFragments fragments = testIndex.getLoggingFragments();
+        final int size = testIndex.size();
+        final char[][] groups = new char[size][];
+        final char[][] allocationGroups = new char[size][];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            final int value = getLoggingValue(testIndex, fragments, i);
+            if (value < 0) {
+                continue;
+            }
+            final char[] group = fragments.getGroup(i, value);
+            groups[i] = (group != null) ? group : (testIndex.getTestName(i) + value).toCharArray();
+            length += groups[i].length + 1;
+            // no allocation might exist for this testbucket
+            final Allocation allocation = proctorResult.getAllocation(i);
+            if ((allocation != null) && !Strings.isNullOrEmpty(allocation.getId())) {
+                final char[] allocationGroup = fragments.getAllocationGroup(i, allocation, value);
+                allocationGroups[i] = (allocationGroup != null)
+                        ? allocationGroup
+                        : (allocation.getId() + ALLOCATION_GROUP_SEPARATOR + testIndex.getTestName(i) + value).toCharArray();
+                length += allocationGroups[i].length + 1;
+            }
+        }
+        sb.ensureCapacity(sb.length() + length);
+        // log all tests without allocations first, in case logging string gets cut off
+        for (final char[] group : groups) {
+            if (group != null) {
+                sb.append(group).append(separator);
+            }
+        }
+        for (final char[] allocationGroup : allocationGroups) {
+            if (allocationGroup != null) {
+                sb.append(allocationGroup).append(separator);
+            }
+        }
+    }
+
+    /**
+     * @return value of the active bucket of the test at the index, or -1 if the test is not to be logged
+     */
+    private int getLoggingValue(@Nonnull final TestIndex testIndex, @Nonnull final TestLoggingFragments fragments, final int index) {
+        if (fragments.isSilent(index)) {
+            return -1;
+        }
+        final TestBucket bucket = proctorResult.getBucket(index);
+        if (bucket == null) {
+            return -1;
+        }
+        final String testName = testIndex.getTestName(index);
+        // same as getValue(testName, -1), without looking up the test by name in the common case of no override
+        final int overrideBucketValue = overrideDeterminedBucketValue(testName, bucket);
+        if (overrideBucketValue == bucket.getValue()) {
+            return bucket.getValue();
+        }
+        return toOverrideBucket(testName, bucket, overrideBucketValue).getValue();
+    }
+
     /**
      * Return test names for tests that are non-silent or doesn't have available definition,
      * and have a non-negative active bucket, in a stable sort.
@@ -457,4 +622,23 @@ public abstract class AbstractGroups {
         return proctorResult;
     }
 
+    /**
+     * @return whether subclasses declare the given method of this class, i.e. override it
+     */
+    private static ClassValue<Boolean> overridesMethod(final String name, final Class<?>... parameterTypes) {
+        return new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(final Class<?> type) {
+                for (Class<?> cls = type; cls != AbstractGroups.class; cls = cls.getSuperclass()) {
+                    try {
+                        cls.getDeclaredMethod(name, parameterTypes);
+                        return true;
+                    } catch (final NoSuchMethodException e) {
+                        // not overridden by this class
+                    }
+                }
+                return false;
+            }
+        };
+    }
 }
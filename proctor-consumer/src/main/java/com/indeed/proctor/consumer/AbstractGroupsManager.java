@@ -5,12 +5,17 @@ import com.google.common.base.Supplier;
 import com.indeed.proctor.common.Identifiers;
 import com.indeed.proctor.common.Proctor;
 import com.indeed.proctor.common.ProctorResult;
+import com.indeed.proctor.common.ProctorView;
 import com.indeed.proctor.common.model.Audit;
 import com.indeed.proctor.common.model.TestBucket;
 import com.indeed.proctor.common.model.TestType;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
 import java.util.Map;
 
 import static java.util.Collections.emptyMap;
@@ -21,8 +26,45 @@ import static java.util.Collections.emptyMap;
  */
 public abstract class AbstractGroupsManager implements ProctorContextDescriptor {
     private final Supplier<Proctor> proctorSource;
+    private final boolean lazyDetermination;
+    /**
+     * names of the tests to determine, null to determine all tests
+     */
+    @CheckForNull
+    private final Collection<String> testNameFilter;
+    /**
+     * view of the latest Proctor determining only the tests of the filter, created again when the Proctor is reloaded
+     */
+    @CheckForNull
+    private volatile ProctorView proctorView;
+
     protected AbstractGroupsManager(final Supplier<Proctor> proctorSource) {
+        this(proctorSource, false);
+    }
+
+    /**
+     * @param lazyDetermination if true, the bucket of a test is only determined when it is first used,
+     *                          see {@link Proctor#determineTestGroupsLazily(Identifiers, Map, Map)}
+     */
+    protected AbstractGroupsManager(final Supplier<Proctor> proctorSource, final boolean lazyDetermination) {
+        this(proctorSource, lazyDetermination, null);
+    }
+
+    /**
+     * @param lazyDetermination if true, the bucket of a test is only determined when it is first used,
+     *                          see {@link Proctor#determineTestGroupsLazily(Identifiers, Map, Map)}
+     * @param testNameFilter    if not null, only these tests are determined, e.g. to not determine dynamic tests,
+     *                          through a {@link ProctorView} created once per loaded Proctor.
+     *                          An empty filter determines no test, null determines all tests.
+     */
+    protected AbstractGroupsManager(
+            final Supplier<Proctor> proctorSource,
+            final boolean lazyDetermination,
+            @Nullable final Collection<String> testNameFilter
+    ) {
         this.proctorSource = proctorSource;
+        this.lazyDetermination = lazyDetermination;
+        this.testNameFilter = testNameFilter;
     }
 
     /**
@@ -70,9 +112,29 @@ public abstract class AbstractGroupsManager implements ProctorContextDescriptor
                     emptyMap()
             );
         }
+        if (testNameFilter != null) {
+            final ProctorView view = getProctorView(proctor, testNameFilter);
+            if (lazyDetermination) {
+                return view.determineTestGroupsLazily(identifiers, context, forcedGroups);
+            }
+            return view.determineTestGroups(identifiers, context, forcedGroups);
+        }
+        if (lazyDetermination) {
+            return proctor.determineTestGroupsLazily(identifiers, context, forcedGroups);
+        }
         return proctor.determineTestGroups(identifiers, context, forcedGroups);
     }
 
+    @Nonnull
+    private ProctorView getProctorView(@Nonnull final Proctor proctor, @Nonnull final Collection<String> testNameFilter) {
+        ProctorView view = proctorView;
+        if ((view == null) || (view.getProctor() != proctor)) {
+            view = proctor.createView(testNameFilter);
+            proctorView = view;
+        }
+        return view;
+    }
+
     protected abstract Map<String, TestBucket> getDefaultBucketValues();
 
     /**
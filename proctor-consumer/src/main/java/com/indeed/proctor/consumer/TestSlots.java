@@ -0,0 +1,77 @@
+package com.indeed.proctor.consumer;
+
+import com.indeed.proctor.common.TestIndex;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Names of the tests used by a groups class, each at a fixed slot, resolved to indexes of the {@link TestIndex}
+ * of results, so that groups can look up buckets by index instead of by name.
+ *
+ * Resolved indexes are cached for the latest test index, and only resolved again when results come from
+ * a different test index, i.e. after the test matrix was reloaded.
+ * Meant to be a constant of a generated groups class, thread-safe.
+ */
+public final class TestSlots {
+    /**
+     * marker of values by slot not resolved yet
+     */
+    static final int UNRESOLVED = Integer.MIN_VALUE;
+    /**
+     * marker of values by slot of tests without active bucket
+     */
+    static final int ABSENT = Integer.MIN_VALUE + 1;
+
+    @Nonnull
+    private final String[] testNames;
+    @Nonnull
+    private volatile ResolvedIndexes resolved;
+
+    public TestSlots(@Nonnull final String... testNames) {
+        this.testNames = testNames.clone();
+        this.resolved = new ResolvedIndexes(TestIndex.EMPTY, TestIndex.EMPTY.indexesOf(this.testNames));
+    }
+
+    public int size() {
+        return testNames.length;
+    }
+
+    @Nonnull
+    public String getTestName(final int slot) {
+        return testNames[slot];
+    }
+
+    /**
+     * @return a new array of values by slot, none resolved yet, to cache values of a groups instance,
+     * see {@link AbstractGroups#getValue(TestSlots, int[], int, int)}
+     */
+    @Nonnull
+    public int[] newValues() {
+        final int[] values = new int[testNames.length];
+        Arrays.fill(values, UNRESOLVED);
+        return values;
+    }
+
+    /**
+     * @return the index of the test at the given slot in the given test index, or -1 if the test is not in it
+     */
+    public int getTestIndex(@Nonnull final TestIndex testIndex, final int slot) {
+        ResolvedIndexes current = resolved;
+        if (current.testIndex != testIndex) {
+            current = new ResolvedIndexes(testIndex, testIndex.indexesOf(testNames));
+            resolved = current;
+        }
+        return current.indexes[slot];
+    }
+
+    private static class ResolvedIndexes {
+        private final TestIndex testIndex;
+        private final int[] indexes;
+
+        private ResolvedIndexes(final TestIndex testIndex, final int[] indexes) {
+            this.testIndex = testIndex;
+            this.indexes = indexes;
+        }
+    }
+}
@@ -2,17 +2,27 @@ package com.indeed.proctor.consumer;
 
 import com.indeed.proctor.common.Identifiers;
 import com.indeed.proctor.common.Proctor;
+import com.indeed.proctor.common.ProctorLoadResult;
+import com.indeed.proctor.common.RuleEvaluator;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
+import com.indeed.proctor.common.model.Range;
 import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
 import com.indeed.proctor.common.model.TestType;
 import org.junit.Test;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import static com.indeed.proctor.consumer.ProctorConsumerUtils.FORCE_GROUPS_PARAMETER;
 import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.clearInvocations;
@@ -74,4 +84,60 @@ public class AbstractGroupsManagerTest {
         }
 
     }
+
+    @Test
+    public void testDetermineBucketsLazily() {
+        final Proctor proctorMock = mock(Proctor.class);
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "fooUser");
+        final AbstractGroupsManager manager = new AbstractGroupsManager(() -> proctorMock, true) {
+            @Override
+            public Map<String, String> getProvidedContext() {
+                return null;
+            }
+
+            @Override
+            protected Map<String, TestBucket> getDefaultBucketValues() {
+                return null;
+            }
+        };
+
+        manager.determineBucketsInternal(identifiers, emptyMap());
+        verify(proctorMock, times(1)).determineTestGroupsLazily(identifiers, emptyMap(), emptyMap());
+        verifyNoMoreInteractions(proctorMock);
+    }
+
+    @Test
+    public void testEmptyTestNameFilterDeterminesNoTest() {
+        final ConsumableTestDefinition testDefinition = new ConsumableTestDefinition();
+        testDefinition.setTestType(TestType.ANONYMOUS_USER);
+        testDefinition.setBuckets(Collections.singletonList(new TestBucket("active", 1, "")));
+        testDefinition.setAllocations(Collections.singletonList(new Allocation(null, Collections.singletonList(new Range(1, 1.0)))));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setTests(Collections.singletonMap("dynamic_tst", testDefinition));
+        matrix.setAudit(new Audit());
+        final Proctor proctor = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.defaultFunctionMapperBuilder().build());
+        final Identifiers identifiers = Identifiers.of(TestType.ANONYMOUS_USER, "fooUser");
+
+        // e.g. a specification without tests, only determining tests of the specification
+        final AbstractGroupsManager emptyFilterManager = createManager(proctor, Collections.emptySet());
+        assertThat(emptyFilterManager.determineBucketsInternal(identifiers, emptyMap()).getBuckets()).isEmpty();
+
+        // no filter determines all tests
+        final AbstractGroupsManager noFilterManager = createManager(proctor, null);
+        assertThat(noFilterManager.determineBucketsInternal(identifiers, emptyMap()).getBuckets()).containsOnlyKeys("dynamic_tst");
+    }
+
+    private static AbstractGroupsManager createManager(final Proctor proctor, final Collection<String> testNameFilter) {
+        return new AbstractGroupsManager(() -> proctor, false, testNameFilter) {
+            @Override
+            public Map<String, String> getProvidedContext() {
+                return null;
+            }
+
+            @Override
+            protected Map<String, TestBucket> getDefaultBucketValues() {
+                return null;
+            }
+        };
+    }
 }
@@ -2,13 +2,29 @@ package com.indeed.proctor.consumer;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.indeed.proctor.common.Identifiers;
+import com.indeed.proctor.common.Proctor;
+import com.indeed.proctor.common.ProctorLoadResult;
 import com.indeed.proctor.common.ProctorResult;
+import com.indeed.proctor.common.RuleEvaluator;
+import com.indeed.proctor.common.model.Allocation;
+import com.indeed.proctor.common.model.Audit;
+import com.indeed.proctor.common.model.ConsumableTestDefinition;
 import com.indeed.proctor.common.model.Payload;
+import com.indeed.proctor.common.model.Range;
+import com.indeed.proctor.common.model.TestBucket;
+import com.indeed.proctor.common.model.TestMatrixArtifact;
+import com.indeed.proctor.common.model.TestType;
 import com.indeed.proctor.consumer.ProctorGroupStubber.FakeTest;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.indeed.proctor.consumer.ProctorGroupStubber.CONTROL_BUCKET_WITH_PAYLOAD;
 import static com.indeed.proctor.consumer.ProctorGroupStubber.FALLBACK_BUCKET;
@@ -24,6 +40,7 @@ import static com.indeed.proctor.consumer.ProctorGroupStubber.StubTest.INACTIVE_
 import static com.indeed.proctor.consumer.ProctorGroupStubber.StubTest.MISSING_DEFINITION_TEST;
 import static com.indeed.proctor.consumer.ProctorGroupStubber.StubTest.NO_BUCKETS_WITH_FALLBACK_TEST;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -212,4 +229,98 @@ public class TestAbstractGroups {
         assertThat(sampleGroups.getAsProctorResult().getTestDefinitions()).isEqualTo(proctorResult.getTestDefinitions());
     }
 
+    @Test
+    public void testGetActiveBucketBySlot() {
+        final TestSlots testSlots = new TestSlots(CONTROL_SELECTED_TEST.getName(), "notexist");
+        // result without test index
+        assertThat(sampleGroups.getActiveBucket(testSlots, 0)).isEqualTo(sampleGroups.getActiveBucket(CONTROL_SELECTED_TEST.getName()));
+        assertThat(sampleGroups.getActiveBucket(testSlots, 1)).isEmpty();
+
+        // results with test index, indexes change on reload
+        final TestSlots randomSlots = new TestSlots("b_tst", "c_tst");
+        for (final List<String> testNames : Arrays.asList(Arrays.asList("b_tst", "c_tst"), Arrays.asList("a_tst", "b_tst"))) {
+            final ProctorResult result = createRandomProctor(testNames)
+                    .determineTestGroups(new Identifiers(emptyMap(), true), emptyMap(), emptyMap());
+            assertThat(result.getTestIndex()).isNotNull();
+            final AbstractGroups groups = new AbstractGroups(result) {};
+            for (int slot = 0; slot < randomSlots.size(); slot++) {
+                final String testName = randomSlots.getTestName(slot);
+                assertThat(groups.getActiveBucket(randomSlots, slot))
+                        .as(testName)
+                        .isEqualTo(groups.getActiveBucket(testName))
+                        .isEqualTo(Optional.ofNullable(result.getBuckets().get(testName)));
+            }
+        }
+    }
+
+    @Test
+    public void testToLoggingStringIndexed() {
+        final Map<String, ConsumableTestDefinition> tests = new HashMap<>();
+        final ConsumableTestDefinition aDefinition = createRandomDefinition(CONTROL_BUCKET_WITH_PAYLOAD, "#A1", false);
+        aDefinition.setBuckets(Arrays.asList(CONTROL_BUCKET_WITH_PAYLOAD, GROUP_1_BUCKET_WITH_PAYLOAD));
+        tests.put("a_tst", aDefinition);
+        tests.put("b_tst", createRandomDefinition(GROUP_1_BUCKET_WITH_PAYLOAD, "", false));
+        tests.put("c_tst", createRandomDefinition(INACTIVE_BUCKET, "#C1", false));
+        tests.put("d_tst", createRandomDefinition(GROUP_1_BUCKET, "#D1", true));
+        tests.put("e_tst", createRandomDefinition(GROUP_1_BUCKET, "#E1", false));
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setAudit(new Audit());
+        matrix.setTests(tests);
+        final ProctorResult result = Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.defaultFunctionMapperBuilder().build())
+                .determineTestGroups(new Identifiers(emptyMap(), true), emptyMap(), emptyMap());
+        assertThat(result.getTestIndex()).isNotNull();
+        // same result without test index, logged by test names
+        final ProctorResult unindexed = new ProctorResult(result.getMatrixVersion(), result.getBuckets(), result.getAllocations(), result.getTestDefinitions());
+
+        assertThat(new AbstractGroups(result) {}.toLoggingString())
+                .isEqualTo(new AbstractGroups(unindexed) {}.toLoggingString())
+                .isEqualTo("a_tst0,b_tst1,e_tst2,#A1:a_tst0,#E1:e_tst2");
+
+        // override of the bucket value, ignored for a value not in the definition
+        final AtomicInteger overrideCalls = new AtomicInteger();
+        final AbstractGroups overridden = new AbstractGroups(result) {
+            @Override
+            protected int overrideDeterminedBucketValue(final String testName, final TestBucket determinedBucket) {
+                overrideCalls.incrementAndGet();
+                return "a_tst".equals(testName) ? 1 : ("e_tst".equals(testName) ? 5 : determinedBucket.getValue());
+            }
+        };
+        final StringBuilder builder = new StringBuilder("prefix;");
+        overridden.appendTestGroups(builder, ';');
+        assertThat(builder.toString()).isEqualTo("prefix;a_tst1;b_tst1;e_tst2;#A1:a_tst1;#E1:e_tst2;");
+        // called once per non-silent test with a bucket
+        assertThat(overrideCalls.get()).isEqualTo(4);
+
+        // overridden getValue is still used
+        assertThat(new AbstractGroups(result) {
+            @Override
+            protected int getValue(final String testName, final int defaultValue) {
+                return "b_tst".equals(testName) ? -1 : super.getValue(testName, defaultValue);
+            }
+        }.toLoggingString()).isEqualTo("a_tst0,e_tst2,#A1:a_tst0,#E1:e_tst2");
+    }
+
+    private static ConsumableTestDefinition createRandomDefinition(final TestBucket bucket, final String allocationId, final boolean silent) {
+        final ConsumableTestDefinition definition = new ConsumableTestDefinition();
+        definition.setTestType(TestType.RANDOM);
+        definition.setSilent(silent);
+        definition.setBuckets(singletonList(bucket));
+        definition.setAllocations(singletonList(new Allocation(null, singletonList(new Range(bucket.getValue(), 1.0)), allocationId)));
+        return definition;
+    }
+
+    private static Proctor createRandomProctor(final List<String> testNames) {
+        final Map<String, ConsumableTestDefinition> tests = new HashMap<>();
+        for (final String testName : testNames) {
+            final ConsumableTestDefinition definition = new ConsumableTestDefinition();
+            definition.setTestType(TestType.RANDOM);
+            definition.setBuckets(singletonList(GROUP_1_BUCKET));
+            definition.setAllocations(singletonList(new Allocation(null, singletonList(new Range(GROUP_1_BUCKET.getValue(), 1.0)))));
+            tests.put(testName, definition);
+        }
+        final TestMatrixArtifact matrix = new TestMatrixArtifact();
+        matrix.setAudit(new Audit());
+        matrix.setTests(tests);
+        return Proctor.construct(matrix, ProctorLoadResult.emptyResult(), RuleEvaluator.defaultFunctionMapperBuilder().build());
+    }
 }
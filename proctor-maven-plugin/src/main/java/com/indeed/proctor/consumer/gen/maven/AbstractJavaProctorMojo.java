@@ -4,6 +4,7 @@ import com.indeed.proctor.common.ProctorUtils;
 import com.indeed.proctor.consumer.gen.CodeGenException;
 import com.indeed.proctor.consumer.gen.TestGroupsGenerator;
 import com.indeed.proctor.consumer.gen.TestGroupsJavaGenerator;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
 
@@ -16,12 +17,19 @@ public abstract class AbstractJavaProctorMojo extends AbstractProctorMojo {
 
     private final TestGroupsJavaGenerator gen = new TestGroupsJavaGenerator();
 
+    /**
+     * whether generated groups classes resolve tests to slots, see {@link TestGroupsJavaGenerator#setUseTestSlots(boolean)}
+     */
+    @Parameter(property = "useTestSlots", defaultValue = "false")
+    private boolean useTestSlots;
+
     protected void processFile(
             final File file,
             final String packageName,
             final String className
     ) throws CodeGenException {
         getLog().info(String.format("Building resources for %s", packageName));
+        gen.setUseTestSlots(useTestSlots);
         gen.generate(
                 ProctorUtils.readSpecification(file),
                 getOutputDirectory().getPath(),